@@ -0,0 +1,62 @@
+package com.borsibaar;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Product;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory data shared by the benchmarks.
+ */
+public final class Fixtures {
+
+    public static final Long ORGANIZATION_ID = 1L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * A stub that does not record invocations, so it can be called millions
+     * of times inside a measured method without filling the heap.
+     */
+    public static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    /**
+     * Inventories of products 1 to {@code count}, each with practically
+     * unlimited stock so that sales never run out.
+     */
+    public static List<Inventory> inventories(int count, boolean dynamicPricing) {
+        Category category = new Category();
+        category.setId(1L);
+        category.setOrganizationId(ORGANIZATION_ID);
+        category.setName("Beers");
+        category.setDynamicPricing(dynamicPricing);
+
+        List<Inventory> inventories = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setOrganizationId(ORGANIZATION_ID);
+            product.setCategoryId(category.getId());
+            product.setCategory(category);
+            product.setName("Product " + id);
+            product.setBasePrice(new BigDecimal("4.00"));
+            product.setMinPrice(new BigDecimal("2.00"));
+            product.setMaxPrice(new BigDecimal("8.00"));
+            product.setActive(true);
+
+            Inventory inventory = new Inventory(ORGANIZATION_ID, product, new BigDecimal("1000000000000"),
+                    new BigDecimal("4.00"));
+            inventory.setId(id);
+            inventory.setProductId(id);
+            inventories.add(inventory);
+        }
+        return inventories;
+    }
+}
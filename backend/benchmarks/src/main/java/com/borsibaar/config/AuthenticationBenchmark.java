@@ -0,0 +1,105 @@
+package com.borsibaar.config;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
+import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.AuthenticationCache;
+import com.borsibaar.service.JwtService;
+import com.borsibaar.util.JwtCookies;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Authenticating a request in {@link JwtAuthenticationFilter}, by the kind of
+ * token it carries:
+ * <ul>
+ * <li>{@code access} - an access token, the user comes from its claims</li>
+ * <li>{@code refresh_cached} - only a refresh token seen before, the user
+ * comes from the cache and a new access token is issued</li>
+ * <li>{@code refresh_uncached} - only a refresh token and no cache, as every
+ * request was before access tokens existed. The user lookup is stubbed, so
+ * the database time is not included.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+    };
+
+    @Param({ "access", "refresh_cached", "refresh_uncached" })
+    public String token;
+
+    private JwtAuthenticationFilter filter;
+    private Cookie cookie;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", "Oykb0ZqpiNijNS7OzctgiZ/EFsQb2jaQzf9F3mxyQts=");
+        ReflectionTestUtils.setField(jwtService, "accessExpirationMs", 900_000L);
+
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .organizationId(Fixtures.ORGANIZATION_ID)
+                .name("Bartender")
+                .email("bartender@example.com")
+                .role(Role.builder().name("USER").build())
+                .build();
+        UserRepository userRepository = Fixtures.stub(UserRepository.class);
+        when(userRepository.findByEmailWithRole(user.getEmail())).thenReturn(Optional.of(user));
+
+        // A zero TTL keeps every entry from being cached
+        AuthenticationCache authenticationCache = token.equals("refresh_uncached")
+                ? new AuthenticationCache(0, 10_000)
+                : new AuthenticationCache(300_000, 10_000);
+        filter = new JwtAuthenticationFilter(jwtService, userRepository, authenticationCache,
+                new SimpleMeterRegistry());
+        cookie = token.equals("access")
+                ? new Cookie(JwtCookies.ACCESS_TOKEN, jwtService.generateAccessToken(user))
+                : new Cookie(JwtCookies.REFRESH_TOKEN, jwtService.generateToken(user.getEmail()));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse authenticate() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/inventory");
+        request.setCookies(cookie);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, NO_OP_CHAIN);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,251 @@
+package com.borsibaar.jobs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How price decay selects what to decay, on PostgreSQL:
+ * <ul>
+ * <li>{@code *FromTransactions} - searching the recent SALE transactions with
+ * correlated EXISTS and NOT EXISTS subqueries, through the partial indexes
+ * that served them</li>
+ * <li>{@code *FromLastSaleAt} - comparing the latest sale times kept on the
+ * inventory and organization rows</li>
+ * </ul>
+ * Only the selections are measured, without the updates. 20 organizations
+ * with 50 products each and the given number of transactions over the last
+ * 30 days, 70% of them sales.
+ * <p>
+ * Works in its own schema of the database given by
+ * {@code BENCHMARK_DATASOURCE_URL}, e.g.
+ * {@code jdbc:postgresql://localhost:5432/borsibaar}, with
+ * {@code BENCHMARK_DATASOURCE_USERNAME} and
+ * {@code BENCHMARK_DATASOURCE_PASSWORD} if needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceDecaySelectionBenchmark {
+
+    private static final String SCHEMA = "price_decay_benchmark";
+    private static final long ORGANIZATION_ID = 1;
+
+    // The bound time stands in for CURRENT_TIMESTAMP - interval, keeps the window on the seeded data
+    private static final String CANDIDATES_FROM_TRANSACTIONS = """
+            SELECT inv.id, COALESCE(inv.adjusted_price, p.base_price)
+            FROM inventory inv
+            JOIN products p ON p.id = inv.product_id
+            JOIN categories cat ON cat.id = p.category_id
+            JOIN organizations o ON o.id = p.organization_id
+            WHERE inv.organization_id = ?
+              AND cat.dynamic_pricing = TRUE
+              AND EXISTS (
+                SELECT 1
+                FROM inventory_transactions it_org
+                WHERE it_org.organization_id = inv.organization_id
+                  AND it_org.transaction_type = 'SALE'
+                  AND it_org.created_at >= ?
+              )
+              AND NOT EXISTS (
+                SELECT 1
+                FROM inventory_transactions it_self
+                WHERE it_self.inventory_id = inv.id
+                  AND it_self.transaction_type = 'SALE'
+                  AND it_self.created_at >= ?
+              )
+            """;
+    private static final String CANDIDATES_FROM_LAST_SALE_AT = """
+            SELECT inv.id, COALESCE(inv.adjusted_price, p.base_price)
+            FROM inventory inv
+            JOIN products p ON p.id = inv.product_id
+            JOIN categories cat ON cat.id = p.category_id
+            JOIN organizations o ON o.id = p.organization_id
+            WHERE inv.organization_id = ?
+              AND cat.dynamic_pricing = TRUE
+              AND o.last_sale_at >= ?
+              AND (inv.last_sale_at IS NULL OR inv.last_sale_at < ?)
+            """;
+    private static final String DUE_FROM_TRANSACTIONS = """
+            SELECT l.organization_id
+            FROM price_decay_leases l
+            WHERE l.next_run_at <= ?
+              AND EXISTS (
+                SELECT 1
+                FROM inventory_transactions it
+                WHERE it.organization_id = l.organization_id
+                  AND it.transaction_type = 'SALE'
+                  AND it.created_at >= ?
+              )
+            """;
+    private static final String DUE_FROM_LAST_SALE_AT = """
+            SELECT l.organization_id
+            FROM price_decay_leases l
+            JOIN organizations o ON o.id = l.organization_id
+            WHERE l.next_run_at <= ?
+              AND o.last_sale_at >= ?
+            """;
+
+    @Param({ "100000", "1000000" })
+    public int transactions;
+
+    private Connection connection;
+    private PreparedStatement candidatesFromTransactions;
+    private PreparedStatement candidatesFromLastSaleAt;
+    private PreparedStatement dueFromTransactions;
+    private PreparedStatement dueFromLastSaleAt;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String url = System.getenv("BENCHMARK_DATASOURCE_URL");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("BENCHMARK_DATASOURCE_URL is not set");
+        }
+        connection = DriverManager.getConnection(url,
+                System.getenv().getOrDefault("BENCHMARK_DATASOURCE_USERNAME", "postgres"),
+                System.getenv().getOrDefault("BENCHMARK_DATASOURCE_PASSWORD", ""));
+
+        OffsetDateTime now = OffsetDateTime.now();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            statement.execute("CREATE SCHEMA " + SCHEMA);
+            statement.execute("SET search_path TO " + SCHEMA);
+            statement.execute("""
+                    CREATE TABLE organizations (id BIGINT PRIMARY KEY, last_sale_at TIMESTAMPTZ);
+                    CREATE TABLE categories (id BIGINT PRIMARY KEY, organization_id BIGINT NOT NULL,
+                                             dynamic_pricing BOOLEAN NOT NULL);
+                    CREATE TABLE products (id BIGINT PRIMARY KEY, organization_id BIGINT NOT NULL,
+                                           category_id BIGINT NOT NULL, base_price NUMERIC(19, 4) NOT NULL);
+                    CREATE TABLE inventory (id BIGINT PRIMARY KEY, organization_id BIGINT NOT NULL,
+                                            product_id BIGINT NOT NULL, adjusted_price NUMERIC(19, 4),
+                                            last_sale_at TIMESTAMPTZ);
+                    CREATE TABLE inventory_transactions (id BIGSERIAL PRIMARY KEY, inventory_id BIGINT NOT NULL,
+                                                         organization_id BIGINT NOT NULL,
+                                                         transaction_type VARCHAR(20) NOT NULL,
+                                                         created_at TIMESTAMPTZ NOT NULL);
+                    CREATE TABLE price_decay_leases (organization_id BIGINT PRIMARY KEY,
+                                                     next_run_at TIMESTAMPTZ NOT NULL);
+                    """);
+            statement.execute("""
+                    INSERT INTO organizations (id) SELECT g FROM generate_series(1, 20) g;
+                    INSERT INTO categories (id, organization_id, dynamic_pricing) SELECT id, id, TRUE FROM organizations;
+                    INSERT INTO products (id, organization_id, category_id, base_price)
+                    SELECT (c.id - 1) * 50 + g, c.organization_id, c.id, 3.00
+                    FROM categories c CROSS JOIN generate_series(1, 50) g;
+                    INSERT INTO inventory (id, organization_id, product_id, adjusted_price)
+                    SELECT id, organization_id, id, 3.00 FROM products;
+                    INSERT INTO price_decay_leases (organization_id, next_run_at) SELECT id, now() FROM organizations;
+                    """);
+        }
+        try (PreparedStatement seed = connection.prepareStatement("""
+                INSERT INTO inventory_transactions (inventory_id, organization_id, transaction_type, created_at)
+                SELECT 1 + g % 1000, 1 + (g % 1000) / 50,
+                       CASE WHEN g % 10 < 7 THEN 'SALE' ELSE 'PURCHASE' END,
+                       ? - g * (INTERVAL '30 days' / ?)
+                FROM generate_series(1, ?) g
+                """)) {
+            seed.setObject(1, now);
+            seed.setInt(2, transactions);
+            seed.setInt(3, transactions);
+            seed.executeUpdate();
+        }
+        try (Statement statement = connection.createStatement()) {
+            // The indexes each strategy relies on, as in the changelog before and after the switch
+            statement.execute("""
+                    CREATE INDEX ON inventory_transactions (inventory_id, created_at) WHERE transaction_type = 'SALE';
+                    CREATE INDEX ON inventory_transactions (organization_id, created_at) WHERE transaction_type = 'SALE';
+                    CREATE INDEX ON inventory (organization_id);
+                    CREATE INDEX ON organizations (last_sale_at);
+                    UPDATE inventory i
+                    SET last_sale_at = s.last_sale_at
+                    FROM (SELECT inventory_id, MAX(created_at) AS last_sale_at
+                          FROM inventory_transactions
+                          WHERE transaction_type = 'SALE'
+                          GROUP BY inventory_id) s
+                    WHERE s.inventory_id = i.id;
+                    UPDATE organizations o
+                    SET last_sale_at = s.last_sale_at
+                    FROM (SELECT organization_id, MAX(last_sale_at) AS last_sale_at
+                          FROM inventory
+                          GROUP BY organization_id) s
+                    WHERE s.organization_id = o.id;
+                    """);
+            statement.execute("VACUUM ANALYZE");
+        }
+
+        // Window of one minute, a few of the organization's products sold in it
+        OffsetDateTime since = now.minusMinutes(1);
+        OffsetDateTime due = now.plusSeconds(1);
+        candidatesFromTransactions = prepare(CANDIDATES_FROM_TRANSACTIONS, ORGANIZATION_ID, since, since);
+        candidatesFromLastSaleAt = prepare(CANDIDATES_FROM_LAST_SALE_AT, ORGANIZATION_ID, since, since);
+        dueFromTransactions = prepare(DUE_FROM_TRANSACTIONS, due, since);
+        dueFromLastSaleAt = prepare(DUE_FROM_LAST_SALE_AT, due, since);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int candidatesFromTransactions() throws SQLException {
+        return count(candidatesFromTransactions);
+    }
+
+    @Benchmark
+    public int candidatesFromLastSaleAt() throws SQLException {
+        return count(candidatesFromLastSaleAt);
+    }
+
+    @Benchmark
+    public int dueOrganizationsFromTransactions() throws SQLException {
+        return count(dueFromTransactions);
+    }
+
+    @Benchmark
+    public int dueOrganizationsFromLastSaleAt() throws SQLException {
+        return count(dueFromLastSaleAt);
+    }
+
+    private PreparedStatement prepare(String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return statement;
+    }
+
+    private static int count(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
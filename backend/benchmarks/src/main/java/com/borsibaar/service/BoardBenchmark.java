@@ -0,0 +1,76 @@
+package com.borsibaar.service;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.dto.InventoryResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * The inventory board of an organization served through
+ * {@link InventorySnapshotCache}. A rebuild maps every row through the
+ * projection constructor the board query uses and serializes the list, a hit
+ * returns the cached bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({ "500" })
+    public int products;
+
+    private InventoryVersions inventoryVersions;
+    private InventorySnapshotCache snapshotCache;
+
+    @Setup
+    public void setUp() {
+        OffsetDateTime updatedAt = OffsetDateTime.now();
+        InventoryService inventoryService = Fixtures.stub(InventoryService.class);
+        when(inventoryService.getByOrganization(Fixtures.ORGANIZATION_ID, null)).thenAnswer(invocation -> {
+            // What the board query constructs for each row
+            List<InventoryResponseDto> rows = new ArrayList<>(products);
+            for (long id = 1; id <= products; id++) {
+                rows.add(new InventoryResponseDto(id, Fixtures.ORGANIZATION_ID, id, "Product " + id,
+                        new BigDecimal("120.0000"), new BigDecimal("4.3500"), "Draft beer, 0.5 l",
+                        new BigDecimal("4.0000"), new BigDecimal("2.0000"), new BigDecimal("8.0000"), updatedAt));
+            }
+            return rows;
+        });
+
+        inventoryVersions = new InventoryVersions(256);
+        snapshotCache = new InventorySnapshotCache(inventoryService, inventoryVersions,
+                Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @Benchmark
+    public InventorySnapshotCache.Snapshot rebuild() {
+        inventoryVersions.bump(Fixtures.ORGANIZATION_ID);
+        return snapshotCache.get(Fixtures.ORGANIZATION_ID, null);
+    }
+
+    @Benchmark
+    public InventorySnapshotCache.Snapshot cached() {
+        return snapshotCache.get(Fixtures.ORGANIZATION_ID, null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.borsibaar.service;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * One decay interval of a busy organization: a sale of every product, which
+ * schedules their decays on the {@link MarketEngine}'s timing wheel, a sale of
+ * one more product shortly before they fall due, which keeps the organization
+ * active, then turning the wheel a full interval ahead, which lowers every
+ * price again. The increase and decrease steps are equal, so prices stay level
+ * between runs, the extra product stays at its maximum price. Queueing the
+ * decays on the write-behind is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceDecayBenchmark {
+
+    private static final long INTERVAL_MS = 60_000;
+
+    @Param({ "50", "500" })
+    public int products;
+
+    private MarketEngine marketEngine;
+    private List<SaleItemRequestDto> items;
+    private List<SaleItemRequestDto> activity;
+    private long now = 1_000_000;
+
+    @Setup
+    public void setUp() {
+        InventoryRepository inventoryRepository = Fixtures.stub(InventoryRepository.class);
+        when(inventoryRepository.findByOrganizationId(Fixtures.ORGANIZATION_ID))
+                .thenReturn(Fixtures.inventories(products + 1, true));
+        Organization organization = new Organization();
+        organization.setId(Fixtures.ORGANIZATION_ID);
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        OrganizationRepository organizationRepository = Fixtures.stub(OrganizationRepository.class);
+        when(organizationRepository.findById(Fixtures.ORGANIZATION_ID)).thenReturn(Optional.of(organization));
+
+        marketEngine = new MarketEngine(inventoryRepository,
+                new ProductCatalog(Fixtures.stub(ProductRepository.class), organizationRepository),
+                new PriceTicker(new ObjectMapper(), 60_000, 64, 1000, 20), INTERVAL_MS / 1000, 100, 4, () -> now);
+        items = new ArrayList<>(products);
+        for (long productId = 1; productId <= products; productId++) {
+            items.add(new SaleItemRequestDto(productId, BigDecimal.ONE));
+        }
+        activity = List.of(new SaleItemRequestDto(products + 1L, BigDecimal.ONE));
+    }
+
+    @Benchmark
+    public int sellAndDecay() {
+        marketEngine.sell(Fixtures.ORGANIZATION_ID, items, lines -> {
+        });
+        now += INTERVAL_MS - 1_000;
+        marketEngine.sell(Fixtures.ORGANIZATION_ID, activity, lines -> {
+        });
+        now += 1_000;
+        return marketEngine.decayDue(now, (organizationId, decays) -> {
+        });
+    }
+}
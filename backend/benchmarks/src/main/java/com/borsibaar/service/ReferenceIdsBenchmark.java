@@ -0,0 +1,41 @@
+package com.borsibaar.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sale reference generation, uncontended and with every thread sharing one
+ * generator as the request threads of an instance do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReferenceIdsBenchmark {
+
+    private final ReferenceIds referenceIds = new ReferenceIds(0);
+
+    @Benchmark
+    @Threads(1)
+    public String single() {
+        return referenceIds.next("SALE-");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contended() {
+        return referenceIds.next("SALE-");
+    }
+}
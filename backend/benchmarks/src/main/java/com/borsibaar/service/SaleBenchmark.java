@@ -0,0 +1,85 @@
+package com.borsibaar.service;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * A sale through {@link SalesService} once the organization's market is
+ * loaded: validation, dynamic price steps capped at the maximum price,
+ * reference generation and handing the sale to the write-behind queue, which
+ * is stubbed out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaleBenchmark {
+
+    private static final int PRODUCTS = 50;
+
+    @Param({ "1", "5", "20" })
+    public int lines;
+
+    private SalesService salesService;
+    private SaleRequestDto request;
+    private final UUID userId = UUID.randomUUID();
+
+    @Setup
+    public void setUp() {
+        InventoryRepository inventoryRepository = Fixtures.stub(InventoryRepository.class);
+        when(inventoryRepository.findByOrganizationId(Fixtures.ORGANIZATION_ID))
+                .thenReturn(Fixtures.inventories(PRODUCTS, true));
+        Organization organization = new Organization();
+        organization.setId(Fixtures.ORGANIZATION_ID);
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        OrganizationRepository organizationRepository = Fixtures.stub(OrganizationRepository.class);
+        when(organizationRepository.findById(Fixtures.ORGANIZATION_ID)).thenReturn(Optional.of(organization));
+
+        MarketEngine marketEngine = new MarketEngine(inventoryRepository,
+                new ProductCatalog(Fixtures.stub(ProductRepository.class), organizationRepository),
+                new PriceTicker(new ObjectMapper(), 60_000, 64, 1000, 20), 60, 100, 4);
+        salesService = new SalesService(marketEngine, Fixtures.stub(MarketWriteBehind.class), new ReferenceIds(0),
+                new SimpleMeterRegistry());
+
+        List<SaleItemRequestDto> items = new ArrayList<>(lines);
+        for (long productId = 1; productId <= lines; productId++) {
+            items.add(new SaleItemRequestDto(productId, BigDecimal.ONE));
+        }
+        request = new SaleRequestDto(items, null, 1L);
+    }
+
+    @Benchmark
+    public SaleResponseDto processSale() {
+        return salesService.processSale(request, userId, Fixtures.ORGANIZATION_ID);
+    }
+}
@@ -0,0 +1,127 @@
+package com.borsibaar.service;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.dto.UserSalesStatsResponseDto;
+import com.borsibaar.entity.BarStation;
+import com.borsibaar.entity.User;
+import com.borsibaar.mapper.InventoryMapper;
+import com.borsibaar.repository.BarStationRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.borsibaar.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link InventoryService#getUserSalesStats} over the totals the database
+ * groups per user and station: resolving users and stations and sorting the
+ * rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SalesStatsBenchmark {
+
+    private static final int STATIONS = 5;
+
+    @Param({ "10", "100" })
+    public int users;
+
+    private InventoryService inventoryService;
+
+    @Setup
+    public void setUp() {
+        List<User> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            userRows.add(User.builder()
+                    .id(UUID.randomUUID())
+                    .organizationId(Fixtures.ORGANIZATION_ID)
+                    .name("User " + i)
+                    .email("user" + i + "@example.com")
+                    .build());
+        }
+        List<BarStation> stations = new ArrayList<>(STATIONS);
+        for (long id = 1; id <= STATIONS; id++) {
+            BarStation station = new BarStation();
+            station.setId(id);
+            station.setOrganizationId(Fixtures.ORGANIZATION_ID);
+            station.setName("Station " + id);
+            stations.add(station);
+        }
+        List<SalesStatsRepository.UserStationTotals> totals = new ArrayList<>(users * STATIONS);
+        for (int i = 0; i < users; i++) {
+            for (BarStation station : stations) {
+                totals.add(new Totals(userRows.get(i).getId(), station.getId(), 10L + i,
+                        BigDecimal.valueOf(40 + i)));
+            }
+        }
+
+        SalesStatsRepository salesStatsRepository = Fixtures.stub(SalesStatsRepository.class);
+        when(salesStatsRepository.findUserStationTotals(Fixtures.ORGANIZATION_ID)).thenReturn(totals);
+        UserRepository userRepository = Fixtures.stub(UserRepository.class);
+        when(userRepository.findAllById(anyList())).thenReturn(userRows);
+        BarStationRepository barStationRepository = Fixtures.stub(BarStationRepository.class);
+        when(barStationRepository.findAllById(anyList())).thenReturn(stations);
+
+        inventoryService = new InventoryService(Fixtures.stub(InventoryRepository.class),
+                Fixtures.stub(InventoryTransactionRepository.class), Fixtures.stub(ProductRepository.class),
+                userRepository, barStationRepository, salesStatsRepository, Fixtures.stub(InventoryMapper.class),
+                Fixtures.stub(MarketEngine.class),
+                new InventoryVersions(256), Fixtures.stub(ProductCatalog.class),
+                Fixtures.stub(PlatformTransactionManager.class), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public List<UserSalesStatsResponseDto> getUserSalesStats() {
+        return inventoryService.getUserSalesStats(Fixtures.ORGANIZATION_ID);
+    }
+
+    private record Totals(UUID userId, Long barStationId, Long salesCount, BigDecimal revenue)
+            implements SalesStatsRepository.UserStationTotals {
+
+        @Override
+        public UUID getUserId() {
+            return userId;
+        }
+
+        @Override
+        public Long getBarStationId() {
+            return barStationId;
+        }
+
+        @Override
+        public Long getSalesCount() {
+            return salesCount;
+        }
+
+        @Override
+        public BigDecimal getRevenue() {
+            return revenue;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.borsibaar.service;
+
+import com.borsibaar.Fixtures;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.ProductSalesStatsRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flushing one queued sale through {@link MarketWriteBehind} into an
+ * in-memory H2 database: journaling it, updating the inventory rows and
+ * inserting the transactions in batches. The per-hour sales statistics are
+ * PostgreSQL upserts and stubbed out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBehindBenchmark {
+
+    @Param({ "1", "10", "50" })
+    public int lines;
+
+    private ConfigurableApplicationContext context;
+    private InventoryTransactionRepository inventoryTransactionRepository;
+    private MarketWriteBehind writeBehind;
+    private Path journal;
+    private Path deadLetters;
+    private Long organizationId;
+    private final List<MarketEngine.SaleLine> saleLines = new ArrayList<>();
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Inventory.class)
+    @EnableJpaRepositories(basePackageClasses = InventoryRepository.class)
+    static class Database {
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        // Replaces the backend's application.properties, which expects PostgreSQL
+        context = new SpringApplicationBuilder(Database.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.config.name=write-behind-benchmark");
+        inventoryTransactionRepository = context.getBean(InventoryTransactionRepository.class);
+        InventoryRepository inventoryRepository = context.getBean(InventoryRepository.class);
+
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organization = context.getBean(OrganizationRepository.class).save(organization);
+        organizationId = organization.getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beers");
+        category = context.getBean(CategoryRepository.class).save(category);
+
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        for (int i = 0; i < lines; i++) {
+            Product product = new Product();
+            product.setOrganizationId(organizationId);
+            product.setCategoryId(category.getId());
+            product.setName("Product " + i);
+            product.setBasePrice(new BigDecimal("4.00"));
+            product.setActive(true);
+            product = productRepository.save(product);
+
+            Inventory inventory = inventoryRepository.save(new Inventory(organizationId, product,
+                    BigDecimal.valueOf(1000), new BigDecimal("4.00")));
+            saleLines.add(new MarketEngine.SaleLine(inventory.getId(), product.getId(), product.getName(),
+                    BigDecimal.ONE, BigDecimal.valueOf(1000), BigDecimal.valueOf(999), new BigDecimal("4.00"),
+                    new BigDecimal("4.10")));
+        }
+
+        journal = Files.createTempFile("market-journal", ".log");
+        deadLetters = Files.createTempFile("market-dead-letters", ".log");
+        writeBehind = new MarketWriteBehind(inventoryRepository, inventoryTransactionRepository,
+                context.getBean(PriceTickRepository.class), Fixtures.stub(SalesStatsRepository.class), Fixtures.stub(ProductSalesStatsRepository.class),
+                context.getBean(PlatformTransactionManager.class),
+                new InventoryVersions(256), Fixtures.stub(PriceHistory.class),
+                new ObjectMapper().findAndRegisterModules(), journal.toString(), deadLetters.toString(), false, 100);
+    }
+
+    /**
+     * Keeps the transaction table from growing across iterations.
+     */
+    @TearDown(Level.Iteration)
+    public void clearTransactions() {
+        inventoryTransactionRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(journal);
+        Files.deleteIfExists(deadLetters);
+    }
+
+    @Benchmark
+    public void enqueueAndFlush() {
+        writeBehind.enqueue(new MarketWriteBehind.PendingSale("SALE-" + UUID.randomUUID(), organizationId,
+                null, null, OffsetDateTime.now(), saleLines));
+        writeBehind.flush();
+    }
+}
@@ -2,16 +2,21 @@ package com.borsibaar.config;
 
 import com.borsibaar.entity.User;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.AuthenticationCache;
 import com.borsibaar.service.JwtService;
+import com.borsibaar.util.JwtCookies;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -20,6 +25,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -34,6 +40,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final AuthenticationCache authenticationCache;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(
@@ -51,77 +59,121 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Extract JWT token from cookie
-        String token = extractJwtFromCookie(request);
+        // Only the authentication is timed, not the rest of the chain
+        Timer.Sample sample = Timer.start();
+        String outcome = authenticate(request, response);
+        sample.stop(Timer.builder("auth.filter")
+                .description("Time spent authenticating a request from its JWT cookies")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+
+        // Continue filter chain
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Sets the authentication of the request if it carries a valid token,
+     * renewing the access token from the refresh token if needed.
+     *
+     * @return Outcome tag of the {@code auth.filter} timer
+     */
+    private String authenticate(HttpServletRequest request, HttpServletResponse response) {
+        // Extract JWT tokens from cookies
+        String token = JwtCookies.read(request, JwtCookies.ACCESS_TOKEN);
+        String refreshToken = JwtCookies.read(request, JwtCookies.REFRESH_TOKEN);
 
         // If no token, continue without authentication (Spring Security will handle
         // authorization)
-        if (token == null) {
-            filterChain.doFilter(request, response);
-            return;
+        if (token == null && refreshToken == null) {
+            return "anonymous";
         }
 
-        try {
-            // Parse and validate JWT token
-            Claims claims = jwtService.parseToken(token);
-            String email = claims.getSubject();
-
-            // Load user from database and set JWT authentication
-            // This replaces any existing OAuth2 session authentication
-            if (email != null) {
-                // Use findByEmailWithRole to eagerly fetch role and avoid
-                // LazyInitializationException
-                Optional<User> userOptional = userRepository.findByEmailWithRole(email);
-
-                if (userOptional.isPresent()) {
-                    User user = userOptional.get();
-                    // Create authentication token with user details and role
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            user, // Principal - the authenticated user
-                            null, // Credentials - not needed after authentication
-                            user.getRole() != null
-                                    ? Collections.singletonList(
-                                            new SimpleGrantedAuthority("ROLE_" + user.getRole().getName()))
-                                    : Collections.emptyList());
-
-                    // Set additional details (IP address, session ID, etc.)
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    // Set authentication in SecurityContext (replaces OAuth2 authentication if
-                    // present)
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    logger.debug("JWT authentication set in SecurityContext for user: " + email);
-                } else {
-                    logger.warn("User not found in database for email: " + email);
-                }
+        String outcome = "access_token";
+        AuthenticationCache.Entry authentication = token != null ? authenticate(token) : null;
+        if (authentication == null && refreshToken != null) {
+            // The access token expired, issue a new one with the current role and organization
+            outcome = "refresh_token";
+            authentication = authenticate(refreshToken);
+            if (authentication != null) {
+                response.addCookie(JwtCookies.create(JwtCookies.ACCESS_TOKEN,
+                        jwtService.generateAccessToken(authentication.user()),
+                        jwtService.getAccessTokenLifetime()));
             }
-        } catch (Exception e) {
-            // If token is invalid, log and continue without authentication
-            // Spring Security will handle the 401/403 response
-            logger.warn("JWT token validation failed: " + e.getMessage(), e);
         }
 
-        // Continue filter chain
-        filterChain.doFilter(request, response);
+        if (authentication == null) {
+            return "rejected";
+        }
+
+        // Create authentication token with user details and role
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                authentication.user(), // Principal - the authenticated user
+                null, // Credentials - not needed after authentication
+                authentication.authorities());
+
+        // Set additional details (IP address, session ID, etc.)
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        // Set authentication in SecurityContext (replaces OAuth2 authentication if
+        // present)
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        logger.debug("JWT authentication set in SecurityContext for user: " + authentication.user().getEmail());
+        return outcome;
     }
 
     /**
-     * Extracts JWT token from the "jwt" cookie.
+     * Validates the token and resolves its user. Access tokens carry the user
+     * in their claims. For refresh tokens the user is loaded from the database,
+     * or taken from the cache if the same token was used recently.
      *
-     * @param request HTTP request
-     * @return JWT token or null if not found
+     * @param token JWT token
+     * @return The authentication or null if the token is invalid, expired or
+     *         has no known user
      */
-    private String extractJwtFromCookie(HttpServletRequest request) {
-        if (request.getCookies() == null) {
-            return null;
-        }
+    private AuthenticationCache.Entry authenticate(String token) {
+        try {
+            Claims claims = jwtService.parseToken(token);
+            User principal = jwtService.toPrincipal(claims);
+            if (principal != null) {
+                return new AuthenticationCache.Entry(principal, authorities(principal),
+                        claims.getExpiration().getTime());
+            }
 
-        for (Cookie cookie : request.getCookies()) {
-            if ("jwt".equals(cookie.getName())) {
-                return cookie.getValue();
+            String email = claims.getSubject();
+            if (email == null) {
+                return null;
             }
+            Optional<AuthenticationCache.Entry> cached = authenticationCache.get(token);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+
+            // Use findByEmailWithRole to eagerly fetch role and avoid
+            // LazyInitializationException
+            Optional<User> userOptional = userRepository.findByEmailWithRole(email);
+            if (userOptional.isEmpty()) {
+                logger.warn("User not found in database for email: " + email);
+                return null;
+            }
+
+            User user = userOptional.get();
+            return authenticationCache.put(token, claims.getExpiration(), user, authorities(user));
+        } catch (ExpiredJwtException e) {
+            // Expected for access tokens, the refresh token takes over
+            logger.debug("JWT token expired: " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            // If token is invalid, log and continue without authentication
+            // Spring Security will handle the 401/403 response
+            logger.warn("JWT token validation failed: " + e.getMessage(), e);
+            return null;
         }
+    }
 
-        return null;
+    private static List<GrantedAuthority> authorities(User user) {
+        return user.getRole() != null
+                ? Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().getName()))
+                : Collections.emptyList();
     }
+
 }
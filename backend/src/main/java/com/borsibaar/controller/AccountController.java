@@ -4,8 +4,14 @@ import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
 import com.borsibaar.repository.RoleRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.AuthenticationCache;
+import com.borsibaar.service.JwtService;
+import com.borsibaar.util.JwtCookies;
 import com.borsibaar.util.SecurityUtils;
+import com.borsibaar.util.TransactionUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +23,8 @@ import org.springframework.web.server.ResponseStatusException;
 public class AccountController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final AuthenticationCache authenticationCache;
+    private final JwtService jwtService;
 
     public record MeResponse(String email, String name, String role, Long organizationId, boolean needsOnboarding) {
     }
@@ -50,13 +58,15 @@ public class AccountController {
 
     @PostMapping("/onboarding")
     @Transactional
-    public ResponseEntity<Void> finish(@RequestBody onboardingRequest req) {
+    public ResponseEntity<Void> finish(@RequestBody onboardingRequest req, HttpServletResponse response) {
         try {
             if (req.organizationId() == null || !req.acceptTerms())
                 return ResponseEntity.badRequest().build();
 
             // Allow users without organization (that's the point of onboarding)
-            User user = SecurityUtils.getCurrentUser(false);
+            // The principal is built from the access token, load the managed entity
+            User user = userRepository.findById(SecurityUtils.getCurrentUser(false).getId())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
 
             Role adminRole = roleRepository.findByName("ADMIN")
                     .orElseThrow(() -> new IllegalArgumentException("Admin role ADMIN not found"));
@@ -69,9 +79,14 @@ public class AccountController {
                 }
                 user.setOrganizationId(req.organizationId());
                 userRepository.save(user);
+                // Cached authentications still carry the old role and organization
+                String email = user.getEmail();
+                TransactionUtils.afterCommit(() -> authenticationCache.invalidateUser(email));
             }
 
-            // If later you add orgId to JWT, re-issue token here.
+            // The access token carries the organization and role, re-issue it
+            response.addCookie(JwtCookies.create(JwtCookies.ACCESS_TOKEN, jwtService.generateAccessToken(user),
+                    jwtService.getAccessTokenLifetime()));
             return ResponseEntity.noContent().build();
         } catch (ResponseStatusException e) {
             throw e; // Re-throw to be handled by exception handler
@@ -1,7 +1,9 @@
 package com.borsibaar.controller;
 
 import com.borsibaar.service.AuthService;
-import jakarta.servlet.http.Cookie;
+import com.borsibaar.service.AuthenticationCache;
+import com.borsibaar.service.JwtService;
+import com.borsibaar.util.JwtCookies;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -12,28 +14,31 @@ import org.springframework.security.oauth2.client.authentication.OAuth2Authentic
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
     private final AuthService authService;
+    private final AuthenticationCache authenticationCache;
+    private final JwtService jwtService;
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, AuthenticationCache authenticationCache, JwtService jwtService) {
         this.authService = authService;
+        this.authenticationCache = authenticationCache;
+        this.jwtService = jwtService;
     }
 
     @GetMapping("/login/success")
     public void success(HttpServletResponse response, OAuth2AuthenticationToken auth) throws IOException {
         var result = authService.processOAuthLogin(auth);
 
-        Cookie cookie = new Cookie("jwt", result.dto().token());
-        cookie.setHttpOnly(true);
-        cookie.setSecure(true); // HTTPS enabled with domain
-        cookie.setPath("/");
-        cookie.setMaxAge(24 * 60 * 60); // 1 day
-        response.addCookie(cookie);
+        response.addCookie(JwtCookies.create(JwtCookies.ACCESS_TOKEN, result.accessToken(),
+                jwtService.getAccessTokenLifetime()));
+        response.addCookie(JwtCookies.create(JwtCookies.REFRESH_TOKEN, result.dto().token(),
+                jwtService.getRefreshTokenLifetime()));
 
         String redirect = result.needsOnboarding() ? "/onboarding" : "/dashboard";
         response.sendRedirect(frontendUrl + redirect);
@@ -50,13 +55,14 @@ public class AuthController {
         // Clear the Spring Security context
         SecurityContextHolder.clearContext();
 
-        // Clear the JWT cookie
-        Cookie jwtCookie = new Cookie("jwt", "");
-        jwtCookie.setHttpOnly(true);
-        jwtCookie.setSecure(true); // HTTPS enabled with domain
-        jwtCookie.setPath("/");
-        jwtCookie.setMaxAge(0); // Expire immediately
-        response.addCookie(jwtCookie);
+        // Drop the cached authentications of the tokens and clear the JWT cookies
+        for (String name : new String[] { JwtCookies.ACCESS_TOKEN, JwtCookies.REFRESH_TOKEN }) {
+            String token = JwtCookies.read(request, name);
+            if (token != null) {
+                authenticationCache.invalidateToken(token);
+            }
+            response.addCookie(JwtCookies.create(name, "", Duration.ZERO)); // Expire immediately
+        }
 
         return ResponseEntity.ok().body(new LogoutResponse("Logged out successfully"));
     }
@@ -3,12 +3,25 @@ package com.borsibaar.controller;
 import com.borsibaar.dto.*;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.InventoryService;
+import com.borsibaar.service.InventorySnapshotCache;
+import com.borsibaar.service.OrganizationService;
+import com.borsibaar.service.PriceHistory;
+import com.borsibaar.service.PriceTicker;
 import com.borsibaar.util.SecurityUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 @RestController
@@ -17,21 +30,69 @@ import java.util.List;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final InventorySnapshotCache inventorySnapshotCache;
+    private final PriceTicker priceTicker;
+    private final PriceHistory priceHistory;
+    private final OrganizationService organizationService;
 
+    /**
+     * Served from a versioned snapshot with a strong ETag. Clients sending a
+     * matching If-None-Match get 304 without the database being read. The
+     * X-Inventory-Version header holds the version to pass to
+     * {@code /changes} afterwards.
+     */
     @GetMapping
-    public List<InventoryResponseDto> getOrganizationInventory(
+    public ResponseEntity<byte[]> getOrganizationInventory(
             @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long organizationId,
+            WebRequest request) {
+        Long orgId = resolveOrganizationId(organizationId);
+        return snapshotResponse(inventorySnapshotCache.get(orgId, categoryId), request);
+    }
+
+    /**
+     * Categories with active products and their inventory in one response,
+     * served like the inventory list from a versioned snapshot.
+     */
+    @GetMapping("/board")
+    public ResponseEntity<byte[]> getMarketBoard(
+            @RequestParam(required = false) Long organizationId,
+            WebRequest request) {
+        Long orgId = resolveOrganizationId(organizationId);
+        return snapshotResponse(inventorySnapshotCache.getBoard(orgId), request);
+    }
+
+    /**
+     * Inventory rows whose price or quantity changed since the version of an
+     * earlier response. Pass the returned version as {@code since} on the
+     * next call.
+     */
+    @GetMapping("/changes")
+    public InventoryChangesDto getInventoryChanges(
+            @RequestParam(required = false) String since,
             @RequestParam(required = false) Long organizationId) {
-        // If organizationId is provided, use it (for public access)
-        // Otherwise, get from authenticated user
-        Long orgId;
-        if (organizationId != null) {
-            orgId = organizationId;
-        } else {
-            User user = SecurityUtils.getCurrentUser();
-            orgId = user.getOrganizationId();
-        }
-        return inventoryService.getByOrganization(orgId, categoryId);
+        Long orgId = resolveOrganizationId(organizationId);
+        return inventoryService.getChanges(orgId, since);
+    }
+
+    /**
+     * Streams price and quantity changes of the organization's products as
+     * "tick" events. Subscribe before loading the inventory so no change is
+     * missed in between. Streams are capped per organization and per client
+     * address, requests past the caps get 429. The address is the client's,
+     * forwarded by the trusted reverse proxy.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrganizationInventory(
+            @RequestParam(required = false) Long organizationId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        Long orgId = resolveOrganizationId(organizationId);
+        // Streams are only registered for organizations that exist
+        organizationService.requireExists(orgId);
+        // Stop nginx from buffering the stream
+        response.setHeader("X-Accel-Buffering", "no");
+        return priceTicker.subscribe(orgId, request.getRemoteAddr());
     }
 
     @GetMapping("/product/{productId}")
@@ -44,10 +105,6 @@ public class InventoryController {
     @ResponseStatus(HttpStatus.CREATED)
     public InventoryResponseDto addStock(@RequestBody @Valid AddStockRequestDto request) {
         User user = SecurityUtils.getCurrentUser();
-        System.out.println("Received request: " + request); // DEBUG
-        System.out.println("ProductId: " + request.productId()); // DEBUG
-        System.out.println("Quantity: " + request.quantity()); // DEBUG
-
         return inventoryService.addStock(request, user.getId(), user.getOrganizationId());
     }
 
@@ -63,10 +120,40 @@ public class InventoryController {
         return inventoryService.adjustStock(request, user.getId(), user.getOrganizationId());
     }
 
+    /**
+     * Transaction history of a product, newest first, one page at a time.
+     *
+     * @param type   Only transactions of this type, e.g. SALE
+     * @param from   Only transactions at or after this time
+     * @param to     Only transactions before this time
+     * @param cursor {@code nextCursor} of the previous page
+     * @param limit  Page size, at most 200
+     */
     @GetMapping("/product/{productId}/history")
-    public List<InventoryTransactionResponseDto> getTransactionHistory(@PathVariable Long productId) {
+    public InventoryTransactionPageDto getTransactionHistory(@PathVariable Long productId,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${app.inventory.history-page-size:50}") int limit) {
+        User user = SecurityUtils.getCurrentUser();
+        return inventoryService.getTransactionHistory(productId, user.getOrganizationId(), type, from, to, cursor,
+                limit);
+    }
+
+    /**
+     * Price candles of a product for charts, served from memory. Candles
+     * without price changes repeat the previous close.
+     *
+     * @param bucket Candle size: 10s, 30s, 1m, 5m or 15m
+     * @param limit  Number of candles ending with the current one, at most 500
+     */
+    @GetMapping("/product/{productId}/candles")
+    public List<PriceCandleDto> getPriceCandles(@PathVariable Long productId,
+            @RequestParam(defaultValue = "1m") String bucket,
+            @RequestParam(defaultValue = "60") int limit) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.getTransactionHistory(productId, user.getOrganizationId());
+        return priceHistory.getCandles(user.getOrganizationId(), productId, bucket, limit);
     }
 
     @GetMapping("/sales-stats")
@@ -80,4 +167,28 @@ public class InventoryController {
         User user = SecurityUtils.getCurrentUser();
         return inventoryService.getStationSalesStats(user.getOrganizationId());
     }
+
+    /**
+     * The given organization for public access, otherwise the current user's.
+     */
+    private static Long resolveOrganizationId(Long organizationId) {
+        if (organizationId != null) {
+            return organizationId;
+        }
+        User user = SecurityUtils.getCurrentUser();
+        return user.getOrganizationId();
+    }
+
+    private static ResponseEntity<byte[]> snapshotResponse(InventorySnapshotCache.Snapshot snapshot,
+            WebRequest request) {
+        if (request.checkNotModified(snapshot.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .header("X-Inventory-Version", snapshot.changesVersion())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.json());
+    }
 }
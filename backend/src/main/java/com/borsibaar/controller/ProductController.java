@@ -26,7 +26,8 @@ public class ProductController {
 
     @GetMapping("/{id}")
     public ProductResponseDto get(@PathVariable Long id) {
-        return productService.getById(id);
+        User user = SecurityUtils.getCurrentUser();
+        return productService.getById(id, user.getOrganizationId());
     }
 
     @DeleteMapping("/{id}")
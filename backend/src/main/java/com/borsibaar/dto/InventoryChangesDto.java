@@ -0,0 +1,9 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record InventoryChangesDto(
+        String version,
+        boolean full,
+        List<InventoryResponseDto> inventory) {
+}
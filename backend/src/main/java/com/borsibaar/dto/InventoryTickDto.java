@@ -0,0 +1,10 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+
+public record InventoryTickDto(
+        Long productId,
+        BigDecimal quantity,
+        BigDecimal unitPrice,
+        String updatedAt) {
+}
@@ -0,0 +1,12 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+/**
+ * A page of transaction history, newest first. {@code nextCursor} is null on
+ * the last page.
+ */
+public record InventoryTransactionPageDto(
+        List<InventoryTransactionResponseDto> items,
+        String nextCursor) {
+}
@@ -0,0 +1,12 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+
+public record PriceCandleDto(
+        String start,
+        BigDecimal open,
+        BigDecimal high,
+        BigDecimal low,
+        BigDecimal close,
+        int changes) {
+}
@@ -44,7 +44,16 @@ public class Inventory {
     @Column(name = "adjusted_price", precision = 19, scale = 4)
     private BigDecimal adjustedPrice;
 
-    @OneToOne(fetch = FetchType.EAGER)
+    // Written only by the native sale update
+    @Column(name = "last_sale_at", insertable = false, updatable = false)
+    private OffsetDateTime lastSaleAt;
+
+    // Bumped by every write, including the native sale and price decay updates
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
@@ -17,13 +17,22 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 public class InventoryTransaction {
+    // Sequence rather than identity so that inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_transactions_seq")
+    @SequenceGenerator(name = "inventory_transactions_seq", sequenceName = "inventory_transactions_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "inventory_id", nullable = false, insertable = false, updatable = false)
     private Long inventoryId;
 
+    // Copied from the inventory row so that organization and product scans need no join
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
     @Column(name = "transaction_type", nullable = false, length = 20)
     private String transactionType;
 
@@ -57,7 +66,7 @@ public class InventoryTransaction {
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "inventory_id")
     private Inventory inventory;
 
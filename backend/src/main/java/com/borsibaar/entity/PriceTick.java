@@ -0,0 +1,37 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Price of an inventory row after a change that moved no stock, such as a
+ * price decay. Append only, stock movements stay in inventory_transactions.
+ */
+@Entity
+@Table(name = "price_ticks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceTick {
+    // Sequence rather than identity so that inserts can be batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "price_ticks_seq")
+    @SequenceGenerator(name = "price_ticks_seq", sequenceName = "price_ticks_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "inventory_id", nullable = false)
+    private Long inventoryId;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal price;
+}
@@ -0,0 +1,42 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Sales totals per product in hourly buckets, maintained incrementally as
+ * sales are persisted.
+ */
+@Entity
+@Table(name = "product_sales_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductSalesStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private OffsetDateTime bucketStart;
+
+    @Column(name = "line_count", nullable = false)
+    private Long lineCount;
+
+    @Column(name = "quantity_sold", nullable = false, precision = 19, scale = 4)
+    private BigDecimal quantitySold;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal revenue;
+}
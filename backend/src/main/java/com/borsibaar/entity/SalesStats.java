@@ -0,0 +1,46 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Sales totals per user and bar station in hourly buckets, maintained
+ * incrementally as sales are persisted.
+ */
+@Entity
+@Table(name = "sales_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+public class SalesStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "bar_station_id")
+    private Long barStationId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private OffsetDateTime bucketStart;
+
+    @Column(name = "sales_count", nullable = false)
+    private Long salesCount;
+
+    @Column(name = "quantity_sold", nullable = false, precision = 19, scale = 4)
+    private BigDecimal quantitySold;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal revenue;
+}
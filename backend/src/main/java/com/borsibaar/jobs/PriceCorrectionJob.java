@@ -1,90 +1,143 @@
 package com.borsibaar.jobs;
 
-import com.borsibaar.entity.Inventory;
-import com.borsibaar.entity.InventoryTransaction;
-import com.borsibaar.entity.Product;
-import com.borsibaar.repository.*;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.service.MarketEngine;
+import com.borsibaar.service.MarketWriteBehind;
+import com.borsibaar.service.ReferenceIds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.OffsetDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Lowers prices of products that stopped selling.
+ * <p>
+ * Every sale schedules the sold product's next decay one interval later in
+ * the {@link MarketEngine}'s timing wheel. A background thread turns the wheel
+ * every tick, so prices decay within a tick of their deadline, and queues the
+ * lowered prices on the {@link MarketWriteBehind}, which persists them in
+ * batches together with the sales. Nothing is polled from the database.
+ * <p>
+ * Only organizations that sold within the last interval decay. Decays are not
+ * journaled, so on startup the markets of those organizations are loaded and
+ * their prices keep decaying on schedule, including after a crash lost some
+ * decays. Idle organizations are loaded with their next sale.
+ */
+@Slf4j
 @Service
 public class PriceCorrectionJob {
 
-    private final InventoryRepository inventoryRepository;
-    private final InventoryTransactionRepository inventoryTransactionRepository;
-    private final ProductRepository productRepository;
+    private final MarketEngine marketEngine;
+    private final MarketWriteBehind marketWriteBehind;
+    private final OrganizationRepository organizationRepository;
+    private final ReferenceIds referenceIds;
+    private final MeterRegistry meterRegistry;
+    private final long intervalSeconds;
+    private final long tickMs;
 
-    public PriceCorrectionJob(InventoryRepository inventoryRepository,
-            InventoryTransactionRepository inventoryTransactionRepository,
-            ProductRepository productRepository) {
-        this.inventoryRepository = inventoryRepository;
-        this.inventoryTransactionRepository = inventoryTransactionRepository;
-        this.productRepository = productRepository;
+    private volatile boolean running;
+    private Thread ticker;
+
+    public PriceCorrectionJob(MarketEngine marketEngine,
+            MarketWriteBehind marketWriteBehind,
+            OrganizationRepository organizationRepository,
+            ReferenceIds referenceIds,
+            MeterRegistry meterRegistry,
+            @Value("${app.price-decay.interval-seconds:60}") long intervalSeconds,
+            @Value("${app.price-decay.tick-ms:100}") long tickMs) {
+        this.marketEngine = marketEngine;
+        this.marketWriteBehind = marketWriteBehind;
+        this.organizationRepository = organizationRepository;
+        this.referenceIds = referenceIds;
+        this.meterRegistry = meterRegistry;
+        this.intervalSeconds = intervalSeconds;
+        this.tickMs = tickMs;
     }
 
-    @Scheduled(cron = "0 * * * * *")
-    public void adjustPrices() {
-        System.out.println("Running price reduction job");
-        List<Product> inactiveProducts = productRepository.findByActiveOrgAndInactiveSalesLastMinute();
+    @PostConstruct
+    public void start() {
+        running = true;
+        ticker = Thread.ofPlatform()
+                .name("price-decay")
+                .daemon()
+                .start(this::runTicker);
+    }
 
-        if (inactiveProducts.isEmpty()) {
-            System.out.println("No product prices to update automatically");
-            return;
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker.join(TimeUnit.SECONDS.toMillis(10));
         }
+    }
 
-        int updatedCount = 0;
-        for (Product product : inactiveProducts) {
-            Inventory inventory = Optional.ofNullable(product.getInventory())
-                    .orElseGet(() -> {
-                        Inventory newInv = new Inventory();
-                        newInv.setOrganizationId(product.getOrganizationId());
-                        newInv.setProduct(product);
-                        newInv.setQuantity(BigDecimal.ZERO);
-                        newInv.setAdjustedPrice(product.getBasePrice());
-                        newInv.setCreatedAt(OffsetDateTime.now());
-                        newInv.setUpdatedAt(OffsetDateTime.now());
-                        return newInv;
-                    });
-
-            BigDecimal decreaseAmount = product.getOrganization().getPriceDecreaseStep();
-            BigDecimal minPrice = Optional.ofNullable(product.getMinPrice()).orElse(decreaseAmount);
-            BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice()).orElse(product.getBasePrice());
-            BigDecimal newPrice = currentPrice.subtract(decreaseAmount);
-            if (newPrice.compareTo(minPrice) < 0) {
-                newPrice = minPrice;
+    private void runTicker() {
+        loadActiveMarkets();
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
 
-            if (newPrice.compareTo(currentPrice) == 0) {
-                // already at lowest price
-                continue;
+            try {
+                decayDue();
+            } catch (Exception e) {
+                log.error("Price decay failed", e);
             }
+        }
+    }
 
-            inventory.setAdjustedPrice(newPrice);
-            inventory.setUpdatedAt(OffsetDateTime.now());
-            inventory = inventoryRepository.save(inventory);
+    private void loadActiveMarkets() {
+        try {
+            organizationRepository.findIdsWithSalesSince(OffsetDateTime.now().minusSeconds(intervalSeconds))
+                    .forEach(marketEngine::load);
+        } catch (Exception e) {
+            // Markets still load on their next sale
+            log.error("Loading markets for price decay failed", e);
+        }
+    }
 
-            // Create price reduction transaction
-            InventoryTransaction transaction = new InventoryTransaction();
-            transaction.setInventory(inventory);
-            transaction.setTransactionType("ADJUSTMENT");
-            transaction.setQuantityChange(BigDecimal.ZERO);
-            transaction.setQuantityBefore(inventory.getQuantity());
-            transaction.setQuantityAfter(inventory.getQuantity());
-            transaction.setPriceBefore(currentPrice);
-            transaction.setPriceAfter(newPrice);
-            transaction.setReferenceId("REDUCE-" + System.currentTimeMillis());
-            transaction.setNotes("PriceCorrectionJob");
-            transaction.setCreatedBy(null);
-            transaction.setCreatedAt(OffsetDateTime.now());
-            inventoryTransactionRepository.save(transaction);
+    /**
+     * Lowers the prices whose decay is due and queues them for persistence,
+     * one reference ID per organization.
+     */
+    void decayDue() {
+        Timer.Sample sample = Timer.start();
+        // Organizations are committed in parallel
+        AtomicInteger organizations = new AtomicInteger();
+        int decayed = marketEngine.decayDue(System.currentTimeMillis(), (organizationId, decays) -> {
+            marketWriteBehind.enqueue(new MarketWriteBehind.PendingDecay(referenceIds.next("REDUCE-"),
+                    organizationId, OffsetDateTime.now(), decays));
+            Counter.builder("price.correction.updated")
+                    .description("Products whose price was lowered by price correction")
+                    .tag("organization", String.valueOf(organizationId))
+                    .register(meterRegistry)
+                    .increment(decays.size());
+            organizations.incrementAndGet();
+        });
 
-            updatedCount++;
+        // Most ticks fire nothing, only ticks that lowered prices are timed
+        if (decayed > 0) {
+            long durationNanos = sample.stop(Timer.builder("price.correction.run")
+                    .description("Duration of a tick that lowered prices")
+                    .register(meterRegistry));
+            DistributionSummary.builder("price.correction.organizations")
+                    .description("Organizations whose prices were lowered in a tick")
+                    .register(meterRegistry)
+                    .record(organizations.get());
+            log.debug("Lowered {} prices in {} ms", decayed, durationNanos / 1_000_000);
         }
-        System.out.println("Updated prices of " + updatedCount + " products.");
     }
 }
@@ -0,0 +1,49 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.InventoryTransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps monthly partitions of {@code inventory_transactions} created ahead of
+ * time.
+ * <p>
+ * Rows outside every monthly partition land in the default partition, and a
+ * month can no longer be created once the default partition holds rows for
+ * it. Partitions are therefore created a few months before they are needed,
+ * so a missed run does no harm.
+ */
+@Slf4j
+@Service
+public class TransactionPartitionJob {
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+
+    public TransactionPartitionJob(InventoryTransactionRepository inventoryTransactionRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.transaction-partitions.months-ahead:2}") int monthsAhead) {
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+    }
+
+    @Scheduled(initialDelayString = "${app.transaction-partitions.initial-delay-ms:60000}",
+            fixedDelayString = "${app.transaction-partitions.check-ms:21600000}")
+    public void createPartitions() {
+        try {
+            Integer created = transactionTemplate.execute(
+                    status -> inventoryTransactionRepository.createPartitions(monthsAhead));
+            if (created != null && created > 0) {
+                log.info("Created {} inventory transaction partitions", created);
+            }
+        } catch (Exception e) {
+            log.error("Failed to create inventory transaction partitions", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.borsibaar.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+/**
+ * Bulk inventory writes that do not go through entity state.
+ */
+public interface InventoryBatchRepository {
+
+    /**
+     * Net effect of one or more queued sales and price decays on an inventory
+     * row.
+     *
+     * @param quantity   Total quantity sold
+     * @param price      Price after the last of the changes, null keeps the
+     *                   stored price
+     * @param updatedAt  Time of the last of the changes
+     * @param lastSaleAt Time of the last of the sales, null if only prices
+     *                   decayed
+     */
+    record InventoryDelta(Long inventoryId, BigDecimal quantity, BigDecimal price, OffsetDateTime updatedAt,
+            OffsetDateTime lastSaleAt) {
+
+        /**
+         * Combines this delta with one applied after it.
+         */
+        public InventoryDelta then(InventoryDelta later) {
+            OffsetDateTime latestSale = lastSaleAt == null || (later.lastSaleAt != null
+                    && later.lastSaleAt.isAfter(lastSaleAt)) ? later.lastSaleAt : lastSaleAt;
+            return new InventoryDelta(inventoryId, quantity.add(later.quantity),
+                    later.price != null ? later.price : price, later.updatedAt,
+                    latestSale);
+        }
+    }
+
+    /**
+     * Locks all affected rows with one query, in ID order so concurrent
+     * writers cannot deadlock, then applies the deltas as a single JDBC batch.
+     * Quantities are decreased relatively, so they commute with stock changes
+     * made while the sales were queued. Stock changes are validated against
+     * the market, which already accounts for queued sales, so a sale never
+     * exceeds the stored quantity; if one does the deltas are rejected with a
+     * {@link org.springframework.dao.DataIntegrityViolationException} instead
+     * of being clamped.
+     */
+    void applyDeltas(Collection<InventoryDelta> deltas);
+}
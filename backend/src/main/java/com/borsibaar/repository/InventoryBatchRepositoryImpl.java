@@ -0,0 +1,80 @@
+package com.borsibaar.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class InventoryBatchRepositoryImpl implements InventoryBatchRepository {
+
+    private static final String UPDATE_SQL = """
+            UPDATE inventory
+            SET quantity = quantity - ?,
+                adjusted_price = COALESCE(?, adjusted_price),
+                updated_at = ?,
+                last_sale_at = CASE WHEN last_sale_at IS NULL OR last_sale_at < ? THEN COALESCE(?, last_sale_at)
+                                    ELSE last_sale_at END,
+                version = version + 1
+            WHERE id = ?
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void applyDeltas(Collection<InventoryDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<InventoryDelta> ordered = deltas.stream()
+                .sorted(Comparator.comparing(InventoryDelta::inventoryId))
+                .toList();
+
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            String placeholders = ordered.stream().map(delta -> "?").collect(Collectors.joining(", "));
+            Map<Long, BigDecimal> stored = new HashMap<>();
+            try (PreparedStatement lock = connection.prepareStatement(
+                    "SELECT id, quantity FROM inventory WHERE id IN (" + placeholders
+                            + ") ORDER BY id FOR UPDATE")) {
+                for (int i = 0; i < ordered.size(); i++) {
+                    lock.setLong(i + 1, ordered.get(i).inventoryId());
+                }
+                try (ResultSet rows = lock.executeQuery()) {
+                    while (rows.next()) {
+                        stored.put(rows.getLong(1), rows.getBigDecimal(2));
+                    }
+                }
+            }
+            for (InventoryDelta delta : ordered) {
+                BigDecimal quantity = stored.get(delta.inventoryId());
+                if (quantity != null && quantity.compareTo(delta.quantity()) < 0) {
+                    throw new DataIntegrityViolationException("Selling " + delta.quantity() + " of inventory "
+                            + delta.inventoryId() + " exceeds its stored quantity " + quantity);
+                }
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+                for (InventoryDelta delta : ordered) {
+                    update.setBigDecimal(1, delta.quantity());
+                    update.setBigDecimal(2, delta.price());
+                    update.setObject(3, delta.updatedAt());
+                    update.setObject(4, delta.lastSaleAt());
+                    update.setObject(5, delta.lastSaleAt());
+                    update.setLong(6, delta.inventoryId());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        });
+    }
+}
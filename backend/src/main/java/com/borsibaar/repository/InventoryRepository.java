@@ -1,24 +1,93 @@
 package com.borsibaar.repository;
 
+import com.borsibaar.dto.InventoryResponseDto;
 import com.borsibaar.entity.Inventory;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+public interface InventoryRepository extends JpaRepository<Inventory, Long>, InventoryBatchRepository {
+
+    /**
+     * Inventory row of the market board with the category it is listed under.
+     */
+    record BoardRow(Long categoryId, String categoryName, boolean dynamicPricing, InventoryResponseDto inventory) {
+
+        public BoardRow(Long categoryId, String categoryName, boolean dynamicPricing, Long id,
+                Long organizationId, Long productId, String productName, BigDecimal quantity,
+                BigDecimal unitPrice, String description, BigDecimal basePrice, BigDecimal minPrice,
+                BigDecimal maxPrice, OffsetDateTime updatedAt) {
+            this(categoryId, categoryName, dynamicPricing, new InventoryResponseDto(id, organizationId, productId,
+                    productName, quantity, unitPrice, description, basePrice, minPrice, maxPrice, updatedAt));
+        }
+    }
+
+    @EntityGraph(attributePaths = "product")
     Optional<Inventory> findByOrganizationIdAndProductId(Long organizationId, Long productId);
 
+    @EntityGraph(attributePaths = { "product", "product.category" })
     List<Inventory> findByOrganizationId(Long organizationId);
 
-    @Query("SELECT i FROM Inventory i JOIN Product p ON i.productId = p.id " +
-            "WHERE i.organizationId = :organizationId AND p.categoryId = :categoryId")
-    List<Inventory> findByOrganizationIdAndCategoryId(@Param("organizationId") Long organizationId,
-            @Param("categoryId") Long categoryId);
+    /**
+     * Inventory of the organization's active products as response rows, read
+     * in a single query and sorted by product name.
+     */
+    @Query("""
+            SELECT new com.borsibaar.dto.InventoryResponseDto(
+                i.id, i.organizationId, p.id, p.name, i.quantity, COALESCE(i.adjustedPrice, p.basePrice),
+                p.description, p.basePrice, p.minPrice, p.maxPrice, i.updatedAt)
+            FROM Inventory i JOIN Product p ON i.productId = p.id
+            WHERE i.organizationId = :organizationId AND p.isActive = true
+            ORDER BY p.name
+            """)
+    List<InventoryResponseDto> findResponsesByOrganizationId(@Param("organizationId") Long organizationId);
+
+    @Query("""
+            SELECT new com.borsibaar.dto.InventoryResponseDto(
+                i.id, i.organizationId, p.id, p.name, i.quantity, COALESCE(i.adjustedPrice, p.basePrice),
+                p.description, p.basePrice, p.minPrice, p.maxPrice, i.updatedAt)
+            FROM Inventory i JOIN Product p ON i.productId = p.id
+            WHERE i.organizationId = :organizationId AND p.categoryId = :categoryId AND p.isActive = true
+            ORDER BY p.name
+            """)
+    List<InventoryResponseDto> findResponsesByOrganizationIdAndCategoryId(
+            @Param("organizationId") Long organizationId, @Param("categoryId") Long categoryId);
+
+    @Query("""
+            SELECT new com.borsibaar.dto.InventoryResponseDto(
+                i.id, i.organizationId, p.id, p.name, i.quantity, COALESCE(i.adjustedPrice, p.basePrice),
+                p.description, p.basePrice, p.minPrice, p.maxPrice, i.updatedAt)
+            FROM Inventory i JOIN Product p ON i.productId = p.id
+            WHERE i.organizationId = :organizationId AND p.id IN :productIds AND p.isActive = true
+            ORDER BY p.name
+            """)
+    List<InventoryResponseDto> findResponsesByOrganizationIdAndProductIdIn(
+            @Param("organizationId") Long organizationId, @Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Inventory of the organization's active products with their categories,
+     * sorted by category and then product name so rows of one category are
+     * adjacent.
+     */
+    @Query("""
+            SELECT new com.borsibaar.repository.InventoryRepository$BoardRow(
+                c.id, c.name, c.dynamicPricing,
+                i.id, i.organizationId, p.id, p.name, i.quantity, COALESCE(i.adjustedPrice, p.basePrice),
+                p.description, p.basePrice, p.minPrice, p.maxPrice, i.updatedAt)
+            FROM Inventory i JOIN Product p ON i.productId = p.id JOIN Category c ON p.categoryId = c.id
+            WHERE i.organizationId = :organizationId AND p.isActive = true
+            ORDER BY c.name, c.id, p.name
+            """)
+    List<BoardRow> findBoardRowsByOrganizationId(@Param("organizationId") Long organizationId);
 
     boolean existsByProductId(Long productId);
 }
@@ -0,0 +1,45 @@
+package com.borsibaar.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyset pagination over the transaction history of an inventory row.
+ */
+public interface InventoryTransactionHistoryRepository {
+
+    /**
+     * One page of history, newest first.
+     *
+     * @param transactionType Only transactions of this type, or all if null
+     * @param from            Only transactions created at or after this time, or
+     *                        no lower bound if null
+     * @param to              Only transactions created before this time, or no
+     *                        upper bound if null
+     * @param afterCreatedAt  Creation time of the last transaction of the
+     *                        previous page, or null for the first page
+     * @param afterId         ID of the last transaction of the previous page
+     * @param limit           Maximum number of transactions
+     */
+    record HistoryQuery(Long inventoryId, String transactionType, OffsetDateTime from, OffsetDateTime to,
+            OffsetDateTime afterCreatedAt, Long afterId, int limit) {
+    }
+
+    /**
+     * Columns of a transaction shown in the history, read without loading
+     * the entity.
+     */
+    record HistoryRow(Long id, Long inventoryId, String transactionType, BigDecimal quantityChange,
+            BigDecimal quantityBefore, BigDecimal quantityAfter, BigDecimal priceBefore, BigDecimal priceAfter,
+            String referenceId, String notes, UUID createdBy, OffsetDateTime createdAt) {
+    }
+
+    /**
+     * Reads the page ordered by {@code (created_at, id)} descending, which
+     * matches the {@code idx_inventory_trans_inventory_created} index, so
+     * every page costs the same no matter how deep it is.
+     */
+    List<HistoryRow> findHistoryPage(HistoryQuery query);
+}
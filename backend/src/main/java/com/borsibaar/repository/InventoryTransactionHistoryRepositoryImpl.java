@@ -0,0 +1,54 @@
+package com.borsibaar.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+class InventoryTransactionHistoryRepositoryImpl implements InventoryTransactionHistoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<HistoryRow> findHistoryPage(HistoryQuery query) {
+        StringBuilder jpql = new StringBuilder("SELECT new " + HistoryRow.class.getName() + """
+                (it.id, it.inventoryId, it.transactionType, it.quantityChange, it.quantityBefore, it.quantityAfter,
+                 it.priceBefore, it.priceAfter, it.referenceId, it.notes, it.createdBy, it.createdAt)
+                FROM InventoryTransaction it
+                WHERE it.inventoryId = :inventoryId""");
+        if (query.transactionType() != null) {
+            jpql.append(" AND it.transactionType = :transactionType");
+        }
+        if (query.from() != null) {
+            jpql.append(" AND it.createdAt >= :from");
+        }
+        if (query.to() != null) {
+            jpql.append(" AND it.createdAt < :to");
+        }
+        if (query.afterCreatedAt() != null) {
+            // Row comparison, so the database continues the index scan where the previous page ended
+            jpql.append(" AND (it.createdAt, it.id) < (:afterCreatedAt, :afterId)");
+        }
+        jpql.append(" ORDER BY it.createdAt DESC, it.id DESC");
+
+        TypedQuery<HistoryRow> typed = entityManager.createQuery(jpql.toString(), HistoryRow.class)
+                .setParameter("inventoryId", query.inventoryId())
+                .setMaxResults(query.limit());
+        if (query.transactionType() != null) {
+            typed.setParameter("transactionType", query.transactionType());
+        }
+        if (query.from() != null) {
+            typed.setParameter("from", query.from());
+        }
+        if (query.to() != null) {
+            typed.setParameter("to", query.to());
+        }
+        if (query.afterCreatedAt() != null) {
+            typed.setParameter("afterCreatedAt", query.afterCreatedAt());
+            typed.setParameter("afterId", query.afterId());
+        }
+        return typed.getResultList();
+    }
+}
@@ -6,33 +6,61 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
+public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long>,
+        InventoryTransactionHistoryRepository {
 
-    List<InventoryTransaction> findByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
+    interface PriceChange {
+        OffsetDateTime getCreatedAt();
+
+        BigDecimal getPriceBefore();
+
+        BigDecimal getPriceAfter();
+    }
 
     Optional<InventoryTransaction> findFirstByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
 
+    /**
+     * Price changes of an inventory row since the given time, oldest first.
+     * Only the columns needed for price charts are read.
+     */
+    @Query("""
+            SELECT it.createdAt AS createdAt, it.priceBefore AS priceBefore, it.priceAfter AS priceAfter
+            FROM InventoryTransaction it
+            WHERE it.inventoryId = :inventoryId
+              AND it.createdAt >= :since
+              AND it.priceBefore <> it.priceAfter
+            ORDER BY it.createdAt
+            """)
+    List<PriceChange> findPriceChangesSince(@Param("inventoryId") Long inventoryId,
+            @Param("since") OffsetDateTime since);
+
     List<InventoryTransaction> findByReferenceId(String referenceId);
 
+    boolean existsByReferenceId(String referenceId);
+
     @Query("""
             SELECT it FROM InventoryTransaction it
-            JOIN Inventory i ON it.inventoryId = i.id
-            WHERE i.organizationId = :organizationId
+            WHERE it.organizationId = :organizationId
             AND it.transactionType = 'SALE'
             ORDER BY it.createdAt DESC
             """)
     List<InventoryTransaction> findSaleTransactionsByOrganizationId(@Param("organizationId") Long organizationId);
 
+    /**
+     * Creates the missing monthly partitions of the table, from the current
+     * month up to the given number of months ahead.
+     *
+     * @return Number of partitions created
+     */
     @Query(value = """
-              SELECT DISTINCT i.organizationId
-              FROM InventoryTransaction it
-              JOIN Inventory i ON i.id = it.inventoryId
-              WHERE it.transactionType = 'SALE'
-                AND it.createdAt >= (CURRENT_TIMESTAMP - 60 SECOND)
-            """)
-    List<Long> findOrganizationIdsWithSalesInLastMinute();
+            SELECT create_inventory_transaction_partitions(CURRENT_TIMESTAMP,
+                CURRENT_TIMESTAMP + make_interval(months => :monthsAhead))
+            """, nativeQuery = true)
+    int createPartitions(@Param("monthsAhead") int monthsAhead);
 }
@@ -2,6 +2,22 @@ package com.borsibaar.repository;
 
 import com.borsibaar.entity.Organization;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
 
 public interface OrganizationRepository extends JpaRepository<Organization, Long> {
+
+    /**
+     * Organizations that sold something at or after the given time, whose
+     * prices still decay.
+     */
+    @Query(value = """
+            SELECT DISTINCT inv.organization_id
+            FROM inventory inv
+            WHERE inv.last_sale_at >= :since
+            """, nativeQuery = true)
+    List<Long> findIdsWithSalesSince(@Param("since") OffsetDateTime since);
 }
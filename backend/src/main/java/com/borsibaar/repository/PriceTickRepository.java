@@ -0,0 +1,25 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.PriceTick;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+public interface PriceTickRepository extends JpaRepository<PriceTick, Long> {
+
+    /**
+     * Price ticks of an inventory row since the given time, oldest first.
+     */
+    @Query("""
+            SELECT pt FROM PriceTick pt
+            WHERE pt.inventoryId = :inventoryId
+              AND pt.createdAt >= :since
+            ORDER BY pt.createdAt, pt.id
+            """)
+    List<PriceTick> findTicksSince(@Param("inventoryId") Long inventoryId, @Param("since") OffsetDateTime since);
+}
@@ -0,0 +1,33 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.ProductSalesStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+@Repository
+public interface ProductSalesStatsRepository extends JpaRepository<ProductSalesStats, Long> {
+
+    /**
+     * Adds sale lines to their product/hour bucket, creating the bucket on
+     * first use.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_sales_stats (organization_id, product_id, bucket_start,
+                                             line_count, quantity_sold, revenue)
+            VALUES (:organizationId, :productId, :bucketStart, :lineCount, :quantity, :revenue)
+            ON CONFLICT (organization_id, product_id, bucket_start) DO UPDATE
+            SET line_count = product_sales_stats.line_count + EXCLUDED.line_count,
+                quantity_sold = product_sales_stats.quantity_sold + EXCLUDED.quantity_sold,
+                revenue = product_sales_stats.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int addSaleLines(@Param("organizationId") Long organizationId, @Param("productId") Long productId,
+            @Param("bucketStart") OffsetDateTime bucketStart, @Param("lineCount") long lineCount,
+            @Param("quantity") BigDecimal quantity, @Param("revenue") BigDecimal revenue);
+}
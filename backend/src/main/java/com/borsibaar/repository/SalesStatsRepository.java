@@ -0,0 +1,74 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.SalesStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SalesStatsRepository extends JpaRepository<SalesStats, Long> {
+
+    interface UserStationTotals {
+        UUID getUserId();
+
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getRevenue();
+    }
+
+    interface StationTotals {
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getRevenue();
+    }
+
+    /**
+     * Adds sales to their user/station/hour bucket, creating the bucket on
+     * first use.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO sales_stats (organization_id, user_id, bar_station_id, bucket_start,
+                                     sales_count, quantity_sold, revenue)
+            VALUES (:organizationId, :userId, :barStationId, :bucketStart, :salesCount, :quantity, :revenue)
+            ON CONFLICT (organization_id, user_id, bar_station_id, bucket_start) DO UPDATE
+            SET sales_count = sales_stats.sales_count + EXCLUDED.sales_count,
+                quantity_sold = sales_stats.quantity_sold + EXCLUDED.quantity_sold,
+                revenue = sales_stats.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int addSales(@Param("organizationId") Long organizationId, @Param("userId") UUID userId,
+            @Param("barStationId") Long barStationId, @Param("bucketStart") OffsetDateTime bucketStart,
+            @Param("salesCount") long salesCount, @Param("quantity") BigDecimal quantity,
+            @Param("revenue") BigDecimal revenue);
+
+    @Query("""
+            SELECT s.userId AS userId, s.barStationId AS barStationId,
+                   SUM(s.salesCount) AS salesCount, SUM(s.revenue) AS revenue
+            FROM SalesStats s
+            WHERE s.organizationId = :organizationId
+            AND s.userId IS NOT NULL
+            GROUP BY s.userId, s.barStationId
+            """)
+    List<UserStationTotals> findUserStationTotals(@Param("organizationId") Long organizationId);
+
+    @Query("""
+            SELECT s.barStationId AS barStationId,
+                   SUM(s.salesCount) AS salesCount, SUM(s.revenue) AS revenue
+            FROM SalesStats s
+            WHERE s.organizationId = :organizationId
+            AND s.barStationId IS NOT NULL
+            GROUP BY s.barStationId
+            """)
+    List<StationTotals> findStationTotals(@Param("organizationId") Long organizationId);
+}
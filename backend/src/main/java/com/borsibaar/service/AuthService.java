@@ -15,16 +15,22 @@ public class AuthService {
     private final JwtService jwtService;
     private final UserMapper userMapper;
     private final RoleRepository roleRepository;
+    private final AuthenticationCache authenticationCache;
 
-    public record AuthResult(UserDTO dto, boolean needsOnboarding) {
+    /**
+     * Outcome of a login. The DTO carries the refresh token, the access token
+     * is returned separately.
+     */
+    public record AuthResult(UserDTO dto, String accessToken, boolean needsOnboarding) {
     }
 
     public AuthService(UserRepository userRepository, JwtService jwtService, UserMapper userMapper,
-            RoleRepository roleRepository) {
+            RoleRepository roleRepository, AuthenticationCache authenticationCache) {
         this.userRepository = userRepository;
         this.jwtService = jwtService;
         this.userMapper = userMapper;
         this.roleRepository = roleRepository;
+        this.authenticationCache = authenticationCache;
     }
 
     public AuthResult processOAuthLogin(OAuth2AuthenticationToken auth) {
@@ -47,11 +53,13 @@ public class AuthService {
 
         user.setName(name); // update name in case it changed
         userRepository.save(user);
+        authenticationCache.invalidateUser(user.getEmail());
 
-        // Issue JWT
+        // Issue JWTs
         String token = jwtService.generateToken(user.getEmail());
+        String accessToken = jwtService.generateAccessToken(user);
         boolean needsOnboarding = (user.getOrganizationId() == null);
 
-        return new AuthResult(userMapper.toDto(user, token), needsOnboarding);
+        return new AuthResult(userMapper.toDto(user, token), accessToken, needsOnboarding);
     }
 }
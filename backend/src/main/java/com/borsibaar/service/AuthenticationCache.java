@@ -0,0 +1,108 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Users authenticated by a verified JWT without user claims, i.e. a refresh
+ * token or a token issued before access tokens existed, so that requests
+ * carrying the same token skip loading the user with its role.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the token, never the token itself.
+ * An entry lives for the configured TTL but never past the expiry of its
+ * token. Entries of a user must be invalidated when its role or organization
+ * changes.
+ */
+@Component
+public class AuthenticationCache {
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * A cached authentication: the user and the authorities derived from its
+     * role.
+     */
+    public record Entry(User user, List<GrantedAuthority> authorities, long expiresAtMs) {
+    }
+
+    @Autowired
+    public AuthenticationCache(@Value("${app.auth.cache-ttl-ms:300000}") long ttlMs,
+            @Value("${app.auth.cache-max-entries:10000}") int maxEntries) {
+        this(ttlMs, maxEntries, System::currentTimeMillis);
+    }
+
+    AuthenticationCache(long ttlMs, int maxEntries, LongSupplier clock) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public Optional<Entry> get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAtMs() <= clock.getAsLong()) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    public Entry put(String token, Date tokenExpiration, User user, List<GrantedAuthority> authorities) {
+        long now = clock.getAsLong();
+        long expiresAt = now + ttlMs;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        Entry entry = new Entry(user, List.copyOf(authorities), expiresAt);
+        if (expiresAt <= now) {
+            return entry;
+        }
+
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(existing -> existing.expiresAtMs() <= now);
+            if (entries.size() >= maxEntries) {
+                // Bound memory, entries are rebuilt on demand
+                entries.clear();
+            }
+        }
+        entries.put(hash(token), entry);
+        return entry;
+    }
+
+    public void invalidateToken(String token) {
+        entries.remove(hash(token));
+    }
+
+    public void invalidateUser(String email) {
+        entries.values().removeIf(entry -> email.equals(entry.user().getEmail()));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.borsibaar.exception.DuplicateResourceException;
 import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.mapper.CategoryMapper;
 import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.util.TransactionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,10 +19,13 @@ import java.util.List;
 public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
+    private final ProductCatalog productCatalog;
 
-    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper) {
+    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper,
+            ProductCatalog productCatalog) {
         this.categoryRepository = categoryRepository;
         this.categoryMapper = categoryMapper;
+        this.productCatalog = productCatalog;
     }
 
     @Transactional
@@ -76,6 +80,7 @@ public class CategoryService {
                 .map(category -> {
                     CategoryResponseDto dto = categoryMapper.toResponse(category);
                     categoryRepository.delete(category);
+                    TransactionUtils.afterCommit(() -> productCatalog.invalidate(organizationId));
                     return dto;
                 })
                 .orElseThrow(() -> new NotFoundException("Category not found: " + id));
@@ -4,36 +4,59 @@ import com.borsibaar.dto.*;
 import com.borsibaar.entity.BarStation;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
-import com.borsibaar.entity.Product;
 import com.borsibaar.entity.User;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryRepository.BoardRow;
+import com.borsibaar.repository.InventoryTransactionHistoryRepository;
+import com.borsibaar.repository.InventoryTransactionHistoryRepository.HistoryRow;
 import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesStatsRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.util.TransactionUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class InventoryService {
 
+    private static final int MAX_STOCK_CHANGE_ATTEMPTS = 5;
+    static final int MAX_HISTORY_PAGE_SIZE = 200;
+    private static final Set<String> TRANSACTION_TYPES = Set.of(
+            "SALE", "PURCHASE", "ADJUSTMENT", "RETURN", "TRANSFER_IN", "TRANSFER_OUT", "INITIAL");
+
     private final InventoryRepository inventoryRepository;
     private final InventoryTransactionRepository inventoryTransactionRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final BarStationRepository barStationRepository;
+    private final SalesStatsRepository salesStatsRepository;
     private final InventoryMapper inventoryMapper;
+    private final MarketEngine marketEngine;
+    private final InventoryVersions inventoryVersions;
+    private final ProductCatalog productCatalog;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
 
     @Transactional(readOnly = true)
     public List<InventoryResponseDto> getByOrganization(Long organizationId) {
@@ -42,67 +65,92 @@ public class InventoryService {
 
     @Transactional(readOnly = true)
     public List<InventoryResponseDto> getByOrganization(Long organizationId, Long categoryId) {
-        List<Inventory> inventories;
+        // Single query regardless of product count, inactive products are filtered out
+        return timedRead("board", () -> categoryId != null
+                ? inventoryRepository.findResponsesByOrganizationIdAndCategoryId(organizationId, categoryId)
+                : inventoryRepository.findResponsesByOrganizationId(organizationId));
+    }
+
+    /**
+     * Inventory rows changed since the version a client last received. Clients
+     * whose version is unknown or too old get every row and {@code full} set.
+     *
+     * @param since Version from a previous response, null for everything
+     */
+    @Transactional(readOnly = true)
+    public InventoryChangesDto getChanges(Long organizationId, String since) {
+        return timedRead("changes", () -> {
+            // Taken before querying, like the snapshots
+            InventoryVersions.Changes changes = inventoryVersions.changesSince(organizationId, parseVersion(since));
+            String version = inventoryVersions.epoch() + "-" + changes.version();
+            if (changes.full()) {
+                return new InventoryChangesDto(version, true,
+                        inventoryRepository.findResponsesByOrganizationId(organizationId));
+            }
+            List<InventoryResponseDto> changed = changes.productIds().isEmpty()
+                    ? List.of()
+                    : inventoryRepository.findResponsesByOrganizationIdAndProductIdIn(organizationId,
+                            changes.productIds());
+            return new InventoryChangesDto(version, false, changed);
+        });
+    }
 
-        if (categoryId != null) {
-            inventories = inventoryRepository.findByOrganizationIdAndCategoryId(organizationId, categoryId);
-        } else {
-            inventories = inventoryRepository.findByOrganizationId(organizationId);
+    /**
+     * Version number of a version from {@link #getChanges}, -1 when it is
+     * malformed or from a previous run.
+     */
+    private long parseVersion(String version) {
+        String prefix = inventoryVersions.epoch() + "-";
+        if (version == null || !version.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(version.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
         }
+    }
 
-        return inventories.stream()
-                .map(inv -> {
-                    InventoryResponseDto base = inventoryMapper.toResponse(inv);
-                    Product product = productRepository.findById(inv.getProductId())
-                            .orElse(null);
-
-                    if (product == null)
-                        return null;
-                    if (!product.isActive()) {
-                        return null;
-                    }
-
-                    String productName = product.getName();
-                    BigDecimal unitPrice = Optional.ofNullable(inv.getAdjustedPrice())
-                            .orElse(product.getBasePrice());
-
-                    return new InventoryResponseDto(
-                            base.id(),
-                            base.organizationId(),
-                            base.productId(),
-                            productName,
-                            base.quantity(),
-                            unitPrice,
-                            product.getDescription(),
-                            product.getBasePrice(),
-                            product.getMinPrice(),
-                            product.getMaxPrice(),
-                            base.updatedAt());
-                })
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(InventoryResponseDto::productName))
-                .toList();
+    /**
+     * Categories with active products and their inventory rows, read in a
+     * single query. Categories are sorted by name, their rows by product name.
+     */
+    @Transactional(readOnly = true)
+    public List<BoardCategoryDto> getBoard(Long organizationId) {
+        return timedRead("market_board", () -> {
+            Map<Long, BoardCategoryDto> categories = new LinkedHashMap<>();
+            for (BoardRow row : inventoryRepository.findBoardRowsByOrganizationId(organizationId)) {
+                categories.computeIfAbsent(row.categoryId(), id -> new BoardCategoryDto(id, row.categoryName(),
+                        row.dynamicPricing(), new ArrayList<>()))
+                        .inventory().add(row.inventory());
+            }
+            return List.copyOf(categories.values());
+        });
     }
 
     @Transactional(readOnly = true)
     public InventoryResponseDto getByProductAndOrganization(Long productId, Long organizationId) {
+        return timedRead("product", () -> findByProductAndOrganization(productId, organizationId));
+    }
+
+    private InventoryResponseDto findByProductAndOrganization(Long productId, Long organizationId) {
         Inventory inventory = inventoryRepository
                 .findByOrganizationIdAndProductId(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        Product product = productRepository.findById(productId)
+        ProductCatalog.CatalogProduct product = productCatalog.product(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No product found"));
-        if (!product.isActive()) {
+        if (!product.active()) {
             throw new ResponseStatusException(HttpStatus.GONE, "Product is deleted");
         }
 
-        String productName = product.getName();
+        String productName = product.name();
         BigDecimal unitPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
-        BigDecimal basePrice = product.getBasePrice();
+                .orElse(product.basePrice());
+        BigDecimal basePrice = product.basePrice();
 
         return new InventoryResponseDto(
                 base.id(),
@@ -111,214 +159,234 @@ public class InventoryService {
                 productName,
                 base.quantity(),
                 unitPrice,
-                product.getDescription(), basePrice,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.description(), basePrice,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
-    @Transactional
     public InventoryResponseDto addStock(AddStockRequestDto request, UUID userId, Long organizationId) {
-        Long productId = request.productId();
-        Product product = getOrganizationProduct(organizationId, productId);
-
-        // Get or create inventory
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
-                .orElseGet(() -> {
-                    Inventory newInv = new Inventory();
-                    newInv.setOrganizationId(organizationId);
-                    newInv.setProduct(product);
-                    newInv.setQuantity(BigDecimal.ZERO);
-                    newInv.setAdjustedPrice(product.getBasePrice());
-                    newInv.setCreatedAt(OffsetDateTime.now());
-                    newInv.setUpdatedAt(OffsetDateTime.now());
-                    return inventoryRepository.save(newInv);
-                });
-
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal newQuantity = oldQuantity.add(request.quantity());
-
-        inventory.setQuantity(newQuantity);
-        inventory.setUpdatedAt(OffsetDateTime.now());
-        inventory = inventoryRepository.save(inventory);
-
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
-
-        // Create transaction record
-        createTransaction(inventory, "PURCHASE", request.quantity(),
-                oldQuantity, newQuantity, currentPrice, currentPrice, null, request.notes(), userId);
-
-        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        return new InventoryResponseDto(
-                base.id(),
-                base.organizationId(),
-                base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
-                base.updatedAt());
+        ProductCatalog.CatalogProduct product = getOrganizationProduct(organizationId, request.productId());
+        createInventoryIfMissing(organizationId, product);
+        return marketEngine.changeStock(organizationId, product.id(),
+                quantity -> quantity.add(request.quantity()),
+                change -> changeStock(() -> applyStockChange(organizationId, product, change, "PURCHASE", null,
+                        request.notes(), userId)));
     }
 
-    @Transactional
     public InventoryResponseDto removeStock(RemoveStockRequestDto request, UUID userId, Long organizationId) {
-        Product product = getOrganizationProduct(organizationId, request.productId());
-
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "No inventory found for this product"));
+        ProductCatalog.CatalogProduct product = getOrganizationProduct(organizationId, request.productId());
+        return marketEngine.changeStock(organizationId, product.id(),
+                quantity -> quantity.subtract(request.quantity()),
+                change -> changeStock(() -> applyStockChange(organizationId, product, change, "ADJUSTMENT",
+                        request.referenceId(), request.notes(), userId)));
+    }
 
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal newQuantity = oldQuantity.subtract(request.quantity());
+    public InventoryResponseDto adjustStock(AdjustStockRequestDto request, UUID userId, Long organizationId) {
+        ProductCatalog.CatalogProduct product = getOrganizationProduct(organizationId, request.productId());
+        return marketEngine.changeStock(organizationId, product.id(),
+                quantity -> request.newQuantity(),
+                change -> changeStock(() -> applyStockChange(organizationId, product, change, "ADJUSTMENT", null,
+                        request.notes(), userId)));
+    }
 
-        if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    "Insufficient stock. Available: " + oldQuantity + ", Requested: "
-                            + request.quantity());
+    /**
+     * Runs a stock change in its own transaction. When the inventory row was
+     * updated concurrently (queued sales being written, price decay or another
+     * stock change) the version check fails on commit, or the database reports
+     * a lock conflict, and the change is retried against the current row.
+     */
+    private InventoryResponseDto changeStock(Supplier<InventoryResponseDto> change) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> change.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_STOCK_CHANGE_ATTEMPTS) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Inventory is being changed concurrently, please try again", e);
+                }
+            }
         }
-
-        inventory.setQuantity(newQuantity);
-        inventory.setUpdatedAt(OffsetDateTime.now());
-        inventory = inventoryRepository.save(inventory);
-
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
-
-        // Create transaction record (negative quantity change)
-        createTransaction(inventory, "ADJUSTMENT", request.quantity().negate(),
-                oldQuantity, newQuantity, currentPrice, currentPrice, request.referenceId(),
-                request.notes(), userId);
-
-        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        return new InventoryResponseDto(
-                base.id(),
-                base.organizationId(),
-                base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
-                base.updatedAt());
     }
 
-    @Transactional
-    public InventoryResponseDto adjustStock(AdjustStockRequestDto request, UUID userId, Long organizationId) {
-        Product product = getOrganizationProduct(organizationId, request.productId());
+    private void createInventoryIfMissing(Long organizationId, ProductCatalog.CatalogProduct product) {
+        if (inventoryRepository.findByOrganizationIdAndProductId(organizationId, product.id()).isPresent()) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Inventory inventory = new Inventory();
+            inventory.setOrganizationId(organizationId);
+            inventory.setProduct(productRepository.getReferenceById(product.id()));
+            inventory.setQuantity(BigDecimal.ZERO);
+            inventory.setAdjustedPrice(product.basePrice());
+            inventory.setCreatedAt(OffsetDateTime.now());
+            inventory.setUpdatedAt(OffsetDateTime.now());
+            inventoryRepository.save(inventory);
+        });
+    }
 
+    /**
+     * Stores a stock change validated by the {@link MarketEngine}. Sales still
+     * queued in the {@link MarketWriteBehind} are subtracted from the stored
+     * quantity later, so the change is added to it rather than replacing it,
+     * and the transaction records the quantities of the market.
+     */
+    private InventoryResponseDto applyStockChange(Long organizationId, ProductCatalog.CatalogProduct product,
+            MarketEngine.StockChange change, String type, String referenceId, String notes, UUID userId) {
         Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
+                .findByOrganizationIdAndProductId(organizationId, product.id())
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal quantityChange = request.newQuantity().subtract(oldQuantity);
-
-        inventory.setQuantity(request.newQuantity());
+        inventory.setQuantity(inventory.getQuantity().add(change.quantityChange()));
         inventory.setUpdatedAt(OffsetDateTime.now());
         inventory = inventoryRepository.save(inventory);
+        TransactionUtils.afterCommit(() -> inventoryVersions.bump(organizationId, List.of(product.id())));
 
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
-
-        // Create transaction record
-        createTransaction(inventory, "ADJUSTMENT", quantityChange,
-                oldQuantity, request.newQuantity(), currentPrice, currentPrice, null, request.notes(),
-                userId);
+        createTransaction(inventory, product, type, change.quantityChange(), change.quantityBefore(),
+                change.quantityAfter(), change.price(), change.price(), referenceId, notes, userId);
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
         return new InventoryResponseDto(
                 base.id(),
                 base.organizationId(),
                 base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.name(),
+                change.quantityAfter(),
+                change.price(),
+                product.description(), null,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
+    /**
+     * One page of the transaction history of a product, newest first.
+     *
+     * @param transactionType Only transactions of this type, or all if null
+     * @param from            Only transactions at or after this time, if set
+     * @param to              Only transactions before this time, if set
+     * @param cursor          {@code nextCursor} of the previous page, or null
+     *                        for the first page
+     * @param limit           Page size, at most {@value #MAX_HISTORY_PAGE_SIZE}
+     */
     @Transactional(readOnly = true)
-    public List<InventoryTransactionResponseDto> getTransactionHistory(Long productId, Long organizationId) {
+    public InventoryTransactionPageDto getTransactionHistory(Long productId, Long organizationId,
+            String transactionType, OffsetDateTime from, OffsetDateTime to, String cursor, int limit) {
+        return timedRead("history", () -> findTransactionHistory(productId, organizationId,
+                transactionType, from, to, cursor, limit));
+    }
+
+    private InventoryTransactionPageDto findTransactionHistory(Long productId, Long organizationId,
+            String transactionType, OffsetDateTime from, OffsetDateTime to, String cursor, int limit) {
+        if (transactionType != null && !TRANSACTION_TYPES.contains(transactionType)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unknown transaction type: " + transactionType);
+        }
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be positive");
+        }
+        int pageSize = Math.min(limit, MAX_HISTORY_PAGE_SIZE);
+        HistoryCursor after = cursor != null ? HistoryCursor.decode(cursor) : null;
+
         Inventory inventory = inventoryRepository
                 .findByOrganizationIdAndProductId(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
-        List<InventoryTransaction> transactions = inventoryTransactionRepository
-                .findByInventoryIdOrderByCreatedAtDesc(inventory.getId());
+        // One extra row tells whether another page follows
+        List<HistoryRow> transactions = inventoryTransactionRepository.findHistoryPage(
+                new InventoryTransactionHistoryRepository.HistoryQuery(inventory.getId(), transactionType, from, to,
+                        after != null ? after.createdAt() : null, after != null ? after.id() : null,
+                        pageSize + 1));
+        String nextCursor = null;
+        if (transactions.size() > pageSize) {
+            transactions = transactions.subList(0, pageSize);
+            HistoryRow last = transactions.get(pageSize - 1);
+            nextCursor = new HistoryCursor(last.createdAt(), last.id()).encode();
+        }
 
         // Get all unique user IDs (filter out nulls)
         List<UUID> userIds = transactions.stream()
-                .map(InventoryTransaction::getCreatedBy)
+                .map(HistoryRow::createdBy)
                 .filter(Objects::nonNull)
                 .distinct()
                 .toList();
 
-        // Fetch all users at once
-        Map<UUID, User> userMap = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+        // Fetch all users of the page at once
+        Map<UUID, User> userMap = userIds.isEmpty() ? Collections.emptyMap()
+                : userRepository.findAllById(userIds).stream()
+                        .collect(Collectors.toMap(User::getId, user -> user));
 
         // Map transactions with user information
-        return transactions.stream()
+        List<InventoryTransactionResponseDto> items = transactions.stream()
                 .map(transaction -> {
-                    User user = userMap.get(transaction.getCreatedBy());
+                    User user = userMap.get(transaction.createdBy());
                     return new InventoryTransactionResponseDto(
-                            transaction.getId(),
-                            transaction.getInventoryId(),
-                            transaction.getTransactionType(),
-                            transaction.getQuantityChange(),
-                            transaction.getQuantityBefore(),
-                            transaction.getQuantityAfter(),
-                            transaction.getPriceBefore(),
-                            transaction.getPriceAfter(),
-                            transaction.getReferenceId(),
-                            transaction.getNotes(),
-                            transaction.getCreatedBy() != null
-                                    ? transaction.getCreatedBy().toString()
+                            transaction.id(),
+                            transaction.inventoryId(),
+                            transaction.transactionType(),
+                            transaction.quantityChange(),
+                            transaction.quantityBefore(),
+                            transaction.quantityAfter(),
+                            transaction.priceBefore(),
+                            transaction.priceAfter(),
+                            transaction.referenceId(),
+                            transaction.notes(),
+                            transaction.createdBy() != null
+                                    ? transaction.createdBy().toString()
                                     : null,
                             user != null ? user.getName() : null,
                             user != null ? user.getEmail() : null,
-                            transaction.getCreatedAt() != null ? transaction.getCreatedAt()
+                            transaction.createdAt() != null ? transaction.createdAt()
                                     .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
                                     : null);
                 })
                 .toList();
+        return new InventoryTransactionPageDto(items, nextCursor);
+    }
+
+    /**
+     * Position after the last transaction of a page. Encoded as URL-safe
+     * base64 of {@code createdAt|id}, opaque to clients.
+     */
+    record HistoryCursor(OffsetDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new HistoryCursor(OffsetDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+            }
+        }
     }
 
     @Transactional(readOnly = true)
     public List<UserSalesStatsResponseDto> getUserSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by user and station
-        Map<String, List<InventoryTransaction>> transactionsByUserAndStation = saleTransactions.stream()
-                .filter(t -> t.getCreatedBy() != null)
-                .collect(Collectors.groupingBy(transaction -> {
-                    UUID userId = transaction.getCreatedBy();
-                    Long stationId = transaction.getBarStationId();
-                    return userId.toString() + "|"
-                            + (stationId != null ? stationId.toString() : "null");
-                }));
+        return timedRead("user_stats", () -> findUserSalesStats(organizationId));
+    }
+
+    private List<UserSalesStatsResponseDto> findUserSalesStats(Long organizationId) {
+        // Totals per user and station, summed over the hourly buckets
+        List<SalesStatsRepository.UserStationTotals> totals = salesStatsRepository
+                .findUserStationTotals(organizationId);
 
         // Get all unique user IDs and station IDs
-        Set<UUID> userIds = saleTransactions.stream()
-                .map(InventoryTransaction::getCreatedBy)
-                .filter(Objects::nonNull)
+        Set<UUID> userIds = totals.stream()
+                .map(SalesStatsRepository.UserStationTotals::getUserId)
                 .collect(Collectors.toSet());
 
-        Set<Long> stationIds = saleTransactions.stream()
-                .map(InventoryTransaction::getBarStationId)
+        Set<Long> stationIds = totals.stream()
+                .map(SalesStatsRepository.UserStationTotals::getBarStationId)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
@@ -330,40 +398,18 @@ public class InventoryService {
                 .stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each user-station combination
-        return transactionsByUserAndStation.entrySet().stream()
-                .map(entry -> {
-                    String[] parts = entry.getKey().split("\\|");
-                    UUID userId = UUID.fromString(parts[0]);
-                    Long stationId = null;
-                    if (parts.length > 1 && !parts[1].equals("null")) {
-                        try {
-                            stationId = Long.parseLong(parts[1]);
-                        } catch (NumberFormatException e) {
-                            stationId = null;
-                        }
-                    }
-
-                    List<InventoryTransaction> userStationTransactions = entry.getValue();
-                    User user = userMap.get(userId);
+        return totals.stream()
+                .map(total -> {
+                    User user = userMap.get(total.getUserId());
+                    Long stationId = total.getBarStationId();
                     BarStation station = stationId != null ? stationMap.get(stationId) : null;
 
-                    // Count unique sales (by referenceId)
-                    long salesCount = userStationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(userStationTransactions);
-
                     return new UserSalesStatsResponseDto(
-                            userId.toString(),
+                            total.getUserId().toString(),
                             user != null ? user.getName() : "Unknown User",
                             user != null ? user.getEmail() : "unknown@email.com",
-                            salesCount,
-                            totalRevenue,
+                            total.getSalesCount(),
+                            total.getRevenue(),
                             stationId,
                             station != null ? station.getName() : null);
                 })
@@ -374,57 +420,56 @@ public class InventoryService {
 
     @Transactional(readOnly = true)
     public List<StationSalesStatsResponseDto> getStationSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by station
-        Map<Long, List<InventoryTransaction>> transactionsByStation = saleTransactions.stream()
-                .filter(t -> t.getBarStationId() != null)
-                .collect(Collectors.groupingBy(InventoryTransaction::getBarStationId));
+        return timedRead("station_stats", () -> findStationSalesStats(organizationId));
+    }
 
-        // Get all unique station IDs
-        Set<Long> stationIds = transactionsByStation.keySet();
+    private List<StationSalesStatsResponseDto> findStationSalesStats(Long organizationId) {
+        // Totals per station, summed over the hourly buckets
+        List<SalesStatsRepository.StationTotals> totals = salesStatsRepository.findStationTotals(organizationId);
 
         // Fetch all stations at once
-        Map<Long, BarStation> stationMap = barStationRepository.findAllById(new ArrayList<>(stationIds))
+        List<Long> stationIds = totals.stream()
+                .map(SalesStatsRepository.StationTotals::getBarStationId)
+                .toList();
+        Map<Long, BarStation> stationMap = barStationRepository.findAllById(stationIds)
                 .stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each station
-        return transactionsByStation.entrySet().stream()
-                .map(entry -> {
-                    Long stationId = entry.getKey();
-                    List<InventoryTransaction> stationTransactions = entry.getValue();
-                    BarStation station = stationMap.get(stationId);
-
-                    // Count unique sales (by referenceId)
-                    long salesCount = stationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(stationTransactions);
+        return totals.stream()
+                .map(total -> {
+                    BarStation station = stationMap.get(total.getBarStationId());
 
                     return new StationSalesStatsResponseDto(
-                            stationId,
+                            total.getBarStationId(),
                             station != null ? station.getName() : null,
-                            salesCount,
-                            totalRevenue);
+                            total.getSalesCount(),
+                            total.getRevenue());
                 })
                 .sorted((a, b) -> Long.compare(b.salesCount(), a.salesCount())) // Sort by sales count
                 // desc
                 .toList();
     }
 
-    private void createTransaction(Inventory inventory, String type, BigDecimal quantityChange,
-                                   BigDecimal quantityBefore, BigDecimal quantityAfter,
+    /**
+     * Runs a read endpoint, timed per operation. Not tagged by organization,
+     * public reads take the organization ID from the client.
+     */
+    private <T> T timedRead(String operation, Supplier<T> read) {
+        return Timer.builder("inventory.read")
+                .description("Time to serve an inventory read")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(read);
+    }
+
+    private void createTransaction(Inventory inventory, ProductCatalog.CatalogProduct product, String type,
+                                   BigDecimal quantityChange, BigDecimal quantityBefore, BigDecimal quantityAfter,
                                    BigDecimal priceBefore, BigDecimal priceAfter,
                                    String referenceId, String notes, UUID userId) {
         InventoryTransaction transaction = new InventoryTransaction();
         transaction.setInventory(inventory);
+        transaction.setOrganizationId(product.organizationId());
+        transaction.setProductId(product.id());
         transaction.setTransactionType(type);
         transaction.setQuantityChange(quantityChange);
         transaction.setQuantityBefore(quantityBefore);
@@ -438,43 +483,19 @@ public class InventoryService {
         inventoryTransactionRepository.save(transaction);
     }
 
-    private Product getOrganizationProduct(Long organizationId, Long productId) {
+    private ProductCatalog.CatalogProduct getOrganizationProduct(Long organizationId, Long productId) {
         // Verify product exists and belongs to organization
-        Product product = productRepository.findById(productId)
+        ProductCatalog.CatalogProduct product = productCatalog.product(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Product not found"));
 
-        if (!product.getOrganizationId().equals(organizationId)) {
+        if (!product.organizationId().equals(organizationId)) {
             throw new ResponseStatusException(
                     HttpStatus.FORBIDDEN, "Product does not belong to your organization");
         }
-        if (!product.isActive()) {
+        if (!product.active()) {
             throw new ResponseStatusException(HttpStatus.GONE, "Product is deleted");
         }
         return product;
     }
-
-
-    private BigDecimal calculateTotalRevenue(List<InventoryTransaction> userStationTransactions) {
-        return userStationTransactions.stream()
-                .map(transaction -> {
-                    // Get inventory to find product
-                    return inventoryRepository
-                            .findById(transaction.getInventoryId())
-                            .flatMap(inventory -> productRepository
-                                    .findById(inventory
-                                            .getProductId()))
-                            .map(product -> {
-                                // Calculate revenue for this
-                                // transaction
-                                BigDecimal quantitySold = transaction
-                                        .getQuantityChange()
-                                        .abs();
-                                return product.getBasePrice()
-                                        .multiply(quantitySold);
-                            })
-                            .orElse(BigDecimal.ZERO);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
 }
@@ -0,0 +1,121 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Serialized inventory responses per organization and category filter, and
+ * the organization's market board, reused until {@link InventoryVersions}
+ * reports a newer version for the organization.
+ * <p>
+ * Concurrent readers of an outdated snapshot wait for one of them to rebuild
+ * it instead of all querying the database. Past {@link #MAX_SLOTS} the
+ * oldest slot is dropped for each new one, so only that snapshot is rebuilt
+ * when it is read again.
+ */
+@Service
+public class InventorySnapshotCache {
+
+    // Keys come from public query parameters, keep unknown IDs from piling up
+    static final int MAX_SLOTS = 10_000;
+
+    private final InventoryService inventoryService;
+    private final InventoryVersions inventoryVersions;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Key, Slot> slots = new ConcurrentHashMap<>();
+    // Keys in the order their slots were created
+    private final Queue<Key> slotOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Serialized response and its strong ETag. {@code changesVersion} is the
+     * version to pass to {@link InventoryService#getChanges} afterwards.
+     */
+    public record Snapshot(long version, String changesVersion, String etag, byte[] json) {
+    }
+
+    // The board is keyed by its own view so it never collides with a category filter
+    private record Key(Long organizationId, String view) {
+    }
+
+    private static class Slot {
+        private volatile Snapshot snapshot;
+    }
+
+    public InventorySnapshotCache(InventoryService inventoryService, InventoryVersions inventoryVersions,
+            ObjectMapper objectMapper) {
+        this.inventoryService = inventoryService;
+        this.inventoryVersions = inventoryVersions;
+        this.objectMapper = objectMapper;
+    }
+
+    public Snapshot get(Long organizationId, Long categoryId) {
+        return get(new Key(organizationId, categoryId != null ? categoryId.toString() : "all"),
+                () -> inventoryService.getByOrganization(organizationId, categoryId));
+    }
+
+    public Snapshot getBoard(Long organizationId) {
+        return get(new Key(organizationId, "board"), () -> inventoryService.getBoard(organizationId));
+    }
+
+    private Slot slot(Key key) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        Slot created = new Slot();
+        slot = slots.putIfAbsent(key, created);
+        if (slot != null) {
+            return slot;
+        }
+        slotOrder.add(key);
+        while (slots.size() > MAX_SLOTS) {
+            Key oldest = slotOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            slots.remove(oldest);
+        }
+        return created;
+    }
+
+    private Snapshot get(Key key, Supplier<?> loader) {
+        Long organizationId = key.organizationId();
+        Slot slot = slot(key);
+
+        Snapshot snapshot = slot.snapshot;
+        if (snapshot != null && snapshot.version() == inventoryVersions.current(organizationId)) {
+            return snapshot;
+        }
+
+        synchronized (slot) {
+            // Read before querying, changes committed meanwhile bump past it
+            long version = inventoryVersions.current(organizationId);
+            snapshot = slot.snapshot;
+            if (snapshot != null && snapshot.version() == version) {
+                return snapshot;
+            }
+
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(loader.get());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize inventory", e);
+            }
+
+            // Versions restart at zero, the epoch keeps ETags from a previous run from matching
+            String etag = "\"" + inventoryVersions.epoch() + "-" + organizationId + "-" + key.view() + "-"
+                    + version + "\"";
+            snapshot = new Snapshot(version, inventoryVersions.epoch() + "-" + version, etag, json);
+            slot.snapshot = snapshot;
+            return snapshot;
+        }
+    }
+}
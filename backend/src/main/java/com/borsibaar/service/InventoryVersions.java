@@ -0,0 +1,117 @@
+package com.borsibaar.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-organization counter of committed inventory changes (sales, stock
+ * changes, price corrections, products added or removed).
+ * <p>
+ * Writers bump the version only after their change is committed, so a reader
+ * that takes the version before querying the database never labels stale
+ * data with a newer version.
+ * <p>
+ * The products changed by the most recent versions are kept in a bounded ring
+ * per organization, letting clients fetch only the rows changed since the
+ * version they last saw.
+ */
+@Component
+public class InventoryVersions {
+
+    private final int changeLogSize;
+    private final Map<Long, ChangeLog> logs = new ConcurrentHashMap<>();
+    // Versions restart at zero, tells versions of a previous run apart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Products changed after a version, {@code productIds} is null when they
+     * are not known and the client has to reload everything.
+     */
+    public record Changes(long version, Set<Long> productIds) {
+
+        public boolean full() {
+            return productIds == null;
+        }
+    }
+
+    private static class ChangeLog {
+        private volatile long version;
+        // Products changed by each version, indexed by version modulo size. Null marks an unknown change.
+        private final long[][] products;
+
+        private ChangeLog(int size) {
+            products = new long[size][];
+        }
+    }
+
+    public InventoryVersions(@Value("${app.inventory.change-log-size:256}") int changeLogSize) {
+        this.changeLogSize = changeLogSize;
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    public long current(Long organizationId) {
+        ChangeLog log = logs.get(organizationId);
+        return log != null ? log.version : 0;
+    }
+
+    /**
+     * Records a change that is not limited to known products, such as products
+     * being added or removed. Clients behind it reload everything.
+     */
+    public void bump(Long organizationId) {
+        record(organizationId, null);
+    }
+
+    /**
+     * Records a change to the price or quantity of the given products.
+     */
+    public void bump(Long organizationId, Collection<Long> productIds) {
+        record(organizationId, productIds.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * Products changed after {@code since} up to the returned version, or a
+     * full change when the version is unknown or no longer in the log.
+     */
+    public Changes changesSince(Long organizationId, long since) {
+        ChangeLog log = logs.get(organizationId);
+        if (log == null) {
+            return new Changes(0, since == 0 ? Set.of() : null);
+        }
+        synchronized (log) {
+            long version = log.version;
+            if (since < 0 || since > version || version - since > changeLogSize) {
+                return new Changes(version, null);
+            }
+            Set<Long> productIds = new HashSet<>();
+            for (long v = since + 1; v <= version; v++) {
+                long[] changed = log.products[(int) (v % changeLogSize)];
+                if (changed == null) {
+                    return new Changes(version, null);
+                }
+                for (long productId : changed) {
+                    productIds.add(productId);
+                }
+            }
+            return new Changes(version, productIds);
+        }
+    }
+
+    private void record(Long organizationId, long[] productIds) {
+        ChangeLog log = logs.computeIfAbsent(organizationId, id -> new ChangeLog(changeLogSize));
+        synchronized (log) {
+            long version = log.version + 1;
+            log.products[(int) (version % changeLogSize)] = productIds;
+            log.version = version;
+        }
+    }
+}
@@ -1,20 +1,46 @@
 package com.borsibaar.service;
 
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Date;
+import java.util.UUID;
 
+/**
+ * Issues and parses the tokens in the {@code jwt} and {@code jwt_refresh}
+ * cookies.
+ * <p>
+ * Access tokens are short-lived and carry the user ID, organization, role and
+ * name, so requests are authenticated without a database lookup. Refresh
+ * tokens only carry the email. The user is loaded from the database when one
+ * is used, so role and organization changes reach new access tokens.
+ */
 @Service
 public class JwtService {
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ORGANIZATION_ID_CLAIM = "org";
+    public static final String ROLE_CLAIM = "role";
+    public static final String NAME_CLAIM = "name";
+
     @Value("${jwt.secret}")
     private String secretKey;
+    @Value("${jwt.access-expiration-ms:900000}")
+    private long accessExpirationMs;
     private final long expirationMs = 86400000; // 24h
+    private volatile KeyedParser parser;
 
+    /**
+     * Creates a refresh token, valid for 24 hours and carrying only the
+     * subject.
+     */
     public String generateToken(String subject) {
         return Jwts.builder()
                 .subject(subject)
@@ -24,11 +50,73 @@ public class JwtService {
                 .compact();
     }
 
+    /**
+     * Creates an access token that carries everything needed to authenticate
+     * the user without a database lookup.
+     */
+    public String generateAccessToken(User user) {
+        return Jwts.builder()
+                .subject(user.getEmail())
+                .claim(USER_ID_CLAIM, user.getId().toString())
+                .claim(ORGANIZATION_ID_CLAIM, user.getOrganizationId())
+                .claim(ROLE_CLAIM, user.getRole() != null ? user.getRole().getName() : null)
+                .claim(NAME_CLAIM, user.getName())
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + accessExpirationMs))
+                .signWith(SignatureAlgorithm.HS256, secretKey.getBytes(StandardCharsets.UTF_8))
+                .compact();
+    }
+
+    public Duration getAccessTokenLifetime() {
+        return Duration.ofMillis(accessExpirationMs);
+    }
+
+    public Duration getRefreshTokenLifetime() {
+        return Duration.ofMillis(expirationMs);
+    }
+
+    /**
+     * Builds the principal of an access token from its claims.
+     *
+     * @return A detached user holding only the ID, email, name, organization
+     *         and role name, or null if the token carries no user claims
+     *         (refresh tokens)
+     */
+    public User toPrincipal(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        if (userId == null) {
+            return null;
+        }
+
+        String role = claims.get(ROLE_CLAIM, String.class);
+        return User.builder()
+                .id(UUID.fromString(userId))
+                .email(claims.getSubject())
+                .name(claims.get(NAME_CLAIM, String.class))
+                .organizationId(claims.get(ORGANIZATION_ID_CLAIM, Long.class))
+                .role(role != null ? Role.builder().name(role).build() : null)
+                .build();
+    }
+
     public Claims parseToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser().parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * The parser is immutable and thread-safe, so it is built once per secret
+     * instead of on every request.
+     */
+    private JwtParser parser() {
+        KeyedParser current = parser;
+        if (current == null || !current.secret().equals(secretKey)) {
+            current = new KeyedParser(secretKey, Jwts.parser()
+                    .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
+                    .build());
+            parser = current;
+        }
+        return current.parser();
+    }
+
+    private record KeyedParser(String secret, JwtParser parser) {
     }
 }
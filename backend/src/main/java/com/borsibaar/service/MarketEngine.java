@@ -0,0 +1,700 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryTickDto;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Authoritative in-memory market state (current price and quantity per
+ * product) for each organization.
+ * <p>
+ * Sales are validated and applied here under a per-organization lock and then
+ * handed to {@link MarketWriteBehind}, which persists them asynchronously. The
+ * database stays the recovery source: an organization's market is loaded from
+ * the inventory table the first time it is used. Only one backend instance
+ * serves the markets of a database, enforced by {@link MarketInstanceLock}.
+ * <p>
+ * Manual stock changes are validated through {@link #changeStock} under the
+ * same lock, against the in-memory quantity, so they cannot race with sales
+ * that are not persisted yet. They are stored without holding the lock.
+ * <p>
+ * Prices of dynamically priced products decay when they stop selling: every
+ * sale schedules the product's next decay one interval later on a
+ * {@link TimingWheel}, and {@link #decayDue} lowers the prices whose deadline
+ * passed, every interval until they reach their minimum price. Several
+ * organizations decay in parallel. Only organizations that sold something
+ * within the last interval decay: decays that fall due while an organization
+ * is idle are parked until its next sale.
+ * <p>
+ * Every applied change of a loaded market is published to the
+ * {@link PriceTicker}.
+ */
+@Service
+@DependsOn("marketInstanceLock")
+public class MarketEngine {
+
+    private final InventoryRepository inventoryRepository;
+    private final ProductCatalog productCatalog;
+    private final PriceTicker priceTicker;
+    private final long decayIntervalMs;
+    private final LongSupplier clock;
+    private final TimingWheel<MarketItem> decayWheel;
+    // Organizations decay in parallel, each on a virtual thread, at most as many at once as there are permits
+    private final ExecutorService decayWorkers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore decayPermits;
+
+    private final Map<Long, OrganizationMarket> markets = new ConcurrentHashMap<>();
+
+    /**
+     * Result of applying one sale line to the market.
+     */
+    public record SaleLine(
+            Long inventoryId,
+            Long productId,
+            String productName,
+            BigDecimal quantity,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter) {
+    }
+
+    /**
+     * Manual stock change (stock added, removed or adjusted) applied to the
+     * market.
+     */
+    public record StockChange(
+            Long inventoryId,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal price) {
+
+        public BigDecimal quantityChange() {
+            return quantityAfter.subtract(quantityBefore);
+        }
+    }
+
+    /**
+     * Price of a product lowered because it stopped selling.
+     */
+    public record PriceDecay(
+            Long inventoryId,
+            Long productId,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter) {
+    }
+
+    @Autowired
+    public MarketEngine(InventoryRepository inventoryRepository,
+            ProductCatalog productCatalog,
+            PriceTicker priceTicker,
+            @Value("${app.price-decay.interval-seconds:60}") long decayIntervalSeconds,
+            @Value("${app.price-decay.tick-ms:100}") long decayTickMs,
+            @Value("${app.price-decay.max-parallel-organizations:4}") int decayParallelism) {
+        this(inventoryRepository, productCatalog, priceTicker, decayIntervalSeconds, decayTickMs, decayParallelism,
+                System::currentTimeMillis);
+    }
+
+    MarketEngine(InventoryRepository inventoryRepository,
+            ProductCatalog productCatalog,
+            PriceTicker priceTicker,
+            long decayIntervalSeconds,
+            long decayTickMs,
+            int decayParallelism,
+            LongSupplier clock) {
+        this.inventoryRepository = inventoryRepository;
+        this.productCatalog = productCatalog;
+        this.priceTicker = priceTicker;
+        this.decayIntervalMs = decayIntervalSeconds * 1000;
+        this.clock = clock;
+        this.decayWheel = new TimingWheel<>(decayTickMs, clock.getAsLong());
+        this.decayPermits = new Semaphore(decayParallelism);
+    }
+
+    @PreDestroy
+    public void stop() {
+        decayWorkers.shutdownNow();
+    }
+
+    /**
+     * Validates and applies a sale atomically. Either every line is applied or
+     * none is.
+     *
+     * @param organizationId Organization the sale belongs to
+     * @param items          Requested sale lines
+     * @param commit         Called with the computed lines while the
+     *                       organization is still locked, so that writes are
+     *                       queued in the same order they were applied. If it
+     *                       throws, the market is left unchanged.
+     * @return The applied sale lines
+     */
+    public List<SaleLine> sell(Long organizationId, List<SaleItemRequestDto> items,
+            Consumer<List<SaleLine>> commit) {
+        OrganizationMarket market = market(organizationId);
+
+        market.lock.lock();
+        try {
+            // Work on copies so that a failing line leaves the market untouched
+            Map<Long, BigDecimal> quantities = new HashMap<>();
+            Map<Long, BigDecimal> prices = new HashMap<>();
+            List<SaleLine> lines = new ArrayList<>(items.size());
+
+            for (SaleItemRequestDto item : items) {
+                MarketItem marketItem = market.item(item.productId());
+
+                BigDecimal oldQuantity = quantities.getOrDefault(item.productId(), marketItem.quantity);
+                BigDecimal newQuantity = oldQuantity.subtract(item.quantity());
+                if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST,
+                            "Insufficient stock for " + marketItem.productName +
+                                    ". Available: " + oldQuantity + ", Requested: "
+                                    + item.quantity());
+                }
+
+                BigDecimal priceBefore = prices.getOrDefault(item.productId(), marketItem.price);
+                BigDecimal priceAfter = priceBefore;
+                if (marketItem.dynamicPricing) {
+                    priceAfter = priceBefore.add(market.priceIncreaseStep);
+                    if (marketItem.maxPrice != null && priceAfter.compareTo(marketItem.maxPrice) > 0) {
+                        priceAfter = marketItem.maxPrice;
+                    }
+                }
+
+                quantities.put(item.productId(), newQuantity);
+                prices.put(item.productId(), priceAfter);
+                lines.add(new SaleLine(
+                        marketItem.inventoryId,
+                        item.productId(),
+                        marketItem.productName,
+                        item.quantity(),
+                        oldQuantity,
+                        newQuantity,
+                        priceBefore,
+                        priceAfter));
+            }
+
+            commit.accept(lines);
+
+            quantities.forEach((productId, quantity) -> market.items.get(productId).quantity = quantity);
+            prices.forEach((productId, price) -> market.items.get(productId).price = price);
+
+            // Sold products decay one interval from now
+            long now = clock.getAsLong();
+            market.lastSaleAt = now;
+            quantities.keySet().forEach(productId -> scheduleDecay(market.items.get(productId), now + decayIntervalMs));
+            // Parked decays are overdue, they fire with the next tick unless the product was just sold
+            market.parked.stream()
+                    .filter(item -> item.decayAt == 0 && market.items.get(item.productId) == item)
+                    .forEach(item -> scheduleDecay(item, now));
+            market.parked.clear();
+
+            publish(market, quantities.keySet());
+            return lines;
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Validates a manual stock change against the in-memory quantity and
+     * applies it around the commit, which runs without the organization lock
+     * so a slow inventory write does not hold up sales and price decay.
+     * Removed stock is taken from the market before the commit, so it cannot
+     * be sold meanwhile, and given back if the commit fails. Added stock is
+     * only sold once it is committed.
+     *
+     * @param organizationId Organization the product belongs to
+     * @param productId      Product whose stock changes
+     * @param newQuantity    Computes the new quantity from the current one
+     * @param commit         Persists the change. Queued sales may not have
+     *                       reached the stored quantity yet, so it must be
+     *                       changed by {@link StockChange#quantityChange()}
+     *                       rather than overwritten. If it throws, the market
+     *                       is left unchanged.
+     * @return The result of the commit
+     */
+    public <T> T changeStock(Long organizationId, Long productId, UnaryOperator<BigDecimal> newQuantity,
+            Function<StockChange, T> commit) {
+        OrganizationMarket market = market(organizationId);
+
+        StockChange change;
+        market.lock.lock();
+        try {
+            MarketItem item = market.item(productId);
+            BigDecimal quantityAfter = newQuantity.apply(item.quantity);
+            if (quantityAfter.compareTo(BigDecimal.ZERO) < 0) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST,
+                        "Insufficient stock. Available: " + item.quantity + ", Requested: "
+                                + item.quantity.subtract(quantityAfter));
+            }
+            change = new StockChange(item.inventoryId, item.quantity, quantityAfter, item.price);
+            if (change.quantityChange().signum() < 0) {
+                item.quantity = quantityAfter;
+                publish(market, List.of(productId));
+            }
+        } finally {
+            market.lock.unlock();
+        }
+
+        T result;
+        try {
+            result = commit.apply(change);
+        } catch (RuntimeException e) {
+            if (change.quantityChange().signum() < 0) {
+                addQuantity(market, productId, change.quantityChange().negate());
+            }
+            throw e;
+        }
+        if (change.quantityChange().signum() > 0) {
+            addQuantity(market, productId, change.quantityChange());
+        }
+        return result;
+    }
+
+    /**
+     * Lowers the prices whose decay deadline has passed by the organization's
+     * decrease step, but not below the product's minimum price. A product
+     * decays again every interval until it sells or reaches its minimum
+     * price, after which nothing is scheduled for it. Decays of an
+     * organization without a sale in the last interval are parked instead and
+     * fire with the first tick after its next sale. Organizations decay in
+     * parallel, up to the configured number at once, so one organization with
+     * a slow commit does not hold up the others.
+     *
+     * @param now    Current time in epoch milliseconds
+     * @param commit Called per organization with its decays while the
+     *               organization is still locked, so that writes are queued
+     *               in the same order they were applied. Called from
+     *               several threads at once. If it throws, the prices of that
+     *               organization are left unchanged and decay again one
+     *               interval later, and the failure is rethrown once the
+     *               other organizations are done.
+     * @return Number of lowered prices
+     */
+    public int decayDue(long now, BiConsumer<Long, List<PriceDecay>> commit) {
+        List<MarketItem> due = decayWheel.advance(now);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        Map<Long, List<MarketItem>> dueByOrganization = new LinkedHashMap<>();
+        for (MarketItem item : due) {
+            dueByOrganization.computeIfAbsent(item.organizationId, id -> new ArrayList<>()).add(item);
+        }
+
+        if (dueByOrganization.size() == 1) {
+            Map.Entry<Long, List<MarketItem>> entry = dueByOrganization.entrySet().iterator().next();
+            return decayOrganization(entry.getKey(), entry.getValue(), now, commit);
+        }
+
+        List<Future<Integer>> runs = new ArrayList<>(dueByOrganization.size());
+        dueByOrganization.forEach((organizationId, items) -> runs.add(decayWorkers.submit(() -> {
+            decayPermits.acquire();
+            try {
+                return decayOrganization(organizationId, items, now, commit);
+            } finally {
+                decayPermits.release();
+            }
+        })));
+        int decayed = 0;
+        RuntimeException failure = null;
+        for (Future<Integer> run : runs) {
+            try {
+                decayed += run.get();
+            } catch (ExecutionException e) {
+                // The other organizations still decay, the first failure is rethrown once they are done
+                RuntimeException cause = e.getCause() instanceof RuntimeException runtime ? runtime
+                        : new IllegalStateException("Price decay failed", e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while decaying prices", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return decayed;
+    }
+
+    /**
+     * Decays the due items of one organization under its lock.
+     *
+     * @return Number of lowered prices
+     */
+    private int decayOrganization(Long organizationId, List<MarketItem> due, long now,
+            BiConsumer<Long, List<PriceDecay>> commit) {
+        OrganizationMarket market = markets.get(organizationId);
+        if (market == null) {
+            return 0;
+        }
+        market.lock.lock();
+        try {
+            boolean idle = market.lastSaleAt + decayIntervalMs <= now;
+            List<PriceDecay> decays = new ArrayList<>();
+            for (MarketItem item : due) {
+                // Skips items of an evicted market and items rescheduled by a sale after they fired
+                if (market.items.get(item.productId) != item || item.decayAt == 0 || item.decayAt > now) {
+                    continue;
+                }
+                long deadline = item.decayAt;
+                item.decayTimeout = null;
+                item.decayAt = 0;
+                BigDecimal floor = item.floor(market.priceDecreaseStep);
+                if (idle) {
+                    if (item.price.compareTo(floor) > 0) {
+                        market.parked.add(item);
+                    }
+                    continue;
+                }
+                // Rescheduled from the current price, so a failed commit leaves it decaying
+                if (item.price.compareTo(floor) > 0) {
+                    long next = deadline + decayIntervalMs;
+                    scheduleDecay(item, next > now ? next : now + decayIntervalMs);
+                }
+
+                BigDecimal priceAfter = item.price.subtract(market.priceDecreaseStep).max(floor);
+                if (priceAfter.compareTo(item.price) != 0) {
+                    decays.add(new PriceDecay(item.inventoryId, item.productId, item.price, priceAfter));
+                }
+            }
+            if (decays.isEmpty()) {
+                return 0;
+            }
+
+            commit.accept(market.organizationId, decays);
+
+            decays.forEach(decay -> market.items.get(decay.productId()).price = decay.priceAfter());
+            publish(market, decays.stream().map(PriceDecay::productId).toList());
+            return decays.size();
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Loads an organization's market, so that the prices of an organization
+     * that sold within the last interval keep decaying before its next sale.
+     */
+    public void load(Long organizationId) {
+        market(organizationId);
+    }
+
+    /**
+     * Marks a product as no longer sellable.
+     */
+    public void deactivateProduct(Long organizationId, Long productId) {
+        withLoadedItem(organizationId, productId, item -> {
+            item.active = false;
+            if (item.decayTimeout != null) {
+                decayWheel.cancel(item.decayTimeout);
+                item.decayTimeout = null;
+            }
+            item.decayAt = 0;
+            // Nothing to show on the board
+            return false;
+        });
+    }
+
+    /**
+     * Updates the organization's dynamic pricing steps used for new sales and
+     * decays.
+     */
+    public void updatePriceSteps(Long organizationId, BigDecimal priceIncreaseStep,
+            BigDecimal priceDecreaseStep) {
+        OrganizationMarket market = markets.get(organizationId);
+        if (market == null) {
+            return;
+        }
+        market.lock.lock();
+        try {
+            market.priceIncreaseStep = Optional.ofNullable(priceIncreaseStep).orElse(BigDecimal.ZERO);
+            market.priceDecreaseStep = Optional.ofNullable(priceDecreaseStep).orElse(BigDecimal.ZERO);
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the in-memory state of an organization so it is reloaded from the
+     * database on next use. Only safe once all queued writes for the
+     * organization have been flushed.
+     */
+    public void evict(Long organizationId) {
+        OrganizationMarket market = markets.remove(organizationId);
+        if (market == null) {
+            return;
+        }
+        cancelDecays(market);
+    }
+
+    private void cancelDecays(OrganizationMarket market) {
+        market.lock.lock();
+        try {
+            market.items.values().forEach(item -> {
+                if (item.decayTimeout != null) {
+                    decayWheel.cancel(item.decayTimeout);
+                }
+            });
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an update on a loaded item and publishes it if the update reports
+     * a change.
+     */
+    private void withLoadedItem(Long organizationId, Long productId, Predicate<MarketItem> update) {
+        OrganizationMarket market = markets.get(organizationId);
+        if (market == null) {
+            // Not loaded yet, will be read from the database on first use
+            return;
+        }
+        market.lock.lock();
+        try {
+            MarketItem item = market.items.get(productId);
+            if (item != null && update.test(item)) {
+                publish(market, List.of(productId));
+            }
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds to the quantity of an item, relative to the sales applied since
+     * the change was validated.
+     */
+    private void addQuantity(OrganizationMarket market, Long productId, BigDecimal quantityChange) {
+        market.lock.lock();
+        try {
+            MarketItem item = market.items.get(productId);
+            if (item != null) {
+                item.quantity = item.quantity.add(quantityChange);
+                publish(market, List.of(productId));
+            }
+        } finally {
+            market.lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the decay deadline of a dynamically priced, active item. Must
+     * be called with the organization lock held or before the market is
+     * shared.
+     */
+    private void scheduleDecay(MarketItem item, long deadline) {
+        if (!item.dynamicPricing || !item.active) {
+            return;
+        }
+        if (item.decayTimeout != null) {
+            decayWheel.cancel(item.decayTimeout);
+        }
+        item.decayAt = deadline;
+        item.decayTimeout = decayWheel.schedule(item, deadline);
+    }
+
+    /**
+     * Must be called with the organization lock held, so ticks are published
+     * in the order the changes were applied.
+     */
+    private void publish(OrganizationMarket market, Collection<Long> productIds) {
+        if (!priceTicker.hasSubscribers(market.organizationId)) {
+            return;
+        }
+        String updatedAt = OffsetDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        List<InventoryTickDto> ticks = productIds.stream()
+                .map(productId -> {
+                    MarketItem item = market.items.get(productId);
+                    return new InventoryTickDto(productId, item.quantity, item.price, updatedAt);
+                })
+                .toList();
+        priceTicker.publish(market.organizationId, ticks);
+    }
+
+    /**
+     * Returns the organization's market, loading it on first use. The
+     * queries run outside the map, so they block no other map updates. If two
+     * threads load the same market, the first one stored is kept.
+     */
+    private OrganizationMarket market(Long organizationId) {
+        OrganizationMarket market = markets.get(organizationId);
+        if (market != null) {
+            return market;
+        }
+        OrganizationMarket loaded = loadMarket(organizationId);
+        market = markets.putIfAbsent(organizationId, loaded);
+        if (market != null) {
+            cancelDecays(loaded);
+            return market;
+        }
+        return loaded;
+    }
+
+    private OrganizationMarket loadMarket(Long organizationId) {
+        OrganizationMarket market = new OrganizationMarket(organizationId,
+                productCatalog.priceIncreaseStep(organizationId), productCatalog.priceDecreaseStep(organizationId));
+        long now = clock.getAsLong();
+        for (Inventory inventory : inventoryRepository.findByOrganizationId(organizationId)) {
+            Product product = inventory.getProduct();
+            if (product == null) {
+                continue;
+            }
+            MarketItem item = new MarketItem(ProductCatalog.CatalogProduct.of(product, product.getCategory()),
+                    inventory);
+            market.items.put(product.getId(), item);
+            if (inventory.getLastSaleAt() != null) {
+                market.lastSaleAt = Math.max(market.lastSaleAt,
+                        inventory.getLastSaleAt().toInstant().toEpochMilli());
+            }
+            if (item.price.compareTo(item.floor(market.priceDecreaseStep)) <= 0) {
+                continue;
+            }
+
+            // Sold within the interval: due one interval after that sale, otherwise one interval from now
+            long deadline = now + decayIntervalMs;
+            if (inventory.getLastSaleAt() != null) {
+                long lastSaleAt = inventory.getLastSaleAt().toInstant().toEpochMilli();
+                if (lastSaleAt + decayIntervalMs > now) {
+                    deadline = lastSaleAt + decayIntervalMs;
+                }
+            }
+            scheduleDecay(item, deadline);
+        }
+        return market;
+    }
+
+    private class OrganizationMarket {
+        private final Long organizationId;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, MarketItem> items = new HashMap<>();
+        // Items whose decay fell due while the organization was idle
+        private final List<MarketItem> parked = new ArrayList<>();
+        private BigDecimal priceIncreaseStep;
+        private BigDecimal priceDecreaseStep;
+        // Epoch milliseconds of the latest sale, 0 if none is known
+        private long lastSaleAt;
+
+        private OrganizationMarket(Long organizationId, BigDecimal priceIncreaseStep,
+                BigDecimal priceDecreaseStep) {
+            this.organizationId = organizationId;
+            this.priceIncreaseStep = Optional.ofNullable(priceIncreaseStep).orElse(BigDecimal.ZERO);
+            this.priceDecreaseStep = Optional.ofNullable(priceDecreaseStep).orElse(BigDecimal.ZERO);
+        }
+
+        /**
+         * Looks up a sellable item, falling back to the database for products
+         * created after the market was loaded. Must be called with the lock
+         * held.
+         */
+        private MarketItem item(Long productId) {
+            MarketItem item = items.get(productId);
+            if (item == null) {
+                ProductCatalog.CatalogProduct product = productCatalog.product(organizationId, productId)
+                        .orElseThrow(() -> new ResponseStatusException(
+                                HttpStatus.NOT_FOUND, "Product not found: " + productId));
+
+                if (!product.organizationId().equals(organizationId)) {
+                    throw new ResponseStatusException(
+                            HttpStatus.FORBIDDEN, "Product does not belong to your organization");
+                }
+
+                if (!product.active()) {
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST, "Product is not active: " + product.name());
+                }
+
+                Inventory inventory = inventoryRepository.findByOrganizationIdAndProductId(organizationId, productId)
+                        .orElseThrow(() -> new ResponseStatusException(
+                                HttpStatus.NOT_FOUND,
+                                "No inventory found for product: " + product.name()));
+
+                item = new MarketItem(product, inventory);
+                items.put(productId, item);
+                scheduleDecay(item, clock.getAsLong() + decayIntervalMs);
+            }
+
+            if (!item.active) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Product is not active: " + item.productName);
+            }
+            return item;
+        }
+    }
+
+    private static class MarketItem {
+        private final Long inventoryId;
+        private final Long organizationId;
+        private final Long productId;
+        private final String productName;
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+        private final boolean dynamicPricing;
+        private boolean active;
+        private BigDecimal quantity;
+        private BigDecimal price;
+        // Epoch milliseconds of the next decay, 0 if none is scheduled
+        private long decayAt;
+        private TimingWheel.Timeout<MarketItem> decayTimeout;
+
+        private MarketItem(ProductCatalog.CatalogProduct product, Inventory inventory) {
+            this.inventoryId = inventory.getId();
+            this.organizationId = product.organizationId();
+            this.productId = product.id();
+            this.productName = product.name();
+            this.minPrice = product.minPrice();
+            this.maxPrice = product.maxPrice();
+            this.dynamicPricing = product.dynamicPricing();
+            this.active = product.active();
+            this.quantity = inventory.getQuantity();
+            this.price = Optional.ofNullable(inventory.getAdjustedPrice()).orElse(product.basePrice());
+        }
+
+        /**
+         * Lowest price decay may reach, the decrease step if the product has
+         * no minimum price.
+         */
+        private BigDecimal floor(BigDecimal priceDecreaseStep) {
+            return minPrice != null ? minPrice : priceDecreaseStep;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.borsibaar.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Makes sure only one backend instance serves the markets of a database.
+ * <p>
+ * The {@link MarketEngine} keeps the authoritative prices and quantities in
+ * memory and the {@link MarketWriteBehind} journals sales locally, so a second
+ * instance on the same database would write its own stale prices and
+ * quantities over the first one's, and serve clients other versions, tickers
+ * and snapshots. On startup the instance takes a PostgreSQL session advisory
+ * lock on a connection it keeps until shutdown, and a second instance fails to
+ * start instead.
+ * <p>
+ * The market beans depend on this one, so the lock is held before any market
+ * is loaded or any journal is replayed.
+ */
+@Slf4j
+@Component("marketInstanceLock")
+public class MarketInstanceLock {
+
+    // Shared by every instance
+    static final long LOCK_KEY = 0x626f72736962L;
+
+    private final DataSource dataSource;
+    private Connection connection;
+
+    public MarketInstanceLock(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    public void acquire() throws SQLException {
+        Connection candidate = dataSource.getConnection();
+        try {
+            if (!"PostgreSQL".equals(candidate.getMetaData().getDatabaseProductName())) {
+                // Embedded test databases are never shared
+                candidate.close();
+                return;
+            }
+            try (PreparedStatement statement = candidate.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                statement.setLong(1, LOCK_KEY);
+                try (ResultSet result = statement.executeQuery()) {
+                    if (!result.next() || !result.getBoolean(1)) {
+                        throw new IllegalStateException(
+                                "Another backend instance already serves the markets of this database");
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            candidate.close();
+            throw e;
+        }
+        connection = candidate;
+        log.info("Serving the markets of this database");
+    }
+
+    @PreDestroy
+    public void release() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        // Pooled connections outlive close(), the session lock would stay with them
+        try (Connection held = connection;
+                PreparedStatement statement = held.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            statement.execute();
+        } finally {
+            connection = null;
+        }
+    }
+}
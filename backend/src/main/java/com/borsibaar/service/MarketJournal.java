@@ -0,0 +1,105 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of sales that have been accepted by the
+ * {@link MarketEngine} but not yet written to the database. One JSON document
+ * per line. Not thread safe, callers must synchronize.
+ */
+public class MarketJournal implements Closeable {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    public MarketJournal(Path path, ObjectMapper objectMapper, boolean fsync) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+    }
+
+    public void append(MarketWriteBehind.PendingSale sale) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(sale) + "\n").getBytes(StandardCharsets.UTF_8);
+        FileChannel out = channel();
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        if (fsync) {
+            out.force(false);
+        }
+    }
+
+    /**
+     * Reads every complete entry. A torn last line (crash during append) is
+     * ignored, since that sale was never acknowledged to the client.
+     */
+    public List<MarketWriteBehind.PendingSale> readAll() throws IOException {
+        List<MarketWriteBehind.PendingSale> sales = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return sales;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    sales.add(objectMapper.readValue(line, MarketWriteBehind.PendingSale.class));
+                } catch (IOException e) {
+                    break;
+                }
+            }
+        }
+        return sales;
+    }
+
+    public void truncate() throws IOException {
+        if (channel != null) {
+            channel.truncate(0);
+            if (fsync) {
+                channel.force(false);
+            }
+        } else if (Files.exists(path)) {
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                out.truncate(0);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,524 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.PriceTick;
+import com.borsibaar.repository.InventoryBatchRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import com.borsibaar.repository.ProductSalesStatsRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Durable write-behind queue for sales and price decays applied by the
+ * {@link MarketEngine}.
+ * <p>
+ * Every accepted sale is first appended to the {@link MarketJournal} and then
+ * queued. A background thread persists queued sales (inventory update plus
+ * SALE transactions and the hourly sales statistics) in batches. The journal
+ * is truncated once everything in it has reached the database and is replayed
+ * on startup, skipping sales whose reference ID is already stored.
+ * <p>
+ * A write that fails is retried on the next flush, and later writes touching
+ * the same products wait behind it, since they carry newer prices. A sale that
+ * keeps failing while other writes get through is parked in a dead-letter
+ * journal and replayed on the next start without overwriting prices.
+ * <p>
+ * Price decays share the queue, so they reach the database in the order they
+ * were applied relative to sales, and are stored as price ticks rather than
+ * transactions. They are not journaled: a decay lost in a crash is applied
+ * again one interval after the market is reloaded.
+ */
+@Slf4j
+@Service
+@DependsOn("marketInstanceLock")
+public class MarketWriteBehind {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final PriceTickRepository priceTickRepository;
+    private final SalesStatsRepository salesStatsRepository;
+    private final ProductSalesStatsRepository productSalesStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryVersions inventoryVersions;
+    private final PriceHistory priceHistory;
+    private final MarketJournal journal;
+    // Sales that kept failing, guarded by journalLock like the journal
+    private final MarketJournal deadLetters;
+    private final long flushIntervalMs;
+
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Object journalLock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Writes that failed to persist or wait behind one, in queue order, with their failed attempts
+    private final Map<PendingWrite, Integer> retries = new LinkedHashMap<>();
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * A change applied by the market engine, waiting to be persisted.
+     */
+    public sealed interface PendingWrite permits PendingSale, PendingDecay {
+
+        String referenceId();
+
+        Long organizationId();
+    }
+
+    /**
+     * A sale accepted by the market engine, waiting to be persisted.
+     */
+    public record PendingSale(
+            String saleId,
+            Long organizationId,
+            UUID userId,
+            Long barStationId,
+            OffsetDateTime createdAt,
+            List<MarketEngine.SaleLine> lines) implements PendingWrite {
+
+        @Override
+        public String referenceId() {
+            return saleId;
+        }
+    }
+
+    /**
+     * Prices of one organization lowered together by the market engine,
+     * waiting to be persisted.
+     */
+    public record PendingDecay(
+            String referenceId,
+            Long organizationId,
+            OffsetDateTime decayedAt,
+            List<MarketEngine.PriceDecay> decays) implements PendingWrite {
+    }
+
+    public MarketWriteBehind(InventoryRepository inventoryRepository,
+            InventoryTransactionRepository inventoryTransactionRepository,
+            PriceTickRepository priceTickRepository,
+            SalesStatsRepository salesStatsRepository,
+            ProductSalesStatsRepository productSalesStatsRepository,
+            PlatformTransactionManager transactionManager,
+            InventoryVersions inventoryVersions,
+            PriceHistory priceHistory,
+            ObjectMapper objectMapper,
+            @Value("${app.market.journal-path:data/market-journal.log}") String journalPath,
+            @Value("${app.market.dead-letter-path:data/market-dead-letters.log}") String deadLetterPath,
+            @Value("${app.market.journal-fsync:true}") boolean journalFsync,
+            @Value("${app.market.flush-interval-ms:100}") long flushIntervalMs) {
+        this.inventoryRepository = inventoryRepository;
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.priceTickRepository = priceTickRepository;
+        this.salesStatsRepository = salesStatsRepository;
+        this.productSalesStatsRepository = productSalesStatsRepository;
+        // Always commit independently, flush() may be called from inside another transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.inventoryVersions = inventoryVersions;
+        this.priceHistory = priceHistory;
+        this.journal = new MarketJournal(Path.of(journalPath), objectMapper, journalFsync);
+        this.deadLetters = new MarketJournal(Path.of(deadLetterPath), objectMapper, journalFsync);
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        replayJournal();
+
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("market-write-behind")
+                .daemon()
+                .start(this::runFlusher);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        flush();
+        synchronized (journalLock) {
+            journal.close();
+            deadLetters.close();
+        }
+    }
+
+    /**
+     * Durably records a sale and queues it for persistence. Called while the
+     * organization is locked in the market engine, so the queue order matches
+     * the order in which sales were applied.
+     *
+     * @throws ResponseStatusException if the sale could not be journaled
+     */
+    public void enqueue(PendingSale sale) {
+        synchronized (journalLock) {
+            try {
+                journal.append(sale);
+            } catch (IOException e) {
+                log.error("Failed to journal sale {}", sale.saleId(), e);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Sale could not be recorded", e);
+            }
+            queue.add(sale);
+        }
+    }
+
+    /**
+     * Queues price decays for persistence. Called while the organization is
+     * locked in the market engine, like {@link #enqueue(PendingSale)}.
+     */
+    public void enqueue(PendingDecay decay) {
+        queue.add(decay);
+    }
+
+    /**
+     * Persists everything queued so far in the calling thread. Used before
+     * operations that read inventory from the database and need it to be up
+     * to date.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingWrite> batch = new ArrayList<>(retries.keySet());
+            queue.drainTo(batch);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            persist(batch);
+
+            synchronized (journalLock) {
+                if (queue.isEmpty() && retries.isEmpty()) {
+                    journal.truncate();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to truncate market journal", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("Market write-behind flush failed", e);
+            }
+        }
+    }
+
+    private void persist(List<PendingWrite> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistWrites(batch, false));
+            retries.clear();
+            bumpVersions(batch);
+            batch.forEach(this::recordPrices);
+            return;
+        } catch (Exception e) {
+            log.warn("Failed to persist {} queued writes as a batch, retrying individually", batch.size(), e);
+        }
+
+        // Isolate the failing writes so they do not block the rest. Writes touching an inventory row of a
+        // failed write wait behind it, their absolute prices must not be overwritten by its retry.
+        Set<Long> blocked = new HashSet<>();
+        Map<PendingWrite, Exception> failures = new LinkedHashMap<>();
+        boolean persisted = false;
+        for (PendingWrite write : batch) {
+            Set<Long> inventoryIds = inventoryIds(write);
+            if (!Collections.disjoint(blocked, inventoryIds)) {
+                blocked.addAll(inventoryIds);
+                retries.putIfAbsent(write, 0);
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> persistWrites(List.of(write), false));
+                retries.remove(write);
+                bumpVersions(List.of(write));
+                recordPrices(write);
+                persisted = true;
+            } catch (Exception e) {
+                blocked.addAll(inventoryIds);
+                retries.putIfAbsent(write, 0);
+                failures.put(write, e);
+            }
+        }
+
+        for (Map.Entry<PendingWrite, Exception> failure : failures.entrySet()) {
+            PendingWrite write = failure.getKey();
+            // Nothing got through, e.g. the database is down, which is no reason to give up on a write
+            int attempts = persisted ? retries.merge(write, 1, Integer::sum) : retries.get(write);
+            if (attempts >= MAX_ATTEMPTS) {
+                park(write, attempts, failure.getValue());
+            } else {
+                log.warn("Failed to persist {} (attempt {})", write.referenceId(), attempts, failure.getValue());
+            }
+        }
+    }
+
+    /**
+     * Sets aside a write that keeps failing while others get through, so the
+     * writes waiting behind it can proceed. Sales go to the dead-letter
+     * journal. Decays are dropped, the next sale or decay of the product
+     * stores its current price.
+     */
+    private void park(PendingWrite write, int attempts, Exception failure) {
+        if (write instanceof PendingSale sale) {
+            synchronized (journalLock) {
+                try {
+                    deadLetters.append(sale);
+                } catch (IOException e) {
+                    log.error("Failed to park sale {}, keeping it queued", sale.saleId(), e);
+                    return;
+                }
+            }
+            log.error("Parked sale {} after {} failed attempts: {}", sale.saleId(), attempts, sale, failure);
+        } else {
+            log.error("Dropping {} after {} failed attempts", write.referenceId(), attempts, failure);
+        }
+        retries.remove(write);
+    }
+
+    private static Set<Long> inventoryIds(PendingWrite write) {
+        return switch (write) {
+            case PendingSale sale -> sale.lines().stream().map(MarketEngine.SaleLine::inventoryId)
+                    .collect(Collectors.toSet());
+            case PendingDecay decay -> decay.decays().stream().map(MarketEngine.PriceDecay::inventoryId)
+                    .collect(Collectors.toSet());
+        };
+    }
+
+    /**
+     * Records the products changed per organization as one change each.
+     */
+    private void bumpVersions(List<PendingWrite> writes) {
+        Map<Long, Set<Long>> productIds = new LinkedHashMap<>();
+        for (PendingWrite write : writes) {
+            Set<Long> organizationProducts = productIds.computeIfAbsent(write.organizationId(),
+                    id -> new HashSet<>());
+            switch (write) {
+                case PendingSale sale -> sale.lines().forEach(line -> organizationProducts.add(line.productId()));
+                case PendingDecay decay -> decay.decays().forEach(d -> organizationProducts.add(d.productId()));
+            }
+        }
+        productIds.forEach(inventoryVersions::bump);
+    }
+
+    private void recordPrices(PendingWrite write) {
+        switch (write) {
+            case PendingSale sale -> sale.lines().forEach(line -> priceHistory.record(line.productId(),
+                    sale.createdAt(), line.priceBefore(), line.priceAfter()));
+            case PendingDecay decay -> decay.decays().forEach(d -> priceHistory.record(d.productId(),
+                    decay.decayedAt(), d.priceBefore(), d.priceAfter()));
+        }
+    }
+
+    /**
+     * Writes sales and decays with a constant number of statements: one lock
+     * query and one batched update for the affected inventory rows, one
+     * batched insert each for the SALE transactions and the price ticks of
+     * decays and one upsert per statistics bucket.
+     *
+     * @param keepPrices Leaves stored prices as they are, for parked sales
+     *                   whose prices were overwritten since
+     */
+    private void persistWrites(List<? extends PendingWrite> writes, boolean keepPrices) {
+        Map<Long, InventoryBatchRepository.InventoryDelta> deltas = new HashMap<>();
+        Map<SalesBucket, BucketTotals> salesBuckets = new LinkedHashMap<>();
+        Map<ProductBucket, BucketTotals> productBuckets = new LinkedHashMap<>();
+        List<InventoryTransaction> transactions = new ArrayList<>();
+        List<PriceTick> ticks = new ArrayList<>();
+
+        for (PendingWrite write : writes) {
+            if (write instanceof PendingDecay decay) {
+                addDecays(decay, deltas, ticks);
+                continue;
+            }
+            PendingSale sale = (PendingSale) write;
+            OffsetDateTime bucketStart = sale.createdAt().withOffsetSameInstant(ZoneOffset.UTC)
+                    .truncatedTo(ChronoUnit.HOURS);
+            BucketTotals saleTotals = salesBuckets.computeIfAbsent(new SalesBucket(sale.organizationId(),
+                    sale.userId(), sale.barStationId(), bucketStart), key -> new BucketTotals());
+            saleTotals.count++;
+
+            for (MarketEngine.SaleLine line : sale.lines()) {
+                // Writes are in the order they were applied, the last one carries the current price
+                deltas.merge(line.inventoryId(),
+                        new InventoryBatchRepository.InventoryDelta(line.inventoryId(), line.quantity(),
+                                keepPrices ? null : line.priceAfter(), sale.createdAt(), sale.createdAt()),
+                        InventoryBatchRepository.InventoryDelta::then);
+
+                BigDecimal lineRevenue = line.priceBefore().multiply(line.quantity());
+                saleTotals.add(line.quantity(), lineRevenue);
+                BucketTotals productTotals = productBuckets.computeIfAbsent(new ProductBucket(
+                        sale.organizationId(), line.productId(), bucketStart), key -> new BucketTotals());
+                productTotals.count++;
+                productTotals.add(line.quantity(), lineRevenue);
+
+                InventoryTransaction transaction = new InventoryTransaction();
+                transaction.setInventory(inventoryRepository.getReferenceById(line.inventoryId()));
+                transaction.setOrganizationId(sale.organizationId());
+                transaction.setProductId(line.productId());
+                transaction.setTransactionType("SALE");
+                transaction.setQuantityChange(line.quantity().negate()); // Negative for sales
+                transaction.setQuantityBefore(line.quantityBefore());
+                transaction.setQuantityAfter(line.quantityAfter());
+                transaction.setPriceBefore(line.priceBefore());
+                transaction.setPriceAfter(line.priceAfter());
+                transaction.setReferenceId(sale.saleId());
+                transaction.setNotes("POS Sale");
+                transaction.setCreatedBy(sale.userId());
+                transaction.setBarStationId(sale.barStationId());
+                transaction.setCreatedAt(sale.createdAt());
+                transactions.add(transaction);
+            }
+        }
+
+        inventoryRepository.applyDeltas(deltas.values());
+        inventoryTransactionRepository.saveAll(transactions);
+        if (!ticks.isEmpty()) {
+            priceTickRepository.saveAll(ticks);
+        }
+        salesBuckets.forEach((bucket, totals) -> salesStatsRepository.addSales(bucket.organizationId(),
+                bucket.userId(), bucket.barStationId(), bucket.bucketStart(), totals.count, totals.quantity,
+                totals.revenue));
+        productBuckets.forEach((bucket, totals) -> productSalesStatsRepository.addSaleLines(
+                bucket.organizationId(), bucket.productId(), bucket.bucketStart(), totals.count, totals.quantity,
+                totals.revenue));
+    }
+
+    private void addDecays(PendingDecay pending, Map<Long, InventoryBatchRepository.InventoryDelta> deltas,
+            List<PriceTick> ticks) {
+        for (MarketEngine.PriceDecay decay : pending.decays()) {
+            InventoryBatchRepository.InventoryDelta delta = new InventoryBatchRepository.InventoryDelta(
+                    decay.inventoryId(), BigDecimal.ZERO, decay.priceAfter(), pending.decayedAt(), null);
+            deltas.merge(decay.inventoryId(), delta, InventoryBatchRepository.InventoryDelta::then);
+            ticks.add(new PriceTick(null, decay.inventoryId(), pending.decayedAt(), decay.priceAfter()));
+        }
+    }
+
+    private record SalesBucket(Long organizationId, UUID userId, Long barStationId, OffsetDateTime bucketStart) {
+    }
+
+    private record ProductBucket(Long organizationId, Long productId, OffsetDateTime bucketStart) {
+    }
+
+    private static class BucketTotals {
+        private long count;
+        private BigDecimal quantity = BigDecimal.ZERO;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        private void add(BigDecimal quantity, BigDecimal revenue) {
+            this.quantity = this.quantity.add(quantity);
+            this.revenue = this.revenue.add(revenue);
+        }
+    }
+
+    /**
+     * Replays journaled sales that did not reach the database, then parked
+     * sales without their prices. Sales that still fail are parked, the
+     * dead-letter journal is only truncated once all of it is stored.
+     */
+    private void replayJournal() throws IOException {
+        List<PendingSale> journaled;
+        List<PendingSale> parked;
+        synchronized (journalLock) {
+            journaled = journal.readAll();
+            parked = deadLetters.readAll();
+        }
+        if (journaled.isEmpty() && parked.isEmpty()) {
+            return;
+        }
+
+        Set<String> parkedIds = parked.stream().map(PendingSale::saleId).collect(Collectors.toSet());
+        List<PendingSale> failed = new ArrayList<>();
+        int replayed = 0;
+        for (PendingSale sale : journaled) {
+            if (parkedIds.contains(sale.saleId())
+                    || inventoryTransactionRepository.existsByReferenceId(sale.saleId())) {
+                continue;
+            }
+            if (replay(sale, false)) {
+                replayed++;
+            } else {
+                failed.add(sale);
+            }
+        }
+        boolean parkedStored = true;
+        for (PendingSale sale : parked) {
+            if (inventoryTransactionRepository.existsByReferenceId(sale.saleId())) {
+                continue;
+            }
+            if (replay(sale, true)) {
+                replayed++;
+            } else {
+                parkedStored = false;
+            }
+        }
+        log.info("Replayed {} of {} journaled and {} parked sales", replayed, journaled.size(), parked.size());
+
+        synchronized (journalLock) {
+            if (failed.isEmpty() && parkedStored) {
+                deadLetters.truncate();
+            }
+            for (PendingSale sale : failed) {
+                deadLetters.append(sale);
+            }
+            journal.truncate();
+        }
+    }
+
+    private boolean replay(PendingSale sale, boolean keepPrices) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistWrites(List.of(sale), keepPrices));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to replay sale {}: {}", sale.saleId(), sale, e);
+            return false;
+        }
+    }
+}
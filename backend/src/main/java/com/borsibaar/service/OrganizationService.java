@@ -5,6 +5,7 @@ import com.borsibaar.dto.OrganizationResponseDto;
 import com.borsibaar.entity.Organization;
 import com.borsibaar.mapper.OrganizationMapper;
 import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.util.TransactionUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,10 +19,15 @@ public class OrganizationService {
 
     private final OrganizationRepository organizationRepository;
     private final OrganizationMapper organizationMapper;
+    private final MarketEngine marketEngine;
+    private final ProductCatalog productCatalog;
 
-    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper) {
+    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper,
+            MarketEngine marketEngine, ProductCatalog productCatalog) {
         this.organizationRepository = organizationRepository;
         this.organizationMapper = organizationMapper;
+        this.marketEngine = marketEngine;
+        this.productCatalog = productCatalog;
     }
 
     @Transactional
@@ -41,6 +47,17 @@ public class OrganizationService {
         return organizationMapper.toResponse(organization);
     }
 
+    /**
+     * Fails with 404 unless the organization exists, for public endpoints
+     * that take the organization ID from the client.
+     */
+    @Transactional(readOnly = true)
+    public void requireExists(Long id) {
+        if (!organizationRepository.existsById(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Organization not found: " + id);
+        }
+    }
+
     @Transactional(readOnly = true)
     public List<OrganizationResponseDto> getAll() {
         return organizationRepository.findAll()
@@ -56,6 +73,10 @@ public class OrganizationService {
         organizationMapper.updateEntity(organization, request);
         organization.setUpdatedAt(OffsetDateTime.now());
         Organization saved = organizationRepository.save(organization);
+        TransactionUtils.afterCommit(() -> {
+            productCatalog.organizationChanged(saved);
+            marketEngine.updatePriceSteps(id, saved.getPriceIncreaseStep(), saved.getPriceDecreaseStep());
+        });
         return organizationMapper.toResponse(saved);
     }
 }
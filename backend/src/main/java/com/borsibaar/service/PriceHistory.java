@@ -0,0 +1,429 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.PriceTick;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling in-memory price series per product, served as OHLC candles for
+ * price charts.
+ * <p>
+ * A product's series is seeded from the price columns of its inventory
+ * transactions and from its price ticks the first time it is charted and kept
+ * up to date from then on by the writers of those rows, which report every
+ * committed price change through {@link #record}. Changes are kept in 10
+ * second candles for the retention period. Coarser candles are merged from
+ * them on request.
+ * Series that are not charted for a while are dropped.
+ */
+@Service
+public class PriceHistory {
+
+    public static final int MAX_LIMIT = 500;
+    static final long BASE_BUCKET_MS = 10_000;
+    static final Map<String, Duration> BUCKETS = bucketSizes();
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final PriceTickRepository priceTickRepository;
+    private final long retentionMs;
+    private final long idleMs;
+    private final LongSupplier clock;
+
+    private final Map<Long, Series> series = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PriceHistory(InventoryRepository inventoryRepository,
+            InventoryTransactionRepository inventoryTransactionRepository,
+            PriceTickRepository priceTickRepository,
+            @Value("${app.price-history.retention-ms:7200000}") long retentionMs,
+            @Value("${app.price-history.idle-ms:3600000}") long idleMs) {
+        this(inventoryRepository, inventoryTransactionRepository, priceTickRepository, retentionMs, idleMs,
+                System::currentTimeMillis);
+    }
+
+    PriceHistory(InventoryRepository inventoryRepository,
+            InventoryTransactionRepository inventoryTransactionRepository,
+            PriceTickRepository priceTickRepository,
+            long retentionMs, long idleMs, LongSupplier clock) {
+        this.inventoryRepository = inventoryRepository;
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.priceTickRepository = priceTickRepository;
+        this.retentionMs = retentionMs;
+        this.idleMs = idleMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the latest candles of a product, oldest first and ending with
+     * the candle in progress. Candles without price changes repeat the
+     * previous close.
+     *
+     * @param bucket Candle size, one of {@link #BUCKETS}
+     * @param limit  Number of candles, at most {@link #MAX_LIMIT}
+     */
+    public List<PriceCandleDto> getCandles(Long organizationId, Long productId, String bucket, int limit) {
+        Duration size = BUCKETS.get(bucket);
+        if (size == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unsupported bucket: " + bucket + ", expected one of " + BUCKETS.keySet());
+        }
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be positive");
+        }
+
+        return series(organizationId, productId).candles(size.toMillis(), Math.min(limit, MAX_LIMIT),
+                clock.getAsLong());
+    }
+
+    /**
+     * Adds a committed price change to the product's series. Ignored if the
+     * product is not being charted, its series is seeded from the database
+     * once it is.
+     */
+    public void record(Long productId, OffsetDateTime at, BigDecimal priceBefore, BigDecimal priceAfter) {
+        if (priceBefore == null || priceAfter == null || priceBefore.compareTo(priceAfter) == 0) {
+            return;
+        }
+        Series productSeries = series.get(productId);
+        if (productSeries != null) {
+            productSeries.record(new Change(at.toInstant().toEpochMilli(), priceBefore, priceAfter),
+                    clock.getAsLong() - retentionMs);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.price-history.idle-ms:3600000}")
+    public void evictIdle() {
+        long cutoff = clock.getAsLong() - idleMs;
+        series.values().removeIf(productSeries -> productSeries.lastReadMs < cutoff);
+    }
+
+    private Series series(Long organizationId, Long productId) {
+        Series productSeries = series.get(productId);
+        if (productSeries == null) {
+            Inventory inventory = inventoryRepository.findByOrganizationIdAndProductId(organizationId, productId)
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.NOT_FOUND, "No inventory found for this product"));
+            BigDecimal price = Optional.ofNullable(inventory.getAdjustedPrice())
+                    .orElseGet(() -> inventory.getProduct().getBasePrice());
+
+            Series created = new Series(organizationId, price);
+            created.lastReadMs = clock.getAsLong();
+            productSeries = series.putIfAbsent(productId, created);
+            if (productSeries == null) {
+                productSeries = created;
+                seed(productId, created, inventory.getId());
+            }
+        }
+
+        if (!productSeries.organizationId.equals(organizationId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No inventory found for this product");
+        }
+        productSeries.awaitSeeded();
+        productSeries.lastReadMs = clock.getAsLong();
+        return productSeries;
+    }
+
+    /**
+     * Loads the retained changes from the database. The series is registered
+     * before the query, so changes committed meanwhile are recorded live and
+     * merged without duplicating the ones the query also returned.
+     */
+    private void seed(Long productId, Series productSeries, Long inventoryId) {
+        long since = clock.getAsLong() - retentionMs;
+        OffsetDateTime sinceTime = Instant.ofEpochMilli(since).atOffset(ZoneOffset.UTC);
+        try {
+            List<Change> changes = merge(
+                    inventoryTransactionRepository.findPriceChangesSince(inventoryId, sinceTime),
+                    priceTickRepository.findTicksSince(inventoryId, sinceTime));
+            productSeries.seed(changes, since);
+        } catch (RuntimeException e) {
+            series.remove(productId, productSeries);
+            productSeries.fail();
+            throw e;
+        }
+    }
+
+    /**
+     * Merges transaction price changes and price ticks by time. A tick only
+     * stores the new price, it changed from the price of the change before
+     * it. The first tick of the retention period has none and counts as
+     * unchanged.
+     */
+    private static List<Change> merge(List<InventoryTransactionRepository.PriceChange> transactions,
+            List<PriceTick> ticks) {
+        List<Change> changes = new ArrayList<>(transactions.size() + ticks.size());
+        int next = 0;
+        BigDecimal price = null;
+        for (PriceTick tick : ticks) {
+            long tickMs = tick.getCreatedAt().toInstant().toEpochMilli();
+            for (; next < transactions.size()
+                    && transactions.get(next).getCreatedAt().toInstant().toEpochMilli() <= tickMs; next++) {
+                changes.add(Change.of(transactions.get(next)));
+                price = transactions.get(next).getPriceAfter();
+            }
+            changes.add(new Change(tickMs, price != null ? price : tick.getPrice(), tick.getPrice()));
+            price = tick.getPrice();
+        }
+        for (; next < transactions.size(); next++) {
+            changes.add(Change.of(transactions.get(next)));
+        }
+        return changes;
+    }
+
+    private static Map<String, Duration> bucketSizes() {
+        Map<String, Duration> sizes = new LinkedHashMap<>();
+        sizes.put("10s", Duration.ofSeconds(10));
+        sizes.put("30s", Duration.ofSeconds(30));
+        sizes.put("1m", Duration.ofMinutes(1));
+        sizes.put("5m", Duration.ofMinutes(5));
+        sizes.put("15m", Duration.ofMinutes(15));
+        return Collections.unmodifiableMap(sizes);
+    }
+
+    private record Change(long atMs, BigDecimal priceBefore, BigDecimal priceAfter) {
+
+        private static Change of(InventoryTransactionRepository.PriceChange change) {
+            return new Change(change.getCreatedAt().toInstant().toEpochMilli(), change.getPriceBefore(),
+                    change.getPriceAfter());
+        }
+
+        /**
+         * Identity of the change regardless of the scale of its prices and of
+         * the price before, which is inferred for seeded price ticks.
+         */
+        private Change normalized() {
+            return new Change(atMs, null, priceAfter.stripTrailingZeros());
+        }
+    }
+
+    private static class Series {
+        private final Long organizationId;
+        // Base candles by start time
+        private final TreeMap<Long, Candle> candles = new TreeMap<>();
+        // Changes recorded while the series is being seeded
+        private List<Change> pending = new ArrayList<>();
+        private boolean seeded;
+        private boolean failed;
+        private BigDecimal lastPrice;
+        private long lastPriceAtMs = Long.MIN_VALUE;
+        private volatile long lastReadMs;
+
+        private Series(Long organizationId, BigDecimal currentPrice) {
+            this.organizationId = organizationId;
+            this.lastPrice = currentPrice;
+        }
+
+        private synchronized void record(Change change, long retainFromMs) {
+            if (!seeded) {
+                pending.add(change);
+                return;
+            }
+            add(change);
+            candles.headMap(retainFromMs - retainFromMs % BASE_BUCKET_MS).clear();
+        }
+
+        private synchronized void seed(List<Change> changes, long retainFromMs) {
+            Set<Change> seen = new HashSet<>();
+            for (Change change : changes) {
+                add(change);
+                seen.add(change.normalized());
+            }
+            for (Change change : pending) {
+                if (!seen.contains(change.normalized())) {
+                    add(change);
+                }
+            }
+            candles.headMap(retainFromMs - retainFromMs % BASE_BUCKET_MS).clear();
+            pending = null;
+            seeded = true;
+            notifyAll();
+        }
+
+        private synchronized void fail() {
+            failed = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitSeeded() {
+            boolean interrupted = false;
+            while (!seeded && !failed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (!seeded) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Price history not available");
+            }
+        }
+
+        private void add(Change change) {
+            long start = change.atMs() - Math.floorMod(change.atMs(), BASE_BUCKET_MS);
+            Candle candle = candles.get(start);
+            if (candle == null) {
+                candles.put(start, new Candle(change));
+            } else {
+                candle.add(change);
+            }
+            if (change.atMs() >= lastPriceAtMs) {
+                lastPrice = change.priceAfter();
+                lastPriceAtMs = change.atMs();
+            }
+        }
+
+        private synchronized List<PriceCandleDto> candles(long sizeMs, int limit, long nowMs) {
+            long end = nowMs - Math.floorMod(nowMs, sizeMs) + sizeMs;
+            long start = end - limit * sizeMs;
+
+            // Price when the first returned candle opens
+            Map.Entry<Long, Candle> before = candles.lowerEntry(start);
+            Map.Entry<Long, Candle> first = candles.ceilingEntry(start);
+            BigDecimal price = before != null ? before.getValue().close
+                    : first != null ? first.getValue().open : lastPrice;
+
+            List<PriceCandleDto> result = new ArrayList<>(limit);
+            // Start of the next candle to return and the base candles merged into it so far
+            long bucketStart = start;
+            Candle merged = null;
+            for (Candle candle : candles.subMap(start, end).values()) {
+                long candleStart = candle.startMs - Math.floorMod(candle.startMs, sizeMs);
+                if (merged != null && candleStart != bucketStart) {
+                    result.add(merged.toDto(bucketStart));
+                    price = merged.close;
+                    merged = null;
+                    bucketStart += sizeMs;
+                }
+                for (; bucketStart < candleStart; bucketStart += sizeMs) {
+                    result.add(Candle.flat(price).toDto(bucketStart));
+                }
+                if (merged == null) {
+                    merged = candle.copy();
+                } else {
+                    merged.merge(candle);
+                }
+            }
+            if (merged != null) {
+                result.add(merged.toDto(bucketStart));
+                price = merged.close;
+                bucketStart += sizeMs;
+            }
+            for (; bucketStart < end; bucketStart += sizeMs) {
+                result.add(Candle.flat(price).toDto(bucketStart));
+            }
+            return result;
+        }
+    }
+
+    private static class Candle {
+        private long startMs;
+        private long openAtMs;
+        private long closeAtMs;
+        private BigDecimal open;
+        private BigDecimal high;
+        private BigDecimal low;
+        private BigDecimal close;
+        private int changes;
+
+        private Candle() {
+        }
+
+        private Candle(Change change) {
+            this.startMs = change.atMs() - Math.floorMod(change.atMs(), BASE_BUCKET_MS);
+            this.openAtMs = change.atMs();
+            this.closeAtMs = change.atMs();
+            this.open = change.priceBefore();
+            this.close = change.priceAfter();
+            this.high = open.max(close);
+            this.low = open.min(close);
+            this.changes = 1;
+        }
+
+        private static Candle flat(BigDecimal price) {
+            Candle candle = new Candle();
+            candle.open = price;
+            candle.high = price;
+            candle.low = price;
+            candle.close = price;
+            return candle;
+        }
+
+        /**
+         * Changes may be reported slightly out of order, open and close
+         * follow the change time rather than the arrival order.
+         */
+        private void add(Change change) {
+            if (change.atMs() < openAtMs) {
+                open = change.priceBefore();
+                openAtMs = change.atMs();
+            }
+            if (change.atMs() >= closeAtMs) {
+                close = change.priceAfter();
+                closeAtMs = change.atMs();
+            }
+            high = high.max(change.priceBefore()).max(change.priceAfter());
+            low = low.min(change.priceBefore()).min(change.priceAfter());
+            changes++;
+        }
+
+        /**
+         * Merges the next base candle into this coarser one.
+         */
+        private void merge(Candle next) {
+            close = next.close;
+            closeAtMs = next.closeAtMs;
+            high = high.max(next.high);
+            low = low.min(next.low);
+            changes += next.changes;
+        }
+
+        private Candle copy() {
+            Candle candle = flat(open);
+            candle.startMs = startMs;
+            candle.openAtMs = openAtMs;
+            candle.closeAtMs = closeAtMs;
+            candle.high = high;
+            candle.low = low;
+            candle.close = close;
+            candle.changes = changes;
+            return candle;
+        }
+
+        private PriceCandleDto toDto(long startMs) {
+            String start = Instant.ofEpochMilli(startMs).atOffset(ZoneOffset.UTC)
+                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            return new PriceCandleDto(start, open, high, low, close, changes);
+        }
+    }
+}
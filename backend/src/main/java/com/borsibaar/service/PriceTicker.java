@@ -0,0 +1,233 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryTickDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out hub for live price and quantity changes, streamed to clients as
+ * Server-Sent Events.
+ * <p>
+ * Changes are published by the {@link MarketEngine} while it holds the
+ * organization lock, so each change is serialized once, in order, and the
+ * same frame is queued for every subscriber of the organization without
+ * blocking. Every subscriber has a bounded queue drained by a virtual thread
+ * of its own, so a slow client only delays itself. Clients whose queue fills
+ * up are disconnected and reload on reconnect. Nothing is serialized for
+ * organizations without subscribers.
+ * <p>
+ * The stream is public, so subscribers are capped per organization and per
+ * client address.
+ */
+@Slf4j
+@Service
+public class PriceTicker {
+
+    static final String TICK_EVENT = "tick";
+
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final int queueSize;
+    private final int maxPerOrganization;
+    private final int maxPerAddress;
+
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Guards the caps, counted by address across organizations
+    private final Object subscriptionLock = new Object();
+    private final Map<String, Integer> subscribersPerAddress = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Writes to a client block until it reads them, each runs on a virtual thread
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PriceTicker(ObjectMapper objectMapper,
+            @Value("${app.market.ticker-timeout-ms:1800000}") long timeoutMs,
+            @Value("${app.market.ticker-queue-size:64}") int queueSize,
+            @Value("${app.market.ticker-max-per-organization:1000}") int maxPerOrganization,
+            @Value("${app.market.ticker-max-per-address:20}") int maxPerAddress) {
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.queueSize = queueSize;
+        this.maxPerOrganization = maxPerOrganization;
+        this.maxPerAddress = maxPerAddress;
+    }
+
+    private static class Subscriber {
+        private final Long organizationId;
+        private final String address;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> frames;
+        // Set while a sender drains the queue, keeps frames in order
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+
+        private Subscriber(Long organizationId, String address, SseEmitter emitter, int queueSize) {
+            this.organizationId = organizationId;
+            this.address = address;
+            this.emitter = emitter;
+            this.frames = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+
+    /**
+     * Opens a stream of changes for an organization. Clients reconnect when
+     * the stream times out or falls behind.
+     *
+     * @param address Client address the per-address cap applies to
+     */
+    public SseEmitter subscribe(Long organizationId, String address) {
+        Subscriber subscriber = new Subscriber(organizationId, address, new SseEmitter(timeoutMs), queueSize);
+        synchronized (subscriptionLock) {
+            List<Subscriber> organizationSubscribers = subscribers.get(organizationId);
+            if (organizationSubscribers != null && organizationSubscribers.size() >= maxPerOrganization) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many price streams for this organization");
+            }
+            int fromAddress = subscribersPerAddress.getOrDefault(address, 0);
+            if (fromAddress >= maxPerAddress) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many price streams from this address");
+            }
+            // Created with the first subscriber and removed with the last one
+            subscribers.computeIfAbsent(organizationId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+            subscribersPerAddress.put(address, fromAddress + 1);
+        }
+
+        Runnable remove = () -> remove(subscriber);
+        subscriber.emitter.onCompletion(remove);
+        subscriber.emitter.onTimeout(remove);
+        subscriber.emitter.onError(e -> remove.run());
+        return subscriber.emitter;
+    }
+
+    /**
+     * Queues changed products of an organization for delivery to its
+     * subscribers. Must be called in the order the changes were applied.
+     */
+    public void publish(Long organizationId, List<InventoryTickDto> ticks) {
+        List<Subscriber> organizationSubscribers = subscribers.get(organizationId);
+        if (ticks.isEmpty() || organizationSubscribers == null || organizationSubscribers.isEmpty()) {
+            return;
+        }
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(ticks);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize price ticks for organization {}", organizationId, e);
+            return;
+        }
+
+        // Already serialized, written as-is to every subscriber
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event()
+                .id(Long.toString(sequence.incrementAndGet()))
+                .name(TICK_EVENT)
+                .data(json, MediaType.TEXT_PLAIN)
+                .build();
+        organizationSubscribers.forEach(subscriber -> offer(subscriber, frame));
+    }
+
+    public boolean hasSubscribers(Long organizationId) {
+        List<Subscriber> organizationSubscribers = subscribers.get(organizationId);
+        return organizationSubscribers != null && !organizationSubscribers.isEmpty();
+    }
+
+    /**
+     * Keeps idle connections from being closed by proxies and detects clients
+     * that went away without closing the stream.
+     */
+    @Scheduled(fixedRateString = "${app.market.ticker-heartbeat-ms:25000}")
+    public void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event().comment("").build();
+        subscribers.values().forEach(organizationSubscribers -> organizationSubscribers
+                .forEach(subscriber -> offer(subscriber, frame)));
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        subscribers.values().forEach(organizationSubscribers -> organizationSubscribers
+                .forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    /**
+     * Queues a frame without blocking and makes sure a sender drains the
+     * queue. Subscribers whose queue is full are disconnected.
+     */
+    private void offer(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        if (!subscriber.frames.offer(frame)) {
+            // Too far behind to catch up, the client reloads on reconnect
+            remove(subscriber);
+            execute(subscriber.emitter::complete);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            while ((frame = subscriber.frames.poll()) != null) {
+                try {
+                    subscriber.emitter.send(frame);
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away
+                    remove(subscriber);
+                    subscriber.emitter.completeWithError(e);
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // A frame queued before the flag was cleared found no sender to start
+        } while (!subscriber.frames.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void execute(Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (subscriptionLock) {
+            subscribers.computeIfPresent(subscriber.organizationId, (id, organizationSubscribers) -> {
+                organizationSubscribers.remove(subscriber);
+                return organizationSubscribers.isEmpty() ? null : organizationSubscribers;
+            });
+            subscribersPerAddress.computeIfPresent(subscriber.address,
+                    (address, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+}
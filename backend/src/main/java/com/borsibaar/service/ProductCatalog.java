@@ -0,0 +1,175 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rarely changing catalog data of each organization: its products with their
+ * category and the organization's price increase and decrease steps.
+ * <p>
+ * Each organization has an immutable snapshot that is replaced as a whole on
+ * every change, so readers never lock and never see a half applied change.
+ * Products are read from the database the first time they are requested.
+ * Writers must report committed changes through {@link #productChanged},
+ * {@link #organizationChanged} or {@link #invalidate}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCatalog {
+
+    private final ProductRepository productRepository;
+    private final OrganizationRepository organizationRepository;
+
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Catalog view of a product.
+     */
+    public record CatalogProduct(
+            Long id,
+            Long organizationId,
+            Long categoryId,
+            String categoryName,
+            String name,
+            String description,
+            BigDecimal basePrice,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            boolean active,
+            boolean dynamicPricing) {
+
+        static CatalogProduct of(Product product, Category category) {
+            return new CatalogProduct(
+                    product.getId(),
+                    product.getOrganizationId(),
+                    product.getCategoryId(),
+                    category != null ? category.getName() : null,
+                    product.getName(),
+                    product.getDescription(),
+                    product.getBasePrice(),
+                    product.getMinPrice(),
+                    product.getMaxPrice(),
+                    product.isActive(),
+                    category != null && category.isDynamicPricing());
+        }
+
+        private CatalogProduct deactivated() {
+            return new CatalogProduct(id, organizationId, categoryId, categoryName, name, description, basePrice,
+                    minPrice, maxPrice, false, dynamicPricing);
+        }
+    }
+
+    /**
+     * Compared by identity, a snapshot that was replaced never matches its
+     * successor even if their contents are equal.
+     */
+    private static final class Snapshot {
+        private final BigDecimal priceIncreaseStep;
+        private final BigDecimal priceDecreaseStep;
+        private final Map<Long, CatalogProduct> products;
+
+        private Snapshot(BigDecimal priceIncreaseStep, BigDecimal priceDecreaseStep,
+                Map<Long, CatalogProduct> products) {
+            this.priceIncreaseStep = Optional.ofNullable(priceIncreaseStep).orElse(BigDecimal.ZERO);
+            this.priceDecreaseStep = Optional.ofNullable(priceDecreaseStep).orElse(BigDecimal.ZERO);
+            this.products = products;
+        }
+
+        private Snapshot(Organization organization, Map<Long, CatalogProduct> products) {
+            this(organization != null ? organization.getPriceIncreaseStep() : null,
+                    organization != null ? organization.getPriceDecreaseStep() : null, products);
+        }
+
+        private Snapshot withProducts(Map<Long, CatalogProduct> products) {
+            return new Snapshot(priceIncreaseStep, priceDecreaseStep, products);
+        }
+
+        private Snapshot withProduct(CatalogProduct product) {
+            Map<Long, CatalogProduct> copy = new HashMap<>(products);
+            copy.put(product.id(), product);
+            return withProducts(Collections.unmodifiableMap(copy));
+        }
+    }
+
+    /**
+     * Looks up a product by ID. A product of another organization is
+     * returned as well, so callers can tell it apart from a missing one, but
+     * it is not cached for the requesting organization.
+     */
+    public Optional<CatalogProduct> product(Long organizationId, Long productId) {
+        Snapshot snapshot = snapshot(organizationId);
+        CatalogProduct cached = snapshot.products.get(productId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<CatalogProduct> loaded = productRepository.findWithCategoryById(productId)
+                .map(product -> CatalogProduct.of(product, product.getCategory()));
+        // Only added to the snapshot it was read against, a change committed meanwhile has replaced it
+        loaded.filter(product -> product.organizationId().equals(organizationId))
+                .ifPresent(product -> snapshots.replace(organizationId, snapshot, snapshot.withProduct(product)));
+        return loaded;
+    }
+
+    public BigDecimal priceIncreaseStep(Long organizationId) {
+        return snapshot(organizationId).priceIncreaseStep;
+    }
+
+    public BigDecimal priceDecreaseStep(Long organizationId) {
+        return snapshot(organizationId).priceDecreaseStep;
+    }
+
+    /**
+     * Adds or replaces a product after a committed create.
+     */
+    public void productChanged(Product product, Category category) {
+        CatalogProduct changed = CatalogProduct.of(product, category);
+        snapshots.computeIfPresent(product.getOrganizationId(), (id, snapshot) -> snapshot.withProduct(changed));
+    }
+
+    /**
+     * Marks a product inactive after a committed delete.
+     */
+    public void productDeactivated(Long organizationId, Long productId) {
+        snapshots.computeIfPresent(organizationId, (id, snapshot) -> {
+            CatalogProduct cached = snapshot.products.get(productId);
+            // Replaced even if not cached, so that a read racing with the delete is discarded
+            return cached != null ? snapshot.withProduct(cached.deactivated())
+                    : snapshot.withProducts(snapshot.products);
+        });
+    }
+
+    /**
+     * Replaces the pricing configuration after a committed organization
+     * update.
+     */
+    public void organizationChanged(Organization organization) {
+        snapshots.computeIfPresent(organization.getId(),
+                (id, snapshot) -> new Snapshot(organization, snapshot.products));
+    }
+
+    /**
+     * Drops the snapshot of an organization, e.g. after a category change
+     * that affects several products. It is rebuilt on demand.
+     */
+    public void invalidate(Long organizationId) {
+        snapshots.remove(organizationId);
+    }
+
+    private Snapshot snapshot(Long organizationId) {
+        return snapshots.computeIfAbsent(organizationId, id -> new Snapshot(
+                organizationRepository.findById(id).orElse(null), Map.of()));
+    }
+}
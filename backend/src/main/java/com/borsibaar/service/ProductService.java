@@ -12,6 +12,7 @@ import com.borsibaar.repository.InventoryRepository;
 import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.util.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -31,6 +32,9 @@ public class ProductService {
     private final UserRepository userRepository;
     private final InventoryRepository inventoryRepository;
     private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final MarketEngine marketEngine;
+    private final InventoryVersions inventoryVersions;
+    private final ProductCatalog productCatalog;
 
     @Transactional
     public ProductResponseDto create(ProductRequestDto request, Long orgId) {
@@ -63,6 +67,10 @@ public class ProductService {
 
         // Automatically create inventory record with 0 quantity
         createInitialInventory(saved, orgId);
+        TransactionUtils.afterCommit(() -> {
+            productCatalog.productChanged(saved, cat);
+            inventoryVersions.bump(orgId);
+        });
 
         ProductResponseDto base = productMapper.toResponse(saved);
         return new ProductResponseDto(
@@ -82,6 +90,8 @@ public class ProductService {
 
         InventoryTransaction transaction = new InventoryTransaction();
         transaction.setInventory(savedInventory);
+        transaction.setOrganizationId(organizationId);
+        transaction.setProductId(product.getId());
         transaction.setTransactionType("INITIAL");
         transaction.setQuantityChange(BigDecimal.ZERO);
         transaction.setQuantityBefore(BigDecimal.ZERO);
@@ -93,26 +103,21 @@ public class ProductService {
         inventoryTransactionRepository.save(transaction);
     }
 
-    @Transactional(readOnly = true)
-    public ProductResponseDto getById(Long id) {
-        Product product = productRepository.findById(id)
+    public ProductResponseDto getById(Long id, Long orgId) {
+        ProductCatalog.CatalogProduct product = productCatalog.product(orgId, id)
+                .filter(found -> found.organizationId().equals(orgId))
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Product not found: " + id));
 
-        ProductResponseDto base = productMapper.toResponse(product);
-        String categoryName = categoryRepository.findById(product.getCategoryId())
-                .map(Category::getName)
-                .orElse(null);
-
         return new ProductResponseDto(
-                base.id(),
-                base.name(),
-                base.description(),
-                base.currentPrice(),
-                base.minPrice(),
-                base.maxPrice(),
-                base.categoryId(),
-                categoryName);
+                product.id(),
+                product.name(),
+                product.description(),
+                product.basePrice(),
+                product.minPrice(),
+                product.maxPrice(),
+                product.categoryId(),
+                product.categoryName());
     }
 
     @Transactional
@@ -125,5 +130,10 @@ public class ProductService {
         product.setActive(false);
         product.setUpdatedAt(OffsetDateTime.now());
         productRepository.save(product);
+        TransactionUtils.afterCommit(() -> {
+            productCatalog.productDeactivated(product.getOrganizationId(), id);
+            marketEngine.deactivateProduct(product.getOrganizationId(), id);
+            inventoryVersions.bump(product.getOrganizationId());
+        });
     }
 }
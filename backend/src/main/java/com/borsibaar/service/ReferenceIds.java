@@ -0,0 +1,82 @@
+package com.borsibaar.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates transaction reference IDs such as {@code SALE-0JC8B4SD4G001}.
+ * <p>
+ * IDs are Snowflake style 64-bit values: milliseconds since 2024-01-01, a
+ * 10-bit node ID and a 12-bit sequence within the millisecond. They are
+ * unique across backend instances with distinct node IDs and increase
+ * monotonically on each instance. The encoded form has a fixed width, so
+ * references sort in creation order. When more than 4096 IDs are taken in
+ * one millisecond, or the clock goes backwards, the generator runs ahead of
+ * the clock instead of waiting for it.
+ */
+@Component
+public class ReferenceIds {
+
+    public static final int MAX_NODE_ID = 1023;
+
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    // Crockford base32, 13 characters cover all 64 bits
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // Timestamp and sequence of the latest ID, without the node bits
+    private final AtomicLong latest = new AtomicLong();
+
+    @Autowired
+    public ReferenceIds(@Value("${app.reference-ids.node-id:0}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    ReferenceIds(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the next ID. Lock-free and allocation-free.
+     */
+    public long nextId() {
+        long floor = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = latest.get();
+            next = Math.max(previous + 1, floor);
+        } while (!latest.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | nodeBits | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * Returns the next ID encoded after the given prefix, e.g. {@code SALE-}.
+     */
+    public String next(String prefix) {
+        long id = nextId();
+        int length = prefix.length() + ENCODED_LENGTH;
+        char[] chars = new char[length];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        for (int i = length - 1; i >= prefix.length(); i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,129 @@
+package com.borsibaar.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel of deadlines in epoch milliseconds.
+ * <p>
+ * Level 0 has one slot per tick and every higher level one slot per full turn
+ * of the level below. An entry starts in the coarsest level its distance
+ * needs and moves down a level each time the wheel reaches its slot, so it
+ * fires in the tick of its deadline. Scheduling and cancelling are constant
+ * time, advancing costs one step per elapsed tick plus the entries that move
+ * or fire. Deadlines further out than the top level are kept in its slots and
+ * placed again until they fit.
+ * <p>
+ * Thread safe, all methods synchronize on the wheel.
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMs;
+    private final List<Set<Timeout<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private long currentTick;
+    private int size;
+
+    /**
+     * A scheduled entry, cancelled through {@link #cancel}.
+     */
+    static final class Timeout<T> {
+        private final T value;
+        private final long deadlineTick;
+        // Null once fired or cancelled
+        private Set<Timeout<T>> slot;
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        this.currentTick = startMs / tickMs;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Schedules a value to fire at the first tick at or after the deadline.
+     * A deadline that already passed fires with the next tick.
+     */
+    synchronized Timeout<T> schedule(T value, long deadlineMs) {
+        Timeout<T> timeout = new Timeout<>(value,
+                Math.max(Math.ceilDiv(deadlineMs, tickMs), currentTick + 1));
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return true if the entry was still scheduled
+     */
+    synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.remove(timeout);
+        timeout.slot = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Turns the wheel up to the given time.
+     *
+     * @return Values whose deadline passed, in deadline order by tick
+     */
+    synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Coarser slots that start at this tick move down, possibly into this tick's slot
+            for (int level = 1; level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0;
+                    level++) {
+                Set<Timeout<T>> slot = slot(level, currentTick);
+                List<Timeout<T>> moved = new ArrayList<>(slot);
+                slot.clear();
+                moved.forEach(this::place);
+            }
+
+            Set<Timeout<T>> slot = slot(0, currentTick);
+            for (Timeout<T> timeout : slot) {
+                timeout.slot = null;
+                due.add(timeout.value);
+            }
+            size -= slot.size();
+            slot.clear();
+        }
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void place(Timeout<T> timeout) {
+        long distance = timeout.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && distance >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Set<Timeout<T>> slot = slot(level, timeout.deadlineTick);
+        slot.add(timeout);
+        timeout.slot = slot;
+    }
+
+    private Set<Timeout<T>> slot(int level, long tick) {
+        return slots.get(level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+    }
+}
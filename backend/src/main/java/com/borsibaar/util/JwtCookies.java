@@ -0,0 +1,51 @@
+package com.borsibaar.util;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.time.Duration;
+
+/**
+ * Helpers for the cookies carrying the short-lived access token and the
+ * refresh token.
+ */
+public class JwtCookies {
+
+    public static final String ACCESS_TOKEN = "jwt";
+    public static final String REFRESH_TOKEN = "jwt_refresh";
+
+    /**
+     * Creates an HTTP-only cookie valid for the whole site.
+     *
+     * @param name   Cookie name, {@link #ACCESS_TOKEN} or {@link #REFRESH_TOKEN}
+     * @param token  Token value, empty to clear the cookie
+     * @param maxAge Lifetime of the cookie, zero expires it immediately
+     */
+    public static Cookie create(String name, String token, Duration maxAge) {
+        Cookie cookie = new Cookie(name, token);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(true); // HTTPS enabled with domain
+        cookie.setPath("/");
+        cookie.setMaxAge((int) maxAge.toSeconds());
+        return cookie;
+    }
+
+    /**
+     * Reads a cookie value from the request.
+     *
+     * @return The value or null if the cookie is not present
+     */
+    public static String read(HttpServletRequest request, String name) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+
+        for (Cookie cookie : request.getCookies()) {
+            if (name.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.borsibaar.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for running side effects relative to the current Spring transaction.
+ */
+public class TransactionUtils {
+
+    /**
+     * Runs the action after the surrounding transaction commits. If no
+     * transaction is active the action runs immediately.
+     *
+     * @param action Side effect that must only be visible once the data is
+     *               committed (in-memory caches, notifications, ...)
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
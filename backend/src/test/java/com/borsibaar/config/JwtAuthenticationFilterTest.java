@@ -20,9 +20,14 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -268,4 +273,76 @@ class JwtAuthenticationFilterTest {
                 .cookie(new Cookie("jwt", token)))
                 .andExpect(status().is5xxServerError()); // 500 because endpoint implementation issue
     }
+
+    @Test
+    void testFilter_RepeatedRequestsWithSameToken_LoadUserOnce() throws Exception {
+        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
+
+        Role adminRole = Role.builder()
+                .id(2L)
+                .name("ADMIN")
+                .build();
+        User adminUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("cached-admin@example.com")
+                .name("Cached Admin")
+                .organizationId(1L)
+                .role(adminRole)
+                .build();
+        when(userRepository.findByEmailWithRole("cached-admin@example.com"))
+                .thenReturn(Optional.of(adminUser));
+        String token = jwtService.generateToken("cached-admin@example.com");
+
+        mockMvc.perform(get("/api/users").cookie(new Cookie("jwt", token)));
+        mockMvc.perform(get("/api/users").cookie(new Cookie("jwt", token)));
+
+        verify(userRepository, times(1)).findByEmailWithRole("cached-admin@example.com");
+    }
+
+    @Test
+    void testFilter_WithAccessToken_DoesNotLoadUser() throws Exception {
+        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
+
+        User adminUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("access-admin@example.com")
+                .name("Access Admin")
+                .organizationId(1L)
+                .role(Role.builder().id(2L).name("ADMIN").build())
+                .build();
+        String token = jwtService.generateAccessToken(adminUser);
+
+        // Role and organization come from the token claims
+        mockMvc.perform(get("/api/users").contextPath("/api").cookie(new Cookie("jwt", token)))
+                .andExpect(status().isOk());
+
+        verify(userRepository).findByOrganizationId(1L);
+        verify(userRepository, never()).findByEmailWithRole(anyString());
+    }
+
+    @Test
+    void testFilter_WithOnlyRefreshToken_IssuesNewAccessToken() throws Exception {
+        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
+
+        User adminUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("refresh-admin@example.com")
+                .name("Refresh Admin")
+                .organizationId(1L)
+                .role(Role.builder().id(2L).name("ADMIN").build())
+                .build();
+        when(userRepository.findByEmailWithRole("refresh-admin@example.com"))
+                .thenReturn(Optional.of(adminUser));
+        String refreshToken = jwtService.generateToken("refresh-admin@example.com");
+
+        String accessToken = mockMvc.perform(get("/api/users").contextPath("/api")
+                        .cookie(new Cookie("jwt_refresh", refreshToken)))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists("jwt"))
+                .andReturn().getResponse().getCookie("jwt").getValue();
+
+        User principal = jwtService.toPrincipal(jwtService.parseToken(accessToken));
+        assertEquals(adminUser.getId(), principal.getId());
+        assertEquals(1L, principal.getOrganizationId());
+    }
 }
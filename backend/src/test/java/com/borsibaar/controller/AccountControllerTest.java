@@ -71,15 +71,18 @@ class AccountControllerTest {
         User user = userWithOrgAndRole(null, "USER");
         setAuth(user);
 
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
         Role adminRole = Role.builder().id(1L).name("ADMIN").build();
         when(roleRepository.findByName("ADMIN")).thenReturn(Optional.of(adminRole));
 
         String payload = "{\"organizationId\":1,\"acceptTerms\":true}";
 
+        // The access token is re-issued with the new organization
         mockMvc.perform(post("/api/account/onboarding")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(payload))
-                .andExpect(status().isNoContent());
+                .andExpect(status().isNoContent())
+                .andExpect(cookie().exists("jwt"));
 
         verify(userRepository).save(any(User.class));
     }
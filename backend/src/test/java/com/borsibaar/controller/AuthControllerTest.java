@@ -42,7 +42,7 @@ class AuthControllerTest {
     void loginSuccess_SetsCookie_AndRedirectsToOnboarding() throws Exception {
         // Arrange
         UserDTO dto = new UserDTO("user@test.com", "User", "token-123", null);
-        AuthService.AuthResult result = new AuthService.AuthResult(dto, true);
+        AuthService.AuthResult result = new AuthService.AuthResult(dto, "access-123", true);
         when(authService.processOAuthLogin(any(OAuth2AuthenticationToken.class))).thenReturn(result);
 
         DefaultOAuth2User oAuth2User = new DefaultOAuth2User(
@@ -56,13 +56,15 @@ class AuthControllerTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("http://localhost:3000/onboarding"))
                 .andExpect(header().string(HttpHeaders.SET_COOKIE, org.hamcrest.Matchers.containsString("jwt=")))
-                .andExpect(cookie().exists("jwt"));
+                .andExpect(cookie().value("jwt", "access-123"))
+                .andExpect(cookie().exists("jwt_refresh"));
     }
 
     @Test
     void logout_ClearsCookie_AndReturnsOk() throws Exception {
         mockMvc.perform(post("/auth/logout"))
                 .andExpect(status().isOk())
-                .andExpect(cookie().maxAge("jwt", 0));
+                .andExpect(cookie().maxAge("jwt", 0))
+                .andExpect(cookie().maxAge("jwt_refresh", 0));
     }
 }
@@ -165,20 +165,25 @@ class InventoryControllerTest {
         }
 
         @Test
-        void getTransactionHistory_ReturnsList() throws Exception {
+        void getTransactionHistory_ReturnsPage() throws Exception {
                 User user = userWithOrg(4L, "USER");
                 setAuth(user);
-                when(inventoryService.getTransactionHistory(40L, 4L)).thenReturn(List.of(
-                                new InventoryTransactionResponseDto(1L, 99L, "SALE", BigDecimal.ONE.negate(),
-                                                BigDecimal.TEN, new BigDecimal("9"), BigDecimal.TEN, BigDecimal.TEN,
-                                                "ref", "n", UUID.randomUUID().toString(), "Alice", "a@b.c",
-                                                OffsetDateTime.now().toString())));
-
-                mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L))
+                when(inventoryService.getTransactionHistory(40L, 4L, "SALE", null, null, "abc", 50))
+                                .thenReturn(new InventoryTransactionPageDto(List.of(
+                                                new InventoryTransactionResponseDto(1L, 99L, "SALE", BigDecimal.ONE.negate(),
+                                                                BigDecimal.TEN, new BigDecimal("9"), BigDecimal.TEN,
+                                                                BigDecimal.TEN, "ref", "n", UUID.randomUUID().toString(),
+                                                                "Alice", "a@b.c", OffsetDateTime.now().toString())),
+                                                "def"));
+
+                mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L)
+                                .param("type", "SALE")
+                                .param("cursor", "abc"))
                                 .andExpect(status().isOk())
-                                .andExpect(jsonPath("$", hasSize(1)));
+                                .andExpect(jsonPath("$.items", hasSize(1)))
+                                .andExpect(jsonPath("$.nextCursor").value("def"));
 
-                verify(inventoryService).getTransactionHistory(40L, 4L);
+                verify(inventoryService).getTransactionHistory(40L, 4L, "SALE", null, null, "abc", 50);
         }
 
         @Test
@@ -0,0 +1,102 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
+import com.borsibaar.service.JwtService;
+import com.borsibaar.service.OrganizationService;
+import com.borsibaar.service.PriceTicker;
+import com.borsibaar.util.JwtCookies;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the price stream through Tomcat with the production proxy settings,
+ * which MockMvc would skip.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("prod")
+class InventoryStreamTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @MockitoBean
+    private PriceTicker priceTicker;
+
+    @MockitoBean
+    private OrganizationService organizationService;
+
+    @MockitoBean
+    private ClientRegistrationRepository clientRegistrationRepository;
+
+    @BeforeEach
+    void setUp() {
+        // Completed right away, so the request returns
+        when(priceTicker.subscribe(anyLong(), anyString())).thenAnswer(invocation -> {
+            SseEmitter emitter = new SseEmitter();
+            emitter.complete();
+            return emitter;
+        });
+    }
+
+    @Test
+    void stream_BehindProxy_CapsByForwardedClientAddress() {
+        HttpHeaders headers = headers();
+        // Set by nginx, the client may only add to X-Forwarded-For
+        headers.set("X-Real-IP", "203.0.113.7");
+        headers.set("X-Forwarded-For", "198.51.100.1, 203.0.113.7");
+
+        ResponseEntity<String> response = restTemplate.exchange("/inventory/stream?organizationId=1", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(priceTicker).subscribe(1L, "203.0.113.7");
+    }
+
+    @Test
+    void stream_UnknownOrganization_NotFound() {
+        doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Organization not found: 99"))
+                .when(organizationService).requireExists(99L);
+
+        ResponseEntity<String> response = restTemplate.exchange("/inventory/stream?organizationId=99",
+                HttpMethod.GET, new HttpEntity<>(headers()), String.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verify(priceTicker, never()).subscribe(any(), any());
+    }
+
+    private HttpHeaders headers() {
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .email("user@test.com")
+                .name("Test User")
+                .organizationId(1L)
+                .role(Role.builder().id(1L).name("USER").build())
+                .build();
+        // Signed in, so the test does not depend on which endpoints are public
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.COOKIE, JwtCookies.ACCESS_TOKEN + "=" + jwtService.generateAccessToken(user));
+        return headers;
+    }
+}
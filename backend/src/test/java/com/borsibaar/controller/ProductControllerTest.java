@@ -182,6 +182,9 @@ class ProductControllerTest {
 
     @Test
     void testGetProduct_Success() throws Exception {
+        User user = createMockUser(1L);
+        setupSecurityContextWithUser(user);
+
         // Arrange: Create expected response
         ProductResponseDto response = new ProductResponseDto(
                 1L,
@@ -194,7 +197,7 @@ class ProductControllerTest {
                 "Test Category");
 
         // Arrange: Mock service
-        when(productService.getById(1L)).thenReturn(response);
+        when(productService.getById(1L, 1L)).thenReturn(response);
 
         // Act & Assert
         mockMvc.perform(get("/api/products/1"))
@@ -209,13 +212,16 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.categoryName").value("Test Category"));
 
         // Verify service was called
-        verify(productService).getById(1L);
+        verify(productService).getById(1L, 1L);
     }
 
     @Test
     void testGetProduct_NotFound() throws Exception {
+        User user = createMockUser(1L);
+        setupSecurityContextWithUser(user);
+
         // Arrange: Mock service to throw not found exception
-        when(productService.getById(999L))
+        when(productService.getById(999L, 1L))
                 .thenThrow(new ResponseStatusException(
                         HttpStatus.NOT_FOUND,
                         "Product not found: 999"));
@@ -225,7 +231,7 @@ class ProductControllerTest {
                 .andExpect(status().isNotFound());
 
         // Verify service was called
-        verify(productService).getById(999L);
+        verify(productService).getById(999L, 1L);
     }
 
     @Test
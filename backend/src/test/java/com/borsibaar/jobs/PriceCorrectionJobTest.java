@@ -0,0 +1,94 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.service.MarketEngine;
+import com.borsibaar.service.MarketWriteBehind;
+import com.borsibaar.service.ReferenceIds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceCorrectionJobTest {
+
+    @Mock private MarketEngine marketEngine;
+    @Mock private MarketWriteBehind marketWriteBehind;
+    @Mock private OrganizationRepository organizationRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PriceCorrectionJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new PriceCorrectionJob(marketEngine, marketWriteBehind, organizationRepository, new ReferenceIds(0),
+                meterRegistry, 60, 3_600_000);
+    }
+
+    @Test
+    void decayDue_QueuesDecaysPerOrganization() {
+        MarketEngine.PriceDecay beer = new MarketEngine.PriceDecay(9L, 5L, new BigDecimal("3.00"),
+                new BigDecimal("2.50"));
+        MarketEngine.PriceDecay cider = new MarketEngine.PriceDecay(10L, 6L, new BigDecimal("4.00"),
+                new BigDecimal("3.50"));
+        when(marketEngine.decayDue(anyLong(), any())).thenAnswer(invocation -> {
+            BiConsumer<Long, List<MarketEngine.PriceDecay>> commit = invocation.getArgument(1);
+            commit.accept(1L, List.of(beer, cider));
+            commit.accept(2L, List.of(beer));
+            return 3;
+        });
+
+        job.decayDue();
+
+        ArgumentCaptor<MarketWriteBehind.PendingDecay> captor = ArgumentCaptor.forClass(MarketWriteBehind.PendingDecay.class);
+        verify(marketWriteBehind, times(2)).enqueue(captor.capture());
+        MarketWriteBehind.PendingDecay first = captor.getAllValues().get(0);
+        assertEquals(1L, first.organizationId());
+        assertEquals(List.of(beer, cider), first.decays());
+        assertTrue(first.referenceId().startsWith("REDUCE-"));
+        assertNotEquals(first.referenceId(), captor.getAllValues().get(1).referenceId());
+        assertEquals(2.0, meterRegistry.get("price.correction.updated").tag("organization", "1").counter().count());
+        assertEquals(1.0, meterRegistry.get("price.correction.updated").tag("organization", "2").counter().count());
+        assertEquals(1, meterRegistry.get("price.correction.run").timer().count());
+        assertEquals(2.0, meterRegistry.get("price.correction.organizations").summary().totalAmount());
+    }
+
+    @Test
+    void decayDue_NothingDue_RecordsNothing() {
+        when(marketEngine.decayDue(anyLong(), any())).thenReturn(0);
+
+        job.decayDue();
+
+        verifyNoInteractions(marketWriteBehind);
+        assertNull(meterRegistry.find("price.correction.run").timer());
+        assertNull(meterRegistry.find("price.correction.organizations").summary());
+    }
+
+    @Test
+    void start_LoadsOrganizationsThatSoldWithinInterval() throws Exception {
+        OffsetDateTime before = OffsetDateTime.now().minusSeconds(60);
+        when(organizationRepository.findIdsWithSalesSince(any())).thenReturn(List.of(1L, 2L));
+
+        job.start();
+        job.stop();
+
+        ArgumentCaptor<OffsetDateTime> since = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(organizationRepository).findIdsWithSalesSince(since.capture());
+        assertFalse(since.getValue().isBefore(before));
+        assertTrue(since.getValue().isBefore(OffsetDateTime.now().minusSeconds(59)));
+        verify(marketEngine).load(1L);
+        verify(marketEngine).load(2L);
+    }
+}
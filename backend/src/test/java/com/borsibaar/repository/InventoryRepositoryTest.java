@@ -0,0 +1,156 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class InventoryRepositoryTest {
+
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private InventoryRepository inventoryRepository;
+
+    private Organization organization;
+    private Category category;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        organization = new Organization();
+        organization.setName("Bar");
+        organization = entityManager.persist(organization);
+
+        category = new Category();
+        category.setOrganizationId(organization.getId());
+        category.setName("Beers");
+        category = entityManager.persist(category);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findResponsesByOrganizationId_SkipsInactiveAndSortsByName() {
+        persistProduct("Cider", true, null);
+        persistProduct("Ale", true, new BigDecimal("4.50"));
+        persistProduct("Old stout", false, null);
+        entityManager.clear();
+
+        List<InventoryResponseDto> rows = inventoryRepository.findResponsesByOrganizationId(organization.getId());
+
+        assertEquals(List.of("Ale", "Cider"), rows.stream().map(InventoryResponseDto::productName).toList());
+        assertEquals(0, new BigDecimal("4.50").compareTo(rows.get(0).unitPrice()));
+        // Falls back to the base price when no adjusted price is set
+        assertEquals(0, new BigDecimal("3.00").compareTo(rows.get(1).unitPrice()));
+        assertNotNull(rows.get(0).updatedAt());
+    }
+
+    @Test
+    void findResponsesByOrganizationId_QueryCountIndependentOfProductCount() {
+        for (int productCount : new int[] { 5, 50, 200 }) {
+            int existing = inventoryRepository.findResponsesByOrganizationId(organization.getId()).size();
+            for (int i = existing; i < productCount; i++) {
+                persistProduct("Product " + i, true, null);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            statistics.clear();
+
+            List<InventoryResponseDto> rows = inventoryRepository.findResponsesByOrganizationId(organization.getId());
+            List<InventoryResponseDto> categoryRows = inventoryRepository
+                    .findResponsesByOrganizationIdAndCategoryId(organization.getId(), category.getId());
+
+            assertEquals(productCount, rows.size());
+            assertEquals(productCount, categoryRows.size());
+            assertEquals(2, statistics.getPrepareStatementCount(), "statements for " + productCount + " products");
+        }
+    }
+
+    @Test
+    void findResponsesByOrganizationIdAndProductIdIn_OnlyRequestedActiveProducts() {
+        Long cider = persistProduct("Cider", true, null);
+        persistProduct("Ale", true, null);
+        Long stout = persistProduct("Old stout", false, null);
+        entityManager.clear();
+
+        List<InventoryResponseDto> rows = inventoryRepository
+                .findResponsesByOrganizationIdAndProductIdIn(organization.getId(), List.of(cider, stout));
+
+        assertEquals(List.of("Cider"), rows.stream().map(InventoryResponseDto::productName).toList());
+    }
+
+    @Test
+    void findBoardRowsByOrganizationId_GroupsByCategoryInSingleQuery() {
+        Category ciders = new Category();
+        ciders.setOrganizationId(organization.getId());
+        ciders.setName("Ciders");
+        ciders.setDynamicPricing(true);
+        ciders = entityManager.persist(ciders);
+        Category snacks = new Category();
+        snacks.setOrganizationId(organization.getId());
+        snacks.setName("Snacks");
+        entityManager.persist(snacks);
+
+        persistProduct(ciders, "Pear", true, null);
+        persistProduct("Stout", true, null);
+        persistProduct(ciders, "Apple", true, new BigDecimal("4.50"));
+        persistProduct("Ale", true, null);
+        persistProduct("Old stout", false, null);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<InventoryRepository.BoardRow> rows = inventoryRepository
+                .findBoardRowsByOrganizationId(organization.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // Categories without active products have no rows
+        assertEquals(List.of("Beers", "Beers", "Ciders", "Ciders"),
+                rows.stream().map(InventoryRepository.BoardRow::categoryName).toList());
+        assertEquals(List.of("Ale", "Stout", "Apple", "Pear"),
+                rows.stream().map(row -> row.inventory().productName()).toList());
+        assertFalse(rows.get(0).dynamicPricing());
+        assertTrue(rows.get(2).dynamicPricing());
+        assertEquals(ciders.getId(), rows.get(2).categoryId());
+        assertEquals(0, new BigDecimal("4.50").compareTo(rows.get(2).inventory().unitPrice()));
+        assertNotNull(rows.get(2).inventory().updatedAt());
+    }
+
+    private Long persistProduct(String name, boolean active, BigDecimal adjustedPrice) {
+        return persistProduct(category, name, active, adjustedPrice);
+    }
+
+    private Long persistProduct(Category category, String name, boolean active, BigDecimal adjustedPrice) {
+        Product product = new Product();
+        product.setOrganizationId(organization.getId());
+        product.setCategoryId(category.getId());
+        product.setName(name);
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(active);
+        product = entityManager.persist(product);
+
+        Inventory inventory = new Inventory(organization.getId(), product, BigDecimal.TEN, adjustedPrice);
+        inventory.setUpdatedAt(OffsetDateTime.now());
+        entityManager.persist(inventory);
+        return product.getId();
+    }
+}
@@ -0,0 +1,113 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryTransactionHistoryRepository.HistoryQuery;
+import com.borsibaar.repository.InventoryTransactionHistoryRepository.HistoryRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class InventoryTransactionRepositoryTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2026-03-01T20:00:00Z");
+
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+
+    private Inventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organization = entityManager.persist(organization);
+
+        Category category = new Category();
+        category.setOrganizationId(organization.getId());
+        category.setName("Beers");
+        category = entityManager.persist(category);
+
+        Product product = new Product();
+        product.setOrganizationId(organization.getId());
+        product.setCategoryId(category.getId());
+        product.setName("Lager");
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(true);
+        product = entityManager.persist(product);
+
+        inventory = entityManager.persist(new Inventory(organization.getId(), product, BigDecimal.TEN,
+                new BigDecimal("3.00")));
+    }
+
+    @Test
+    void findHistoryPage_WalksPagesWithoutGapsOrDuplicates() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Pairs share a timestamp, so pages must be split on the ID as well
+            expected.add(0, persistTransaction("SALE", T0.plusSeconds(i / 2)).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> seen = new ArrayList<>();
+        HistoryRow last = null;
+        for (int page = 0; page < 4; page++) {
+            List<HistoryRow> rows = inventoryTransactionRepository.findHistoryPage(new HistoryQuery(
+                    inventory.getId(), null, null, null, last != null ? last.createdAt() : null,
+                    last != null ? last.id() : null, 2));
+            rows.forEach(row -> seen.add(row.id()));
+            if (rows.isEmpty()) {
+                break;
+            }
+            last = rows.get(rows.size() - 1);
+        }
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void findHistoryPage_FiltersByTypeAndTimeRange() {
+        persistTransaction("SALE", T0.minusHours(1));
+        InventoryTransaction inRange = persistTransaction("SALE", T0);
+        persistTransaction("PURCHASE", T0.plusMinutes(1));
+        persistTransaction("SALE", T0.plusHours(1));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<HistoryRow> rows = inventoryTransactionRepository.findHistoryPage(new HistoryQuery(
+                inventory.getId(), "SALE", T0, T0.plusHours(1), null, null, 10));
+
+        assertEquals(List.of(inRange.getId()), rows.stream().map(HistoryRow::id).toList());
+        assertEquals("SALE", rows.get(0).transactionType());
+        assertEquals(0, new BigDecimal("3.00").compareTo(rows.get(0).priceAfter()));
+    }
+
+    private InventoryTransaction persistTransaction(String type, OffsetDateTime createdAt) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventory(inventory);
+        transaction.setOrganizationId(inventory.getProduct().getOrganizationId());
+        transaction.setProductId(inventory.getProduct().getId());
+        transaction.setTransactionType(type);
+        transaction.setQuantityChange(BigDecimal.ONE.negate());
+        transaction.setQuantityBefore(BigDecimal.TEN);
+        transaction.setQuantityAfter(new BigDecimal("9"));
+        transaction.setPriceBefore(new BigDecimal("3.00"));
+        transaction.setPriceAfter(new BigDecimal("3.00"));
+        transaction.setCreatedAt(createdAt);
+        return entityManager.persist(transaction);
+    }
+}
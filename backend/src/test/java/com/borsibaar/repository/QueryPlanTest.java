@@ -0,0 +1,200 @@
+package com.borsibaar.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query plans of the hot {@code inventory_transactions} queries on
+ * PostgreSQL, guarding the indexes and partitioning they rely on. Runs the
+ * Liquibase changelog against the database and seeds six months of
+ * transactions in a transaction that is rolled back.
+ * <p>
+ * Needs an empty local database, e.g.
+ * {@code PLAN_TEST_DATASOURCE_URL=jdbc:postgresql://localhost:5432/borsibaar_plans ./mvnw test -Dtest=QueryPlanTest},
+ * with {@code PLAN_TEST_DATASOURCE_USERNAME} and
+ * {@code PLAN_TEST_DATASOURCE_PASSWORD} if needed. Skipped otherwise.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=${PLAN_TEST_DATASOURCE_URL}",
+        "spring.datasource.username=${PLAN_TEST_DATASOURCE_USERNAME:postgres}",
+        "spring.datasource.password=${PLAN_TEST_DATASOURCE_PASSWORD:}",
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.liquibase.enabled=true",
+        "spring.liquibase.change-log=classpath:db/changelog/db.changelog-master.yaml"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "PLAN_TEST_DATASOURCE_URL", matches = ".+")
+class QueryPlanTest {
+
+    private static final Pattern PARAMETER = Pattern.compile("(?<![:\\w]):(\\w+)");
+
+    @Autowired private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Long inventoryId;
+
+    @BeforeEach
+    void setUp() {
+        // IDs are given explicitly, the changelog seeds rows with fixed IDs
+        // 20 organizations with 50 products each, six months of transactions, 70% of them sales
+        entityManager.createNativeQuery("""
+                SELECT create_inventory_transaction_partitions(CURRENT_TIMESTAMP - INTERVAL '6 months',
+                    CURRENT_TIMESTAMP)
+                """).getSingleResult();
+        entityManager.createNativeQuery("""
+                INSERT INTO organizations (id, name)
+                SELECT m.id + g, 'Plan test ' || g
+                FROM generate_series(1, 20) g, (SELECT COALESCE(MAX(id), 0) AS id FROM organizations) m
+                """).executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO categories (id, organization_id, name)
+                SELECT m.id + o.id, o.id, 'Drinks'
+                FROM organizations o, (SELECT COALESCE(MAX(id), 0) AS id FROM categories) m
+                WHERE o.name LIKE 'Plan test %'
+                """).executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO products (id, organization_id, category_id, name, base_price)
+                SELECT m.id + row_number() OVER (), c.organization_id, c.id, 'Product ' || g, 3.00
+                FROM categories c
+                JOIN organizations o ON o.id = c.organization_id AND o.name LIKE 'Plan test %'
+                CROSS JOIN generate_series(1, 50) g
+                CROSS JOIN (SELECT COALESCE(MAX(id), 0) AS id FROM products) m
+                """).executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO inventory (id, organization_id, product_id, quantity, adjusted_price)
+                SELECT m.id + row_number() OVER (), p.organization_id, p.id, 100, 3.00
+                FROM products p
+                JOIN organizations o ON o.id = p.organization_id AND o.name LIKE 'Plan test %'
+                CROSS JOIN (SELECT COALESCE(MAX(id), 0) AS id FROM inventory) m
+                """).executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO inventory_transactions (inventory_id, organization_id, product_id, transaction_type,
+                                                    quantity_change, quantity_before, quantity_after, price_before,
+                                                    price_after, created_at)
+                SELECT inv.ids[n], inv.organization_ids[n], inv.product_ids[n],
+                       CASE WHEN g % 10 < 7 THEN 'SALE' ELSE 'PURCHASE' END,
+                       -1, 10, 9, 3.00, 3.00, CURRENT_TIMESTAMP - g * INTERVAL '75 seconds'
+                FROM (SELECT array_agg(i.id ORDER BY i.id) AS ids,
+                             array_agg(i.organization_id ORDER BY i.id) AS organization_ids,
+                             array_agg(i.product_id ORDER BY i.id) AS product_ids
+                      FROM inventory i
+                      JOIN organizations o ON o.id = i.organization_id AND o.name LIKE 'Plan test %') inv,
+                     generate_series(1, 200000) g,
+                     LATERAL (SELECT 1 + g % array_length(inv.ids, 1) AS n) pick
+                """).executeUpdate();
+        entityManager.createNativeQuery("ANALYZE inventory_transactions, inventory").executeUpdate();
+
+        inventoryId = ((Number) entityManager.createNativeQuery("""
+                SELECT i.id
+                FROM inventory i
+                JOIN organizations o ON o.id = i.organization_id AND o.name = 'Plan test 1'
+                ORDER BY i.id
+                LIMIT 1
+                """).getSingleResult()).longValue();
+    }
+
+    @Test
+    void historyPage_ReadsIndexInOrderWithoutSorting() throws Exception {
+        // As generated by InventoryTransactionHistoryRepositoryImpl for a page after the first
+        JsonNode plan = explain("""
+                SELECT it.* FROM inventory_transactions it
+                WHERE it.inventory_id = :inventoryId
+                  AND (it.created_at, it.id) < (CURRENT_TIMESTAMP - INTERVAL '1 day', 9223372036854775807)
+                ORDER BY it.created_at DESC, it.id DESC
+                FETCH FIRST 51 ROWS ONLY
+                """, Map.of("inventoryId", inventoryId));
+
+        List<JsonNode> nodes = nodes(plan);
+        assertTrue(nodes.stream().noneMatch(node -> node.path("Node Type").asText().endsWith("Sort")),
+                () -> "Sorted: " + plan.toPrettyString());
+        Set<String> indexes = transactionIndexes(nodes);
+        assertEquals(Set.of("idx_inventory_trans_inventory_created"), indexes, () -> plan.toPrettyString());
+    }
+
+    /**
+     * Indexes used on transaction partitions, as the index of the partitioned
+     * table they belong to.
+     */
+    private Set<String> transactionIndexes(List<JsonNode> nodes) {
+        Set<String> indexes = new HashSet<>();
+        for (JsonNode node : nodes) {
+            String index = node.path("Index Name").asText();
+            if (index.isEmpty()) {
+                continue;
+            }
+            String root = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT pg_partition_root(?::regclass)::text")) {
+                    statement.setString(1, index);
+                    try (ResultSet result = statement.executeQuery()) {
+                        result.next();
+                        return result.getString(1);
+                    }
+                }
+            });
+            if (root != null && root.startsWith("idx_inventory_trans")) {
+                indexes.add(root);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Plans the query with its named parameters bound, as the application
+     * runs it.
+     */
+    private JsonNode explain(String sql, Map<String, Object> parameters) throws Exception {
+        List<Object> values = new ArrayList<>();
+        Matcher matcher = PARAMETER.matcher(sql);
+        StringBuilder jdbcSql = new StringBuilder("EXPLAIN (FORMAT JSON) ");
+        while (matcher.find()) {
+            assertTrue(parameters.containsKey(matcher.group(1)), matcher.group(1));
+            values.add(parameters.get(matcher.group(1)));
+            matcher.appendReplacement(jdbcSql, "?");
+        }
+        matcher.appendTail(jdbcSql);
+
+        String json = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(jdbcSql.toString())) {
+                for (int i = 0; i < values.size(); i++) {
+                    statement.setObject(i + 1, values.get(i));
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    result.next();
+                    return result.getString(1);
+                }
+            }
+        });
+        return objectMapper.readTree(json).get(0).get("Plan");
+    }
+
+    private static List<JsonNode> nodes(JsonNode plan) {
+        List<JsonNode> nodes = new ArrayList<>();
+        nodes.add(plan);
+        for (JsonNode child : plan.path("Plans")) {
+            nodes.addAll(nodes(child));
+        }
+        return nodes;
+    }
+}
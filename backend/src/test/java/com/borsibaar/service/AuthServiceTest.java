@@ -58,6 +58,7 @@ class AuthServiceTest {
         when(userRepository.findByEmail("new@test.com")).thenReturn(Optional.empty());
         when(roleRepository.findByName("USER")).thenReturn(Optional.of(defaultRole));
         when(jwtService.generateToken("new@test.com")).thenReturn("jwt-token");
+        when(jwtService.generateAccessToken(any(User.class))).thenReturn("access-token");
         when(userMapper.toDto(any(User.class), eq("jwt-token"))).thenAnswer(inv -> {
             User u = inv.getArgument(0);
             return new UserDTO(u.getEmail(), u.getName(), u.getRole().getName(), "jwt-token");
@@ -69,6 +70,7 @@ class AuthServiceTest {
         assertEquals("new@test.com", result.dto().email());
         assertEquals("USER", result.dto().role());
         assertEquals("jwt-token", result.dto().token());
+        assertEquals("access-token", result.accessToken());
         assertTrue(result.needsOnboarding());
 
         ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
@@ -0,0 +1,82 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthenticationCacheTest {
+
+    private static final List<GrantedAuthority> ADMIN = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final AuthenticationCache cache = new AuthenticationCache(60_000, 3, clock::get);
+
+    @Test
+    void get_ReturnsEntryUntilTtlExpires() {
+        User user = user("a@example.com");
+        cache.put("token-a", new Date(clock.get() + 3_600_000), user, ADMIN);
+
+        clock.addAndGet(59_999);
+        assertSame(user, cache.get("token-a").orElseThrow().user());
+
+        clock.addAndGet(1);
+        assertTrue(cache.get("token-a").isEmpty());
+    }
+
+    @Test
+    void get_NeverOutlivesTokenExpiration() {
+        cache.put("token-a", new Date(clock.get() + 1_000), user("a@example.com"), ADMIN);
+
+        clock.addAndGet(1_000);
+
+        assertTrue(cache.get("token-a").isEmpty());
+    }
+
+    @Test
+    void invalidateUser_RemovesAllTokensOfUser() {
+        cache.put("token-a1", null, user("a@example.com"), ADMIN);
+        cache.put("token-a2", null, user("a@example.com"), ADMIN);
+        cache.put("token-b", null, user("b@example.com"), ADMIN);
+
+        cache.invalidateUser("a@example.com");
+
+        assertTrue(cache.get("token-a1").isEmpty());
+        assertTrue(cache.get("token-a2").isEmpty());
+        assertTrue(cache.get("token-b").isPresent());
+    }
+
+    @Test
+    void invalidateToken_RemovesOnlyThatToken() {
+        cache.put("token-a1", null, user("a@example.com"), ADMIN);
+        cache.put("token-a2", null, user("a@example.com"), ADMIN);
+
+        cache.invalidateToken("token-a1");
+
+        assertTrue(cache.get("token-a1").isEmpty());
+        assertTrue(cache.get("token-a2").isPresent());
+    }
+
+    @Test
+    void put_Full_EvictsExpiredEntriesFirst() {
+        cache.put("token-a", new Date(clock.get() + 1_000), user("a@example.com"), ADMIN);
+        cache.put("token-b", null, user("b@example.com"), ADMIN);
+        cache.put("token-c", null, user("c@example.com"), ADMIN);
+        clock.addAndGet(1_000);
+
+        cache.put("token-d", null, user("d@example.com"), ADMIN);
+
+        assertTrue(cache.get("token-b").isPresent());
+        assertTrue(cache.get("token-d").isPresent());
+    }
+
+    private static User user(String email) {
+        return User.builder().email(email).build();
+    }
+}
@@ -29,6 +29,8 @@ class CategoryServiceTest {
     private CategoryRepository categoryRepository;
     @Mock
     private CategoryMapper categoryMapper;
+    @Mock
+    private ProductCatalog productCatalog;
 
     @InjectMocks
     private CategoryService categoryService;
@@ -0,0 +1,165 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.AddStockRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.mapper.InventoryMapperImpl;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryBatchRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stock changes and write-behind sale updates racing on one inventory row
+ * against a real database. Every change that was acknowledged must be
+ * reflected in the final quantity.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Import({ InventoryService.class, ProductCatalog.class, InventoryMapperImpl.class,
+        SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryServiceConcurrencyTest {
+
+    @Autowired private InventoryService inventoryService;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @MockitoBean private MarketEngine marketEngine;
+    @MockitoBean private InventoryVersions inventoryVersions;
+
+    private Organization organization;
+    private Product product;
+    private Inventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        organization = new Organization();
+        organization.setName("Bar");
+        organization = organizationRepository.save(organization);
+
+        Category category = new Category();
+        category.setOrganizationId(organization.getId());
+        category.setName("Beers");
+        category = categoryRepository.save(category);
+
+        product = new Product();
+        product.setOrganizationId(organization.getId());
+        product.setCategoryId(category.getId());
+        product.setName("Lager");
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(true);
+        product = productRepository.save(product);
+
+        inventory = inventoryRepository.save(new Inventory(organization.getId(), product, BigDecimal.valueOf(100),
+                new BigDecimal("3.00")));
+
+        // Stock changes are validated by the market, only their persistence races with the sale updates here
+        when(marketEngine.changeStock(eq(organization.getId()), eq(product.getId()), any(), any()))
+                .thenAnswer(invocation -> {
+                    UnaryOperator<BigDecimal> newQuantity = invocation.getArgument(2);
+                    Function<MarketEngine.StockChange, ?> commit = invocation.getArgument(3);
+                    BigDecimal quantity = BigDecimal.valueOf(100);
+                    return commit.apply(new MarketEngine.StockChange(inventory.getId(), quantity,
+                            newQuantity.apply(quantity), new BigDecimal("3.00")));
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventoryTransactionRepository.deleteAllInBatch();
+        inventoryRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        organizationRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void addStock_RacingWithSaleUpdates_NoLostUpdates() throws Exception {
+        int stockThreads = 4;
+        int additionsPerThread = 25;
+        int sales = 100;
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(stockThreads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < stockThreads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < additionsPerThread; i++) {
+                    try {
+                        inventoryService.addStock(new AddStockRequestDto(product.getId(), BigDecimal.ONE, null),
+                                UUID.randomUUID(), organization.getId());
+                        added.incrementAndGet();
+                    } catch (ResponseStatusException e) {
+                        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+                        conflicts.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        // Same statements the write-behind flush runs for queued sales
+        futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < sales; i++) {
+                transactionTemplate.executeWithoutResult(status -> inventoryRepository.applyDeltas(List.of(
+                        new InventoryBatchRepository.InventoryDelta(inventory.getId(), BigDecimal.ONE,
+                                new BigDecimal("3.00"), OffsetDateTime.now(), OffsetDateTime.now()))));
+            }
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(stockThreads * additionsPerThread, added.get() + conflicts.get());
+        Inventory result = inventoryRepository.findById(inventory.getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(100 + added.get() - sales).compareTo(result.getQuantity()),
+                added.get() + " additions, " + conflicts.get() + " conflicts");
+        assertEquals(added.get() + sales, result.getVersion());
+    }
+}
@@ -1,8 +1,10 @@
 package com.borsibaar.service;
 
 import com.borsibaar.dto.AddStockRequestDto;
+import com.borsibaar.dto.BoardCategoryDto;
+import com.borsibaar.dto.InventoryChangesDto;
 import com.borsibaar.dto.InventoryResponseDto;
-import com.borsibaar.dto.InventoryTransactionResponseDto;
+import com.borsibaar.dto.InventoryTransactionPageDto;
 import com.borsibaar.dto.RemoveStockRequestDto;
 import com.borsibaar.dto.AdjustStockRequestDto;
 import com.borsibaar.dto.StationSalesStatsResponseDto;
@@ -15,24 +17,34 @@ import com.borsibaar.entity.User;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionHistoryRepository;
 import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesStatsRepository;
 import com.borsibaar.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -61,6 +73,24 @@ class InventoryServiceTest {
     @Mock
     private ClientRegistrationRepository clientRegistrationRepository;
 
+    @Mock
+    private SalesStatsRepository salesStatsRepository;
+
+    @Mock
+    private MarketEngine marketEngine;
+
+    @Mock
+    private InventoryVersions inventoryVersions;
+
+    @Mock
+    private ProductCatalog productCatalog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks private InventoryService inventoryService;
 
     private final UUID userId = UUID.randomUUID();
@@ -68,9 +98,12 @@ class InventoryServiceTest {
     @Test
     void addStock_CreatesInventoryIfMissing() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.empty());
-        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(inv -> { Inventory i = inv.getArgument(0); i.setId(77L); return i; });
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
+        when(productRepository.getReferenceById(5L)).thenReturn(product);
+        AtomicReference<Inventory> stored = new AtomicReference<>();
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenAnswer(inv -> Optional.ofNullable(stored.get()));
+        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(inv -> { Inventory i = inv.getArgument(0); i.setId(77L); stored.set(i); return i; });
+        stubMarketQuantity(BigDecimal.ZERO);
         when(inventoryMapper.toResponse(any())).thenAnswer(inv -> {
             Inventory i = inv.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "P", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
 
@@ -83,7 +116,7 @@ class InventoryServiceTest {
     @Test
     void addStock_ProductInactive_ThrowsGone() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(false);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
         AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.ONE, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.addStock(request, userId, 1L));
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
@@ -93,23 +126,28 @@ class InventoryServiceTest {
     void removeStock_Insufficient_ThrowsBadRequest() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE);
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(2)); inv.setAdjustedPrice(BigDecimal.ONE); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
+        lenient().when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        // Validated against the market, whose quantity includes sales not yet written
+        when(marketEngine.changeStock(eq(1L), eq(5L), any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient stock"));
         RemoveStockRequestDto request = new RemoveStockRequestDto(5L, BigDecimal.valueOf(5), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.removeStock(request, userId, 1L));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(inventoryRepository, never()).save(any());
     }
 
     @Test
     void adjustStock_Success_CreatesTransaction() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(5)); inv.setAdjustedPrice(BigDecimal.valueOf(2)); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
         when(inventoryRepository.save(any(Inventory.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> {
             Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
+        stubMarketQuantity(BigDecimal.valueOf(5));
 
         AdjustStockRequestDto request = new AdjustStockRequestDto(5L, BigDecimal.valueOf(8), "Adj");
         InventoryResponseDto dto = inventoryService.adjustStock(request, userId, 1L);
@@ -118,17 +156,113 @@ class InventoryServiceTest {
     }
 
     @Test
-    void getByOrganization_FiltersInactiveProducts() {
-        Inventory inv1 = new Inventory(); inv1.setId(1L); inv1.setOrganizationId(1L); inv1.setProductId(10L); inv1.setQuantity(BigDecimal.ONE); inv1.setUpdatedAt(OffsetDateTime.now());
-        Inventory inv2 = new Inventory(); inv2.setId(2L); inv2.setOrganizationId(1L); inv2.setProductId(11L); inv2.setQuantity(BigDecimal.ONE); inv2.setUpdatedAt(OffsetDateTime.now());
-        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inv1, inv2));
-        Product p1 = new Product(); p1.setId(10L); p1.setActive(true); p1.setBasePrice(BigDecimal.ONE); p1.setName("A");
-        Product p2 = new Product(); p2.setId(11L); p2.setActive(false); p2.setBasePrice(BigDecimal.ONE); p2.setName("B");
-        when(productRepository.findById(10L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(11L)).thenReturn(Optional.of(p2));
-        when(inventoryMapper.toResponse(inv1)).thenReturn(new InventoryResponseDto(1L,1L,10L,"A",BigDecimal.ONE,BigDecimal.ONE, "abc", null,null,null,OffsetDateTime.now().toString()));
-        List<InventoryResponseDto> result = inventoryService.getByOrganization(1L);
-        assertEquals(1, result.size());
+    void adjustStock_ConcurrentUpdate_RetriesAgainstFreshRow() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
+        Inventory stale = new Inventory(); stale.setId(9L); stale.setOrganizationId(1L); stale.setProduct(product); stale.setProductId(5L); stale.setQuantity(BigDecimal.valueOf(5)); stale.setAdjustedPrice(BigDecimal.valueOf(2)); stale.setUpdatedAt(OffsetDateTime.now());
+        Inventory current = new Inventory(); current.setId(9L); current.setOrganizationId(1L); current.setProduct(product); current.setProductId(5L); current.setQuantity(BigDecimal.valueOf(3)); current.setAdjustedPrice(BigDecimal.valueOf(2)); current.setUpdatedAt(OffsetDateTime.now());
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(stale))
+                .thenReturn(Optional.of(current));
+        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryMapper.toResponse(any())).thenAnswer(a -> {
+            Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
+        // Sales were written between reading and committing the first attempt
+        doThrow(new ObjectOptimisticLockingFailureException(Inventory.class, 9L)).doNothing()
+                .when(transactionManager).commit(any());
+        stubMarketQuantity(BigDecimal.valueOf(3));
+
+        AdjustStockRequestDto request = new AdjustStockRequestDto(5L, BigDecimal.valueOf(8), "Adj");
+        InventoryResponseDto dto = inventoryService.adjustStock(request, userId, 1L);
+
+        assertEquals(BigDecimal.valueOf(8), dto.quantity());
+        // The change is applied to the row read by the successful attempt
+        assertEquals(BigDecimal.valueOf(8), current.getQuantity());
+        ArgumentCaptor<InventoryTransaction> txCap = ArgumentCaptor.forClass(InventoryTransaction.class);
+        verify(inventoryTransactionRepository, times(2)).save(txCap.capture());
+        assertEquals(BigDecimal.valueOf(5), txCap.getAllValues().get(1).getQuantityChange());
+    }
+
+    @Test
+    void addStock_ConflictPersists_ThrowsConflict() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
+        Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(5)); inv.setAdjustedPrice(BigDecimal.valueOf(2)); inv.setUpdatedAt(OffsetDateTime.now());
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryMapper.toResponse(any())).thenAnswer(a -> {
+            Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
+        doThrow(new ObjectOptimisticLockingFailureException(Inventory.class, 9L)).when(transactionManager).commit(any());
+        stubMarketQuantity(BigDecimal.valueOf(5));
+
+        AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.ONE, null);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.addStock(request, userId, 1L));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verify(transactionManager, times(5)).commit(any());
+    }
+
+    @Test
+    void getByOrganization_ReadsProjectionWithoutProductLookups() {
+        InventoryResponseDto row = new InventoryResponseDto(1L, 1L, 10L, "A", BigDecimal.ONE, BigDecimal.ONE, "abc", null, null, null, OffsetDateTime.now().toString());
+        when(inventoryRepository.findResponsesByOrganizationId(1L)).thenReturn(List.of(row));
+        when(inventoryRepository.findResponsesByOrganizationIdAndCategoryId(1L, 3L)).thenReturn(List.of());
+
+        assertEquals(List.of(row), inventoryService.getByOrganization(1L));
+        assertEquals(List.of(), inventoryService.getByOrganization(1L, 3L));
+        verifyNoInteractions(productCatalog, inventoryMapper);
+        assertEquals(2, meterRegistry.get("inventory.read").tag("operation", "board")
+                .timer().count());
+    }
+
+    @Test
+    void getBoard_GroupsAdjacentRowsByCategory() {
+        InventoryResponseDto ale = new InventoryResponseDto(1L, 1L, 10L, "Ale", BigDecimal.ONE, BigDecimal.ONE, null, null, null, null, "2025-01-01T00:00:00.000Z");
+        InventoryResponseDto stout = new InventoryResponseDto(2L, 1L, 11L, "Stout", BigDecimal.ONE, BigDecimal.ONE, null, null, null, null, "2025-01-01T00:00:00.000Z");
+        InventoryResponseDto apple = new InventoryResponseDto(3L, 1L, 12L, "Apple", BigDecimal.ONE, BigDecimal.ONE, null, null, null, null, "2025-01-01T00:00:00.000Z");
+        when(inventoryRepository.findBoardRowsByOrganizationId(1L)).thenReturn(List.of(
+                new InventoryRepository.BoardRow(4L, "Beers", true, ale),
+                new InventoryRepository.BoardRow(4L, "Beers", true, stout),
+                new InventoryRepository.BoardRow(3L, "Ciders", false, apple)));
+
+        List<BoardCategoryDto> board = inventoryService.getBoard(1L);
+
+        assertEquals(List.of(new BoardCategoryDto(4L, "Beers", true, List.of(ale, stout)),
+                new BoardCategoryDto(3L, "Ciders", false, List.of(apple))), board);
+        verifyNoInteractions(productCatalog, inventoryMapper);
+        assertEquals(1, meterRegistry.get("inventory.read").tag("operation", "market_board")
+                .timer().count());
+    }
+
+    @Test
+    void getChanges_KnownVersion_ReadsOnlyChangedProducts() {
+        InventoryResponseDto row = new InventoryResponseDto(1L, 1L, 10L, "A", BigDecimal.ONE, BigDecimal.ONE, "abc", null, null, null, "2025-01-01T00:00:00.000Z");
+        when(inventoryVersions.epoch()).thenReturn("e1");
+        when(inventoryVersions.changesSince(1L, 4L)).thenReturn(new InventoryVersions.Changes(6, Set.of(10L)));
+        when(inventoryRepository.findResponsesByOrganizationIdAndProductIdIn(1L, Set.of(10L))).thenReturn(List.of(row));
+
+        InventoryChangesDto changes = inventoryService.getChanges(1L, "e1-4");
+
+        assertEquals(new InventoryChangesDto("e1-6", false, List.of(row)), changes);
+        verify(inventoryRepository, never()).findResponsesByOrganizationId(any());
+    }
+
+    @Test
+    void getChanges_NothingChanged_SkipsQuery() {
+        when(inventoryVersions.epoch()).thenReturn("e1");
+        when(inventoryVersions.changesSince(1L, 6L)).thenReturn(new InventoryVersions.Changes(6, Set.of()));
+
+        assertEquals(new InventoryChangesDto("e1-6", false, List.of()), inventoryService.getChanges(1L, "e1-6"));
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    void getChanges_VersionOfPreviousRun_ReturnsEverything() {
+        InventoryResponseDto row = new InventoryResponseDto(1L, 1L, 10L, "A", BigDecimal.ONE, BigDecimal.ONE, "abc", null, null, null, "2025-01-01T00:00:00.000Z");
+        when(inventoryVersions.epoch()).thenReturn("e2");
+        when(inventoryVersions.changesSince(1L, -1L)).thenReturn(new InventoryVersions.Changes(2, null));
+        when(inventoryRepository.findResponsesByOrganizationId(1L)).thenReturn(List.of(row));
+
+        assertEquals(new InventoryChangesDto("e2-2", true, List.of(row)), inventoryService.getChanges(1L, "e1-4"));
     }
 
     @Test
@@ -136,7 +270,7 @@ class InventoryServiceTest {
         Inventory inv = new Inventory(); inv.setId(1L); inv.setOrganizationId(1L); inv.setProductId(10L); inv.setQuantity(BigDecimal.ONE); inv.setUpdatedAt(OffsetDateTime.now());
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
         Product p = new Product(); p.setId(10L); p.setActive(false); p.setBasePrice(BigDecimal.ONE); p.setName("A");
-        when(productRepository.findById(10L)).thenReturn(Optional.of(p));
+        when(productCatalog.product(1L, 10L)).thenReturn(catalogProduct(p));
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.getByProductAndOrganization(10L, 1L));
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
     }
@@ -144,7 +278,7 @@ class InventoryServiceTest {
     @Test
     void addStock_ProductWrongOrg_Forbidden() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(2L); product.setActive(true);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
         AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.ONE, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.addStock(request, userId, 1L));
         assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
@@ -154,10 +288,11 @@ class InventoryServiceTest {
     void removeStock_Success_CreatesNegativeTransaction() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(new BigDecimal("2.00"));
         Inventory inv = new Inventory(); inv.setId(10L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(new BigDecimal("10")); inv.setAdjustedPrice(new BigDecimal("2.00")); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
         when(inventoryRepository.save(any(Inventory.class))).thenAnswer(a -> a.getArgument(0));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> { Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString());});
+        stubMarketQuantity(new BigDecimal("10"));
 
         RemoveStockRequestDto request = new RemoveStockRequestDto(5L, new BigDecimal("3"), "sale-1", "note");
         InventoryResponseDto dto = inventoryService.removeStock(request, userId, 1L);
@@ -168,24 +303,103 @@ class InventoryServiceTest {
         assertEquals("sale-1", txCap.getValue().getReferenceId());
     }
 
+    @Test
+    void removeStock_SalesQueued_ChangesStoredQuantityByDelta() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(new BigDecimal("2.00"));
+        Inventory inv = new Inventory(); inv.setId(10L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(new BigDecimal("10")); inv.setAdjustedPrice(new BigDecimal("2.00")); inv.setUpdatedAt(OffsetDateTime.now());
+        when(productCatalog.product(1L, 5L)).thenReturn(catalogProduct(product));
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(a -> a.getArgument(0));
+        when(inventoryMapper.toResponse(any())).thenAnswer(a -> { Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString());});
+        // Six sold, still queued for the database
+        stubMarketQuantity(new BigDecimal("4"));
+
+        RemoveStockRequestDto request = new RemoveStockRequestDto(5L, new BigDecimal("3"), null, null);
+        InventoryResponseDto dto = inventoryService.removeStock(request, userId, 1L);
+
+        assertEquals(new BigDecimal("1"), dto.quantity());
+        // The queued sales bring it down to the same quantity once written
+        assertEquals(new BigDecimal("7"), inv.getQuantity());
+        ArgumentCaptor<InventoryTransaction> txCap = ArgumentCaptor.forClass(InventoryTransaction.class);
+        verify(inventoryTransactionRepository).save(txCap.capture());
+        assertEquals(new BigDecimal("4"), txCap.getValue().getQuantityBefore());
+        assertEquals(new BigDecimal("1"), txCap.getValue().getQuantityAfter());
+    }
+
     @Test
     void getTransactionHistory_MapsUserInfo() {
         Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
         UUID uid = UUID.randomUUID();
-        InventoryTransaction tx = new InventoryTransaction();
-        tx.setId(1L); tx.setInventory(inv); tx.setInventoryId(inv.getId()); tx.setTransactionType("SALE");
-        tx.setQuantityChange(new BigDecimal("-1")); tx.setQuantityBefore(BigDecimal.TEN); tx.setQuantityAfter(new BigDecimal("9"));
-        tx.setPriceBefore(BigDecimal.ONE); tx.setPriceAfter(BigDecimal.ONE); tx.setReferenceId("ref"); tx.setNotes("n");
-        tx.setCreatedBy(uid); tx.setCreatedAt(OffsetDateTime.now());
-        when(inventoryTransactionRepository.findByInventoryIdOrderByCreatedAtDesc(100L)).thenReturn(List.of(tx));
+        when(inventoryTransactionRepository.findHistoryPage(any()))
+                .thenReturn(List.of(historyRow(inv, 1L, OffsetDateTime.now(), uid)));
         User user = new User(); user.setId(uid); user.setName("Alice"); user.setEmail("a@b.c");
         when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
 
-        List<InventoryTransactionResponseDto> result = inventoryService.getTransactionHistory(10L, 1L);
-        assertEquals(1, result.size());
-        assertEquals(uid.toString(), result.get(0).createdBy());
-        assertEquals("Alice", result.get(0).createdByName());
+        InventoryTransactionPageDto result = inventoryService.getTransactionHistory(10L, 1L, null, null, null, null, 50);
+        assertEquals(1, result.items().size());
+        assertEquals(uid.toString(), result.items().get(0).createdBy());
+        assertEquals("Alice", result.items().get(0).createdByName());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getTransactionHistory_MoreRows_NextCursorContinuesAfterLastItem() {
+        Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
+        OffsetDateTime t = OffsetDateTime.parse("2026-03-01T20:00:00.123456Z");
+        OffsetDateTime from = t.minusDays(1);
+        when(inventoryTransactionRepository.findHistoryPage(any())).thenReturn(List.of(
+                historyRow(inv, 3L, t, null), historyRow(inv, 2L, t, null), historyRow(inv, 1L, t, null)));
+
+        InventoryTransactionPageDto first = inventoryService.getTransactionHistory(10L, 1L, "SALE", from, null, null, 2);
+
+        assertEquals(2, first.items().size());
+        assertNotNull(first.nextCursor());
+        ArgumentCaptor<InventoryTransactionHistoryRepository.HistoryQuery> query =
+                ArgumentCaptor.forClass(InventoryTransactionHistoryRepository.HistoryQuery.class);
+        verify(inventoryTransactionRepository).findHistoryPage(query.capture());
+        assertEquals(new InventoryTransactionHistoryRepository.HistoryQuery(100L, "SALE", from, null, null, null, 3),
+                query.getValue());
+        verifyNoInteractions(userRepository);
+
+        when(inventoryTransactionRepository.findHistoryPage(any())).thenReturn(List.of(historyRow(inv, 1L, t, null)));
+        InventoryTransactionPageDto second = inventoryService.getTransactionHistory(10L, 1L, "SALE", from, null,
+                first.nextCursor(), 2);
+
+        verify(inventoryTransactionRepository, times(2)).findHistoryPage(query.capture());
+        assertEquals(t, query.getValue().afterCreatedAt());
+        assertEquals(2L, query.getValue().afterId());
+        assertEquals(1, second.items().size());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void getTransactionHistory_LimitAboveMaximum_IsCapped() {
+        Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
+        when(inventoryTransactionRepository.findHistoryPage(any())).thenReturn(List.of());
+
+        inventoryService.getTransactionHistory(10L, 1L, null, null, null, null, 10_000);
+
+        verify(inventoryTransactionRepository).findHistoryPage(argThat(query ->
+                query.limit() == InventoryService.MAX_HISTORY_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void getTransactionHistory_InvalidCursor_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.getTransactionHistory(10L, 1L, null, null, null, "not-a-cursor", 50));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    @Test
+    void getTransactionHistory_UnknownType_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.getTransactionHistory(10L, 1L, "REFUND", null, null, null, 50));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryRepository, inventoryTransactionRepository);
     }
 
     @Test
@@ -193,20 +407,12 @@ class InventoryServiceTest {
         Long orgId = 1L;
         UUID uid = UUID.randomUUID();
         Long stationId = 7L;
-        // two transactions for same user/station, different inventories
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setCreatedBy(uid); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setCreatedBy(uid); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        // inventories map to products with base prices
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        SalesStatsRepository.UserStationTotals totals = mock(SalesStatsRepository.UserStationTotals.class);
+        when(totals.getUserId()).thenReturn(uid);
+        when(totals.getBarStationId()).thenReturn(stationId);
+        when(totals.getSalesCount()).thenReturn(2L);
+        when(totals.getRevenue()).thenReturn(new BigDecimal("11.00"));
+        when(salesStatsRepository.findUserStationTotals(orgId)).thenReturn(List.of(totals));
 
         User user = new User(); user.setId(uid); user.setName("Bob"); user.setEmail("b@c.d");
         when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
@@ -217,36 +423,58 @@ class InventoryServiceTest {
         assertEquals(1, stats.size());
         UserSalesStatsResponseDto s = stats.get(0);
         assertEquals(2L, s.salesCount());
-        // revenue = 2*3 + 1*5 = 11
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Bob", s.userName());
+        assertEquals("Main", s.barStationName());
+        verifyNoInteractions(inventoryTransactionRepository, inventoryRepository, productRepository);
     }
 
     @Test
     void getStationSalesStats_ComputesCountsAndRevenue() {
         Long orgId = 1L;
         Long stationId = 7L;
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        SalesStatsRepository.StationTotals busy = mock(SalesStatsRepository.StationTotals.class);
+        when(busy.getBarStationId()).thenReturn(stationId);
+        when(busy.getSalesCount()).thenReturn(2L);
+        when(busy.getRevenue()).thenReturn(new BigDecimal("11.00"));
+        SalesStatsRepository.StationTotals quiet = mock(SalesStatsRepository.StationTotals.class);
+        when(quiet.getBarStationId()).thenReturn(8L);
+        when(quiet.getSalesCount()).thenReturn(1L);
+        when(quiet.getRevenue()).thenReturn(new BigDecimal("3.00"));
+        when(salesStatsRepository.findStationTotals(orgId)).thenReturn(List.of(quiet, busy));
 
         BarStation station = new BarStation(); station.setId(stationId); station.setName("Main");
         when(barStationRepository.findAllById(anyList())).thenReturn(List.of(station));
 
         List<StationSalesStatsResponseDto> stats = inventoryService.getStationSalesStats(orgId);
-        assertEquals(1, stats.size());
+        assertEquals(2, stats.size());
         StationSalesStatsResponseDto s = stats.get(0);
         assertEquals(2L, s.salesCount());
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Main", s.barStationName());
+        assertNull(stats.get(1).barStationName());
+        verifyNoInteractions(inventoryTransactionRepository, inventoryRepository, productRepository);
+    }
+
+    private static InventoryTransactionHistoryRepository.HistoryRow historyRow(Inventory inv, Long id,
+            OffsetDateTime createdAt, UUID createdBy) {
+        return new InventoryTransactionHistoryRepository.HistoryRow(id, inv.getId(), "SALE", new BigDecimal("-1"),
+                BigDecimal.TEN, new BigDecimal("9"), BigDecimal.ONE, BigDecimal.ONE, "ref", "n", createdBy, createdAt);
+    }
+
+    /**
+     * Lets the mocked market apply stock changes to the given quantity.
+     */
+    private void stubMarketQuantity(BigDecimal quantity) {
+        when(marketEngine.changeStock(eq(1L), eq(5L), any(), any())).thenAnswer(invocation -> {
+            UnaryOperator<BigDecimal> newQuantity = invocation.getArgument(2);
+            Function<MarketEngine.StockChange, ?> commit = invocation.getArgument(3);
+            return commit.apply(new MarketEngine.StockChange(9L, quantity, newQuantity.apply(quantity),
+                    new BigDecimal("2.00")));
+        });
+    }
+
+    private static Optional<ProductCatalog.CatalogProduct> catalogProduct(Product product) {
+        return Optional.of(ProductCatalog.CatalogProduct.of(product, null));
     }
 }
@@ -0,0 +1,110 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.BoardCategoryDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventorySnapshotCacheTest {
+
+    @Mock private InventoryService inventoryService;
+
+    private final InventoryVersions inventoryVersions = new InventoryVersions(256);
+    private InventorySnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new InventorySnapshotCache(inventoryService, inventoryVersions, new ObjectMapper());
+    }
+
+    @Test
+    void get_SameVersion_ReusesSnapshot() {
+        when(inventoryService.getByOrganization(1L, null)).thenReturn(List.of(row("3.00")));
+
+        InventorySnapshotCache.Snapshot first = cache.get(1L, null);
+        InventorySnapshotCache.Snapshot second = cache.get(1L, null);
+
+        assertSame(first, second);
+        assertTrue(new String(first.json(), StandardCharsets.UTF_8).contains("\"unitPrice\":3.00"));
+        verify(inventoryService, times(1)).getByOrganization(1L, null);
+    }
+
+    @Test
+    void get_AfterBump_RebuildsWithNewEtag() {
+        when(inventoryService.getByOrganization(1L, null))
+                .thenReturn(List.of(row("3.00")))
+                .thenReturn(List.of(row("3.50")));
+
+        InventorySnapshotCache.Snapshot before = cache.get(1L, null);
+        inventoryVersions.bump(1L);
+        InventorySnapshotCache.Snapshot after = cache.get(1L, null);
+
+        assertNotEquals(before.etag(), after.etag());
+        assertTrue(new String(after.json(), StandardCharsets.UTF_8).contains("\"unitPrice\":3.50"));
+        assertEquals(inventoryVersions.epoch() + "-1", after.changesVersion());
+    }
+
+    @Test
+    void get_BumpOfOtherOrganization_KeepsSnapshot() {
+        when(inventoryService.getByOrganization(1L, 4L)).thenReturn(List.of(row("3.00")));
+
+        InventorySnapshotCache.Snapshot before = cache.get(1L, 4L);
+        inventoryVersions.bump(2L);
+
+        assertSame(before, cache.get(1L, 4L));
+    }
+
+    @Test
+    void get_TooManySlots_DropsOnlyOldest() {
+        when(inventoryService.getByOrganization(1L, null)).thenReturn(List.of(row("3.00")));
+        cache.get(1L, null);
+        InventorySnapshotCache.Snapshot second = cache.get(2L, 0L);
+
+        for (long categoryId = 1; categoryId < InventorySnapshotCache.MAX_SLOTS; categoryId++) {
+            cache.get(2L, categoryId);
+        }
+
+        assertSame(second, cache.get(2L, 0L));
+        cache.get(1L, null);
+        verify(inventoryService, times(2)).getByOrganization(1L, null);
+    }
+
+    @Test
+    void getBoard_CachedSeparatelyFromInventoryList() {
+        when(inventoryService.getByOrganization(1L, null)).thenReturn(List.of(row("3.00")));
+        when(inventoryService.getBoard(1L))
+                .thenReturn(List.of(new BoardCategoryDto(4L, "Beers", true, List.of(row("3.00")))))
+                .thenReturn(List.of(new BoardCategoryDto(4L, "Beers", true, List.of(row("3.50")))));
+
+        InventorySnapshotCache.Snapshot inventory = cache.get(1L, null);
+        InventorySnapshotCache.Snapshot board = cache.getBoard(1L);
+
+        assertNotEquals(inventory.etag(), board.etag());
+        assertSame(board, cache.getBoard(1L));
+        assertTrue(new String(board.json(), StandardCharsets.UTF_8).contains("\"name\":\"Beers\""));
+
+        inventoryVersions.bump(1L);
+        InventorySnapshotCache.Snapshot rebuilt = cache.getBoard(1L);
+
+        assertNotEquals(board.etag(), rebuilt.etag());
+        assertTrue(new String(rebuilt.json(), StandardCharsets.UTF_8).contains("\"unitPrice\":3.50"));
+        verify(inventoryService, times(2)).getBoard(1L);
+    }
+
+    private static InventoryResponseDto row(String price) {
+        return new InventoryResponseDto(1L, 1L, 5L, "Beer", BigDecimal.TEN, new BigDecimal(price), null,
+                new BigDecimal("3.00"), null, null, "2025-01-01T00:00:00.000Z");
+    }
+}
@@ -0,0 +1,57 @@
+package com.borsibaar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryVersionsTest {
+
+    private final InventoryVersions versions = new InventoryVersions(4);
+
+    @Test
+    void changesSince_CollectsProductsOfLaterVersions() {
+        versions.bump(1L, List.of(5L));
+        versions.bump(1L, List.of(6L, 7L));
+        versions.bump(1L, List.of(5L));
+        versions.bump(2L, List.of(8L));
+
+        InventoryVersions.Changes changes = versions.changesSince(1L, 1);
+
+        assertEquals(3, changes.version());
+        assertEquals(Set.of(5L, 6L, 7L), changes.productIds());
+        assertEquals(Set.of(), versions.changesSince(1L, 3).productIds());
+    }
+
+    @Test
+    void changesSince_UnknownOrganization_NothingChangedSinceZero() {
+        assertEquals(new InventoryVersions.Changes(0, Set.of()), versions.changesSince(1L, 0));
+        assertTrue(versions.changesSince(1L, 3).full());
+    }
+
+    @Test
+    void changesSince_ChangeWithoutProducts_Full() {
+        versions.bump(1L, List.of(5L));
+        versions.bump(1L);
+        versions.bump(1L, List.of(6L));
+
+        assertTrue(versions.changesSince(1L, 0).full());
+        assertEquals(Set.of(6L), versions.changesSince(1L, 2).productIds());
+    }
+
+    @Test
+    void changesSince_OutsideLog_Full() {
+        for (long productId = 1; productId <= 6; productId++) {
+            versions.bump(1L, List.of(productId));
+        }
+
+        // Versions 1 and 2 were overwritten
+        assertTrue(versions.changesSince(1L, 1).full());
+        assertEquals(Set.of(3L, 4L, 5L, 6L), versions.changesSince(1L, 2).productIds());
+        // Ahead of the log, from a previous run
+        assertTrue(versions.changesSince(1L, 7).full());
+        assertTrue(versions.changesSince(1L, -1).full());
+    }
+}
@@ -1,5 +1,7 @@
 package com.borsibaar.service;
 
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
@@ -14,6 +16,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -196,4 +199,47 @@ class JwtServiceTest {
         // Act & Assert
         assertThrows(Exception.class, () -> jwtService.parseToken(null));
     }
+
+    @Test
+    void testGenerateAccessToken_ToPrincipal_RestoresUserFromClaims() {
+        // Arrange
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .email("test@example.com")
+                .name("Test User")
+                .organizationId(7L)
+                .role(Role.builder().id(2L).name("ADMIN").build())
+                .build();
+
+        // Act
+        User principal = jwtService.toPrincipal(jwtService.parseToken(jwtService.generateAccessToken(user)));
+
+        // Assert
+        assertEquals(user.getId(), principal.getId());
+        assertEquals("test@example.com", principal.getEmail());
+        assertEquals("Test User", principal.getName());
+        assertEquals(7L, principal.getOrganizationId());
+        assertEquals("ADMIN", principal.getRole().getName());
+    }
+
+    @Test
+    void testGenerateAccessToken_UserWithoutOrganization_HasNoOrganization() {
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .email("test@example.com")
+                .role(Role.builder().id(1L).name("USER").build())
+                .build();
+
+        User principal = jwtService.toPrincipal(jwtService.parseToken(jwtService.generateAccessToken(user)));
+
+        assertNull(principal.getOrganizationId());
+        assertEquals("USER", principal.getRole().getName());
+    }
+
+    @Test
+    void testToPrincipal_RefreshToken_ReturnsNull() {
+        Claims claims = jwtService.parseToken(jwtService.generateToken("test@example.com"));
+
+        assertNull(jwtService.toPrincipal(claims));
+    }
 }
@@ -0,0 +1,430 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryTickDto;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarketEngineTest {
+
+    @Mock private InventoryRepository inventoryRepository;
+    @Mock private ProductRepository productRepository;
+    @Mock private ProductCatalog productCatalog;
+    @Mock private PriceTicker priceTicker;
+
+    // Epoch milliseconds, decays are due 60 seconds after a sale
+    private long now = 1_000_000;
+    private MarketEngine marketEngine;
+
+    @BeforeEach
+    void setUp() {
+        marketEngine = new MarketEngine(inventoryRepository, productCatalog, priceTicker, 60, 100, 2, () -> now);
+        when(productCatalog.priceIncreaseStep(1L)).thenReturn(new BigDecimal("0.50"));
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(
+                inventory(9L, product(5L, "Beer", dynamic), "10", "3.00"),
+                inventory(10L, product(6L, "Cider", dynamic), "1", "4.00")));
+    }
+
+    @Test
+    void sell_DynamicPricing_IncreasesPriceUntilMax() {
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(
+                new SaleItemRequestDto(5L, BigDecimal.ONE),
+                new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+
+        assertEquals(new BigDecimal("3.00"), lines.get(0).priceBefore());
+        assertEquals(new BigDecimal("3.50"), lines.get(0).priceAfter());
+        assertEquals(new BigDecimal("3.50"), lines.get(1).priceBefore());
+        // Capped at max price 3.75
+        assertEquals(new BigDecimal("3.75"), lines.get(1).priceAfter());
+        assertEquals(BigDecimal.valueOf(8), lines.get(1).quantityAfter());
+    }
+
+    @Test
+    void sell_FailingLine_LeavesMarketUnchanged() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> marketEngine.sell(1L, List.of(
+                new SaleItemRequestDto(5L, BigDecimal.ONE),
+                new SaleItemRequestDto(6L, BigDecimal.TEN)), applied -> fail("must not commit")));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(BigDecimal.TEN, lines.get(0).quantityBefore());
+        assertEquals(new BigDecimal("3.00"), lines.get(0).priceBefore());
+    }
+
+    @Test
+    void sell_CommitThrows_LeavesMarketUnchanged() {
+        assertThrows(IllegalStateException.class, () -> marketEngine.sell(1L,
+                List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { throw new IllegalStateException("journal unavailable"); }));
+
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(BigDecimal.TEN, lines.get(0).quantityBefore());
+    }
+
+    @Test
+    void changeStock_AppliesChangeToSoldQuantity() {
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)), applied -> { });
+        MarketEngine.StockChange change = marketEngine.changeStock(1L, 6L,
+                quantity -> quantity.add(BigDecimal.valueOf(5)), committed -> committed);
+
+        assertEquals(BigDecimal.ZERO, change.quantityBefore());
+        assertEquals(BigDecimal.valueOf(5), change.quantityChange());
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(BigDecimal.valueOf(5), lines.get(0).quantityBefore());
+    }
+
+    @Test
+    void changeStock_MoreThanUnsoldStock_ThrowsWithoutCommit() {
+        // Sold but not yet persisted, the stored quantity is still ten
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> marketEngine.changeStock(1L,
+                5L, quantity -> quantity.subtract(BigDecimal.TEN), committed -> fail("must not commit")));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void changeStock_CommitThrows_LeavesQuantityUnchanged() {
+        assertThrows(IllegalStateException.class, () -> marketEngine.changeStock(1L, 5L,
+                quantity -> BigDecimal.ZERO, committed -> { throw new IllegalStateException("conflict"); }));
+
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(BigDecimal.TEN, lines.get(0).quantityBefore());
+    }
+
+    @Test
+    void changeStock_CommitRunsUnlocked_RemovedStockIsNotSold() {
+        marketEngine.changeStock(1L, 5L, quantity -> quantity.subtract(BigDecimal.valueOf(9)), committed -> {
+            // A sale on another thread goes through while the change is stored
+            List<MarketEngine.SaleLine> lines = CompletableFuture.supplyAsync(() -> marketEngine.sell(1L,
+                    List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { }))
+                    .orTimeout(5, TimeUnit.SECONDS)
+                    .join();
+            assertEquals(BigDecimal.ONE, lines.get(0).quantityBefore());
+            return committed;
+        });
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> marketEngine.sell(1L,
+                List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { }));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void sell_ConcurrentFirstUse_KeepsOneMarket() {
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(inventoryRepository.findByOrganizationId(1L)).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                // Another thread loads and uses the market while this load runs
+                CompletableFuture.runAsync(() -> marketEngine.sell(1L,
+                        List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { }))
+                        .orTimeout(5, TimeUnit.SECONDS)
+                        .join();
+            }
+            return List.of(inventory(9L, product(5L, "Beer", dynamic), "10", "3.00"));
+        });
+
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+
+        // Applied to the market stored by the other thread
+        assertEquals(BigDecimal.valueOf(9), lines.get(0).quantityBefore());
+        verify(inventoryRepository, times(2)).findByOrganizationId(1L);
+    }
+
+    @Test
+    void deactivateProduct_RejectsFurtherSales() {
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+        marketEngine.deactivateProduct(1L, 5L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> marketEngine.sell(1L,
+                List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { }));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void sell_PublishesOneTickPerChangedProduct() {
+        when(priceTicker.hasSubscribers(1L)).thenReturn(true);
+
+        marketEngine.sell(1L, List.of(
+                new SaleItemRequestDto(5L, BigDecimal.ONE),
+                new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTickDto>> captor = ArgumentCaptor.forClass(List.class);
+        verify(priceTicker).publish(eq(1L), captor.capture());
+        assertEquals(1, captor.getValue().size());
+        InventoryTickDto tick = captor.getValue().get(0);
+        assertEquals(5L, tick.productId());
+        assertEquals(BigDecimal.valueOf(8), tick.quantity());
+        assertEquals(new BigDecimal("3.75"), tick.unitPrice());
+    }
+
+    @Test
+    void decayDue_ProductStoppedSelling_LowersPriceOnceEveryInterval() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("0.25"));
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+        List<MarketEngine.PriceDecay> committed = new ArrayList<>();
+        BiConsumer<Long, List<MarketEngine.PriceDecay>> commit = (organizationId, decays) -> committed.addAll(decays);
+
+        now += 59_900;
+        assertEquals(0, marketEngine.decayDue(now, commit));
+
+        // Cider sells meanwhile
+        now += 30_000;
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)), applied -> { });
+        // Beer's deadline passed 30 seconds ago, nothing fires twice
+        now += 100;
+        assertEquals(1, marketEngine.decayDue(now, commit));
+        assertEquals(0, marketEngine.decayDue(now, commit));
+
+        assertEquals(1, committed.size());
+        MarketEngine.PriceDecay decay = committed.get(0);
+        assertEquals(5L, decay.productId());
+        assertEquals(new BigDecimal("3.50"), decay.priceBefore());
+        assertEquals(new BigDecimal("3.25"), decay.priceAfter());
+
+        // Decays again one interval later, the cider sale keeps the organization active
+        now += 30_000;
+        assertEquals(1, marketEngine.decayDue(now, commit));
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(new BigDecimal("3.00"), lines.get(0).priceBefore());
+    }
+
+    @Test
+    void decayDue_StopsAtMinimumPrice() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("1.25"));
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        Product product = product(5L, "Beer", dynamic); product.setMinPrice(new BigDecimal("2.50"));
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inventory(9L, product, "10", "3.00"),
+                inventory(10L, product(6L, "Cider", dynamic), "1", "4.00")));
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+        now += 30_000;
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)), applied -> { });
+        List<MarketEngine.PriceDecay> committed = new ArrayList<>();
+
+        now += 30_000;
+        marketEngine.decayDue(now, (organizationId, decays) -> committed.addAll(decays));
+
+        assertEquals(new BigDecimal("3.50"), committed.get(0).priceBefore());
+        assertEquals(new BigDecimal("2.50"), committed.get(0).priceAfter());
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(new BigDecimal("2.50"), lines.get(0).priceBefore());
+    }
+
+    @Test
+    void decayDue_IdleOrganization_KeepsPricesUntilNextSale() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("0.25"));
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        // Last sold long before the market is loaded, e.g. before a restart
+        Inventory beer = inventory(9L, product(5L, "Beer", dynamic), "10", "3.50");
+        beer.setLastSaleAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(now - 600_000), ZoneOffset.UTC));
+        Inventory cider = inventory(10L, product(6L, "Cider", dynamic), "10", "0.25");
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(beer, cider));
+        List<MarketEngine.PriceDecay> committed = new ArrayList<>();
+        BiConsumer<Long, List<MarketEngine.PriceDecay>> commit = (organizationId, decays) -> committed.addAll(decays);
+
+        marketEngine.load(1L);
+        now += 60_000;
+        assertEquals(0, marketEngine.decayDue(now, commit));
+        now += 600_000;
+        assertEquals(0, marketEngine.decayDue(now, commit));
+        assertTrue(committed.isEmpty());
+
+        // The overdue decay fires with the first tick after the organization sells again
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)), applied -> { });
+        now += 100;
+        assertEquals(1, marketEngine.decayDue(now, commit));
+        assertEquals(5L, committed.get(0).productId());
+        assertEquals(new BigDecimal("3.25"), committed.get(0).priceAfter());
+
+        // Idle again by the next deadline
+        now += 60_000;
+        assertEquals(0, marketEngine.decayDue(now, commit));
+        assertEquals(1, committed.size());
+    }
+
+    @Test
+    void decayDue_CommitThrows_LeavesPricesUnchanged() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("0.25"));
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+        now += 30_000;
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(6L, BigDecimal.ONE)), applied -> { });
+
+        now += 30_000;
+        assertThrows(IllegalStateException.class, () -> marketEngine.decayDue(now, (organizationId, decays) -> {
+            throw new IllegalStateException("queue unavailable");
+        }));
+
+        List<MarketEngine.SaleLine> lines = marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(new BigDecimal("3.50"), lines.get(0).priceBefore());
+    }
+
+    @Test
+    void decayDue_LoadedMarket_DueOneIntervalAfterLatestSale() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("0.25"));
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        Inventory beer = inventory(9L, product(5L, "Beer", dynamic), "10", "3.00");
+        beer.setLastSaleAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(now - 50_000), ZoneOffset.UTC));
+        Inventory cider = inventory(10L, product(6L, "Cider", dynamic), "1", "4.00");
+        // Keeps the organization active when beer falls due
+        cider.setLastSaleAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(now - 20_000), ZoneOffset.UTC));
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(beer, cider));
+        when(priceTicker.hasSubscribers(1L)).thenReturn(true);
+        List<MarketEngine.PriceDecay> committed = new ArrayList<>();
+
+        marketEngine.load(1L);
+        now += 10_000;
+        assertEquals(1, marketEngine.decayDue(now, (organizationId, decays) -> committed.addAll(decays)));
+
+        assertEquals(5L, committed.get(0).productId());
+        assertEquals(new BigDecimal("2.75"), committed.get(0).priceAfter());
+        verify(priceTicker).publish(eq(1L), argThat(ticks -> ticks.size() == 1
+                && ticks.get(0).unitPrice().equals(new BigDecimal("2.75"))));
+    }
+
+    @Test
+    void decayDue_SeveralOrganizations_DecayInParallelUpToLimit() {
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        for (long organizationId = 1; organizationId <= 3; organizationId++) {
+            when(productCatalog.priceDecreaseStep(organizationId)).thenReturn(new BigDecimal("0.25"));
+            Product beer = product(5L, "Beer", dynamic); beer.setOrganizationId(organizationId);
+            Inventory beerInventory = inventory(organizationId * 10, beer, "10", "3.00");
+            beerInventory.setLastSaleAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(now - 50_000), ZoneOffset.UTC));
+            // At its minimum price, only keeps the organization active
+            Product cider = product(6L, "Cider", dynamic); cider.setOrganizationId(organizationId);
+            Inventory ciderInventory = inventory(organizationId * 10 + 1, cider, "10", "0.25");
+            ciderInventory.setLastSaleAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(now - 20_000), ZoneOffset.UTC));
+            when(inventoryRepository.findByOrganizationId(organizationId))
+                    .thenReturn(List.of(beerInventory, ciderInventory));
+            marketEngine.load(organizationId);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch twoRunning = new CountDownLatch(2);
+
+        now += 10_000;
+        int decayed = marketEngine.decayDue(now, (organizationId, decays) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            twoRunning.countDown();
+            try {
+                // Only returns if another organization decays at the same time
+                assertTrue(twoRunning.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            running.decrementAndGet();
+        });
+
+        assertEquals(3, decayed);
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void decayDue_EvictedMarket_FiresNothing() {
+        when(productCatalog.priceDecreaseStep(1L)).thenReturn(new BigDecimal("0.25"));
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+        marketEngine.evict(1L);
+
+        now += 60_000;
+        assertEquals(0, marketEngine.decayDue(now, (organizationId, decays) -> fail("must not commit")));
+    }
+
+    @Test
+    void sell_NoSubscribers_PublishesNothing() {
+        marketEngine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), applied -> { });
+
+        verify(priceTicker, never()).publish(anyLong(), anyList());
+    }
+
+    @Test
+    void sell_ConcurrentSalesOfOneProduct_NoLostUpdates() throws Exception {
+        Category dynamic = new Category(); dynamic.setId(3L); dynamic.setDynamicPricing(true);
+        Product product = product(7L, "Lager", dynamic); product.setMaxPrice(new BigDecimal("1000"));
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inventory(11L, product, "1000", "3.00")));
+
+        int threads = 8;
+        int salesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<MarketEngine.SaleLine> committed = new CopyOnWriteArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < salesPerThread; i++) {
+                    marketEngine.sell(1L, List.of(new SaleItemRequestDto(7L, BigDecimal.ONE)), committed::addAll);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int sales = threads * salesPerThread;
+        assertEquals(sales, committed.size());
+        // Every sale saw the result of the one before it
+        assertEquals(sales, committed.stream().map(MarketEngine.SaleLine::quantityBefore).distinct().count());
+        List<MarketEngine.SaleLine> next = marketEngine.sell(1L, List.of(new SaleItemRequestDto(7L, BigDecimal.ONE)),
+                applied -> { });
+        assertEquals(BigDecimal.valueOf(1000 - sales), next.get(0).quantityBefore());
+        assertEquals(0, new BigDecimal("3.00").add(new BigDecimal("0.50").multiply(BigDecimal.valueOf(sales)))
+                .compareTo(next.get(0).priceBefore()));
+    }
+
+    private static Product product(Long id, String name, Category category) {
+        Product product = new Product(); product.setId(id); product.setOrganizationId(1L); product.setName(name); product.setActive(true);
+        product.setBasePrice(new BigDecimal("3.00")); product.setMaxPrice(new BigDecimal("3.75")); product.setCategory(category);
+        return product;
+    }
+
+    private static Inventory inventory(Long id, Product product, String quantity, String price) {
+        Inventory inventory = new Inventory(); inventory.setId(id); inventory.setProduct(product); inventory.setProductId(product.getId()); inventory.setOrganizationId(1L);
+        inventory.setQuantity(new BigDecimal(quantity)); inventory.setAdjustedPrice(new BigDecimal(price));
+        return inventory;
+    }
+}
@@ -0,0 +1,79 @@
+package com.borsibaar.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarketInstanceLockTest {
+
+    @Mock private DataSource dataSource;
+    @Mock private Connection connection;
+    @Mock private DatabaseMetaData metaData;
+    @Mock private PreparedStatement statement;
+    @Mock private ResultSet result;
+
+    private MarketInstanceLock lock;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        lock = new MarketInstanceLock(dataSource);
+    }
+
+    @Test
+    void acquire_Free_HoldsConnectionUntilRelease() throws Exception {
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getBoolean(1)).thenReturn(true);
+
+        lock.acquire();
+
+        verify(statement).setLong(1, MarketInstanceLock.LOCK_KEY);
+        verify(connection, never()).close();
+
+        lock.release();
+
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(connection).close();
+    }
+
+    @Test
+    void acquire_HeldByAnotherInstance_FailsStartup() throws Exception {
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getBoolean(1)).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> lock.acquire());
+
+        verify(connection).close();
+    }
+
+    @Test
+    void acquire_EmbeddedDatabase_TakesNoLock() throws Exception {
+        when(metaData.getDatabaseProductName()).thenReturn("H2");
+
+        lock.acquire();
+        lock.release();
+
+        verify(connection, never()).prepareStatement(anyString());
+        verify(connection).close();
+    }
+}
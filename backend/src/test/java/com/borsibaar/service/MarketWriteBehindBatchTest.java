@@ -0,0 +1,283 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.PriceTick;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryBatchRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.ProductSalesStatsRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the write-behind flush against a real database and counts the
+ * statements sent to it, which must not grow with the number of sale lines.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MarketWriteBehindBatchTest {
+
+    private static final AtomicInteger ROUND_TRIPS = new AtomicInteger();
+
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private PriceTickRepository priceTickRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    // Native PostgreSQL upserts, not supported by H2
+    @MockitoBean private SalesStatsRepository salesStatsRepository;
+    @MockitoBean private ProductSalesStatsRepository productSalesStatsRepository;
+
+    @TempDir Path tempDir;
+
+    private MarketWriteBehind writeBehind;
+    private Organization organization;
+    private final List<Inventory> inventories = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        organization = new Organization();
+        organization.setName("Bar");
+        organization = organizationRepository.save(organization);
+
+        Category category = new Category();
+        category.setOrganizationId(organization.getId());
+        category.setName("Beers");
+        category = categoryRepository.save(category);
+
+        for (int i = 0; i < 50; i++) {
+            Product product = new Product();
+            product.setOrganizationId(organization.getId());
+            product.setCategoryId(category.getId());
+            product.setName("Product " + i);
+            product.setBasePrice(new BigDecimal("3.00"));
+            product.setActive(true);
+            product = productRepository.save(product);
+
+            Inventory inventory = new Inventory(organization.getId(), product, BigDecimal.valueOf(1000), null);
+            inventory.setUpdatedAt(OffsetDateTime.now());
+            inventories.add(inventoryRepository.save(inventory));
+        }
+
+        writeBehind = new MarketWriteBehind(inventoryRepository, inventoryTransactionRepository, priceTickRepository,
+                salesStatsRepository, productSalesStatsRepository, transactionManager,
+                mock(InventoryVersions.class), mock(PriceHistory.class),
+                new ObjectMapper().findAndRegisterModules(),
+                tempDir.resolve("market-journal.log").toString(),
+                tempDir.resolve("market-dead-letters.log").toString(), false, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventoryTransactionRepository.deleteAllInBatch();
+        priceTickRepository.deleteAllInBatch();
+        inventoryRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        organizationRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void flush_RoundTripsIndependentOfLineCount() {
+        // Warm up the id sequence so that its first allocation is not counted
+        flushSale(1);
+
+        for (int lineCount : new int[] { 1, 10, 50 }) {
+            int roundTrips = flushSale(lineCount);
+
+            // Lock, inventory update batch, transaction insert batch and at most one sequence call
+            assertTrue(roundTrips >= 3 && roundTrips <= 4, roundTrips + " round trips for " + lineCount + " lines");
+        }
+        assertEquals(1 + 1 + 10 + 50, inventoryTransactionRepository.count());
+        Inventory first = inventoryRepository.findById(inventories.get(0).getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(996).compareTo(first.getQuantity()));
+        assertEquals(0, new BigDecimal("3.50").compareTo(first.getAdjustedPrice()));
+        assertNotNull(first.getLastSaleAt());
+    }
+
+    @Test
+    void flush_ReplayedOlderSale_KeepsLatestSaleTime() {
+        OffsetDateTime soldAt = OffsetDateTime.now().withNano(0);
+        flushSale(1, soldAt);
+        flushSale(1, soldAt.minusMinutes(5));
+
+        Inventory inventory = inventoryRepository.findById(inventories.get(0).getId()).orElseThrow();
+        assertTrue(soldAt.isEqual(inventory.getLastSaleAt()));
+        assertNull(inventoryRepository.findById(inventories.get(1).getId()).orElseThrow().getLastSaleAt());
+    }
+
+    @Test
+    void flush_DecaysInOrderWithSales_LastPriceWins() {
+        OffsetDateTime soldAt = OffsetDateTime.now().withNano(0);
+        Inventory sold = inventories.get(0);
+        Inventory idle = inventories.get(1);
+        writeBehind.enqueue(new MarketWriteBehind.PendingSale("SALE-1", organization.getId(), UUID.randomUUID(),
+                null, soldAt, List.of(new MarketEngine.SaleLine(sold.getId(), sold.getProduct().getId(), "Product",
+                        BigDecimal.ONE, BigDecimal.valueOf(1000), BigDecimal.valueOf(999), new BigDecimal("3.00"),
+                        new BigDecimal("3.50")))));
+        writeBehind.enqueue(new MarketWriteBehind.PendingDecay("REDUCE-1", organization.getId(),
+                soldAt.plusMinutes(1), List.of(
+                        new MarketEngine.PriceDecay(sold.getId(), sold.getProduct().getId(), new BigDecimal("3.50"),
+                                new BigDecimal("3.25")),
+                        new MarketEngine.PriceDecay(idle.getId(), idle.getProduct().getId(), new BigDecimal("3.00"),
+                                new BigDecimal("2.75")))));
+
+        writeBehind.flush();
+
+        Inventory soldAfter = inventoryRepository.findById(sold.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("3.25").compareTo(soldAfter.getAdjustedPrice()));
+        assertEquals(0, BigDecimal.valueOf(999).compareTo(soldAfter.getQuantity()));
+        // A decay is not a sale
+        assertTrue(soldAt.isEqual(soldAfter.getLastSaleAt()));
+        Inventory idleAfter = inventoryRepository.findById(idle.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("2.75").compareTo(idleAfter.getAdjustedPrice()));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(idleAfter.getQuantity()));
+        assertNull(idleAfter.getLastSaleAt());
+        // Decays are price ticks, only the sale is a transaction
+        assertEquals(1, inventoryTransactionRepository.count());
+        List<PriceTick> ticks = priceTickRepository.findAll();
+        assertEquals(2, ticks.size());
+        assertTrue(ticks.stream().allMatch(tick -> soldAt.plusMinutes(1).isEqual(tick.getCreatedAt())));
+    }
+
+    @Test
+    void applyDeltas_WithoutPrice_KeepsStoredPrice() {
+        Inventory inventory = inventories.get(0);
+        OffsetDateTime soldAt = OffsetDateTime.now().withNano(0);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> inventoryRepository.applyDeltas(List.of(
+                new InventoryBatchRepository.InventoryDelta(inventory.getId(), BigDecimal.ONE, new BigDecimal("3.50"),
+                        soldAt, soldAt))));
+
+        // A parked sale replayed after its price was overwritten
+        transactionTemplate.executeWithoutResult(status -> inventoryRepository.applyDeltas(List.of(
+                new InventoryBatchRepository.InventoryDelta(inventory.getId(), BigDecimal.ONE, null,
+                        soldAt.plusMinutes(1), soldAt.minusMinutes(1)))));
+
+        Inventory after = inventoryRepository.findById(inventory.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("3.50").compareTo(after.getAdjustedPrice()));
+        assertEquals(0, BigDecimal.valueOf(998).compareTo(after.getQuantity()));
+        assertTrue(soldAt.isEqual(after.getLastSaleAt()));
+    }
+
+    @Test
+    void applyDeltas_ExceedingStoredQuantity_FailsWithoutClamping() {
+        Inventory inventory = inventories.get(0);
+        OffsetDateTime soldAt = OffsetDateTime.now().withNano(0);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        assertThrows(DataIntegrityViolationException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> inventoryRepository.applyDeltas(List.of(new InventoryBatchRepository.InventoryDelta(
+                        inventory.getId(), BigDecimal.valueOf(1001), null, soldAt, soldAt)))));
+
+        Inventory after = inventoryRepository.findById(inventory.getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(after.getQuantity()));
+    }
+
+    private int flushSale(int lineCount) {
+        return flushSale(lineCount, OffsetDateTime.now());
+    }
+
+    private int flushSale(int lineCount, OffsetDateTime soldAt) {
+        List<MarketEngine.SaleLine> lines = new ArrayList<>();
+        for (Inventory inventory : inventories.subList(0, lineCount)) {
+            lines.add(new MarketEngine.SaleLine(inventory.getId(), inventory.getProduct().getId(), "Product",
+                    BigDecimal.ONE, BigDecimal.TEN, BigDecimal.valueOf(9), new BigDecimal("3.00"),
+                    new BigDecimal("3.50")));
+        }
+        writeBehind.enqueue(new MarketWriteBehind.PendingSale("SALE-" + UUID.randomUUID(), organization.getId(),
+                UUID.randomUUID(), null, soldAt, lines));
+
+        ROUND_TRIPS.set(0);
+        writeBehind.flush();
+        return ROUND_TRIPS.get();
+    }
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? counting(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+
+        /**
+         * Wraps JDBC objects so that every statement execution, a whole
+         * batch included, counts as one round trip.
+         */
+        private static <T> T counting(T target, Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            ROUND_TRIPS.incrementAndGet();
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        Class<?> returnType = method.getReturnType();
+                        if (result != null && (returnType == Connection.class
+                                || Statement.class.isAssignableFrom(returnType))) {
+                            return wrap(result, returnType);
+                        }
+                        return result;
+                    }));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T wrap(Object target, Class<T> type) {
+            return counting((T) target, type);
+        }
+    }
+}
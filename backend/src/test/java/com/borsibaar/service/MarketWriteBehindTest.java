@@ -0,0 +1,342 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.PriceTick;
+import com.borsibaar.repository.InventoryBatchRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import com.borsibaar.repository.ProductSalesStatsRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarketWriteBehindTest {
+
+    @Mock private InventoryRepository inventoryRepository;
+    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private PriceTickRepository priceTickRepository;
+    @Mock private SalesStatsRepository salesStatsRepository;
+    @Mock private ProductSalesStatsRepository productSalesStatsRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private InventoryVersions inventoryVersions;
+    @Mock private PriceHistory priceHistory;
+
+    @TempDir Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private Path journalPath;
+    private Path deadLetterPath;
+
+    @BeforeEach
+    void setUp() {
+        journalPath = tempDir.resolve("market-journal.log");
+        deadLetterPath = tempDir.resolve("market-dead-letters.log");
+    }
+
+    @Test
+    void flush_PersistsQueuedSalesAndTruncatesJournal() throws Exception {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+
+        MarketWriteBehind.PendingSale sale = sale("SALE-1");
+        writeBehind.enqueue(sale);
+        assertTrue(Files.size(journalPath) > 0);
+        verifyNoInteractions(inventoryTransactionRepository);
+
+        writeBehind.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<InventoryBatchRepository.InventoryDelta>> deltas = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository).applyDeltas(deltas.capture());
+        InventoryBatchRepository.InventoryDelta delta = deltas.getValue().iterator().next();
+        assertEquals(9L, delta.inventoryId());
+        assertEquals(BigDecimal.ONE, delta.quantity());
+        assertEquals(new BigDecimal("3.50"), delta.price());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).saveAll(captor.capture());
+        InventoryTransaction transaction = captor.getValue().get(0);
+        assertEquals("SALE", transaction.getTransactionType());
+        assertEquals("SALE-1", transaction.getReferenceId());
+        assertEquals(BigDecimal.ONE.negate(), transaction.getQuantityChange());
+        assertEquals(0, Files.size(journalPath));
+        verify(inventoryVersions).bump(1L, Set.of(5L));
+        verify(priceHistory).record(5L, sale.createdAt(), new BigDecimal("3.00"), new BigDecimal("3.50"));
+    }
+
+    @Test
+    void flush_AddsSaleToHourlyStatistics() {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+        MarketWriteBehind.PendingSale sale = sale("SALE-1");
+
+        writeBehind.enqueue(sale);
+        writeBehind.flush();
+
+        OffsetDateTime bucketStart = sale.createdAt().withOffsetSameInstant(ZoneOffset.UTC)
+                .truncatedTo(ChronoUnit.HOURS);
+        // Revenue is the price charged, i.e. the price before the sale
+        verify(productSalesStatsRepository).addSaleLines(1L, 5L, bucketStart, 1L, BigDecimal.ONE, new BigDecimal("3.00"));
+        verify(salesStatsRepository).addSales(1L, sale.userId(), 2L, bucketStart, 1L, BigDecimal.ONE, new BigDecimal("3.00"));
+    }
+
+    @Test
+    void flush_BatchIsWrittenWithOneUpdatePerInventoryRow() {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+        MarketWriteBehind.PendingSale first = sale("SALE-1");
+        MarketWriteBehind.PendingSale second = new MarketWriteBehind.PendingSale("SALE-2", 1L, first.userId(), 2L,
+                first.createdAt(), List.of(new MarketEngine.SaleLine(9L, 5L, "Beer", BigDecimal.ONE,
+                        BigDecimal.valueOf(9), BigDecimal.valueOf(8), new BigDecimal("3.50"), new BigDecimal("4.00"))));
+
+        writeBehind.enqueue(first);
+        writeBehind.enqueue(second);
+        writeBehind.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<InventoryBatchRepository.InventoryDelta>> deltas = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository).applyDeltas(deltas.capture());
+        assertEquals(1, deltas.getValue().size());
+        InventoryBatchRepository.InventoryDelta delta = deltas.getValue().iterator().next();
+        assertEquals(BigDecimal.valueOf(2), delta.quantity());
+        // The later sale's price wins
+        assertEquals(new BigDecimal("4.00"), delta.price());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).saveAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+
+        OffsetDateTime bucketStart = first.createdAt().withOffsetSameInstant(ZoneOffset.UTC)
+                .truncatedTo(ChronoUnit.HOURS);
+        verify(salesStatsRepository).addSales(1L, first.userId(), 2L, bucketStart, 2L, BigDecimal.valueOf(2),
+                new BigDecimal("6.50"));
+        verify(productSalesStatsRepository).addSaleLines(1L, 5L, bucketStart, 2L, BigDecimal.valueOf(2),
+                new BigDecimal("6.50"));
+    }
+
+    @Test
+    void flush_PersistsDecaysAsPriceTicksWithoutJournaling() throws Exception {
+        MarketWriteBehind writeBehind = writeBehind();
+        OffsetDateTime decayedAt = OffsetDateTime.now();
+
+        writeBehind.enqueue(new MarketWriteBehind.PendingDecay("REDUCE-1", 1L, decayedAt, List.of(
+                new MarketEngine.PriceDecay(9L, 5L, new BigDecimal("3.00"), new BigDecimal("2.50")))));
+        assertTrue(Files.notExists(journalPath) || Files.size(journalPath) == 0);
+        writeBehind.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<InventoryBatchRepository.InventoryDelta>> deltas = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository).applyDeltas(deltas.capture());
+        InventoryBatchRepository.InventoryDelta delta = deltas.getValue().iterator().next();
+        assertEquals(BigDecimal.ZERO, delta.quantity());
+        assertEquals(new BigDecimal("2.50"), delta.price());
+        assertNull(delta.lastSaleAt());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PriceTick>> ticks = ArgumentCaptor.forClass(List.class);
+        verify(priceTickRepository).saveAll(ticks.capture());
+        PriceTick tick = ticks.getValue().get(0);
+        assertEquals(9L, tick.getInventoryId());
+        assertEquals(decayedAt, tick.getCreatedAt());
+        assertEquals(new BigDecimal("2.50"), tick.getPrice());
+        verify(inventoryTransactionRepository).saveAll(List.of());
+        verify(inventoryVersions).bump(1L, Set.of(5L));
+        verify(priceHistory).record(5L, decayedAt, new BigDecimal("3.00"), new BigDecimal("2.50"));
+        verifyNoInteractions(salesStatsRepository, productSalesStatsRepository);
+    }
+
+    @Test
+    void flush_FailingSaleIsRetriedAndKeptInJournal() throws Exception {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+        when(inventoryTransactionRepository.saveAll(anyList()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(List.of());
+
+        writeBehind.enqueue(sale("SALE-1"));
+        writeBehind.flush();
+        assertTrue(Files.size(journalPath) > 0);
+
+        writeBehind.flush();
+
+        verify(inventoryTransactionRepository, times(3)).saveAll(anyList());
+        assertEquals(0, Files.size(journalPath));
+        // Only once the sale is actually stored
+        verify(inventoryVersions, times(1)).bump(1L, Set.of(5L));
+        verify(priceHistory, times(1)).record(eq(5L), any(), any(), any());
+        assertTrue(Files.notExists(deadLetterPath));
+    }
+
+    @Test
+    void flush_FailingSaleHoldsBackLaterWritesOfSameProduct() {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(anyLong())).thenReturn(new Inventory());
+        Set<String> failing = new HashSet<>(Set.of("SALE-1"));
+        List<String> stored = storeSalesExcept(failing);
+
+        writeBehind.enqueue(sale("SALE-1", 9L, new BigDecimal("3.50")));
+        writeBehind.enqueue(sale("SALE-2", 9L, new BigDecimal("4.00")));
+        writeBehind.enqueue(sale("SALE-3", 10L, new BigDecimal("2.00")));
+        writeBehind.flush();
+
+        // The later sale of the same product must not overwrite the price before the earlier one is stored
+        assertEquals(List.of("SALE-3"), stored);
+
+        failing.clear();
+        writeBehind.flush();
+
+        assertEquals(List.of("SALE-3", "SALE-1", "SALE-2"), stored);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<InventoryBatchRepository.InventoryDelta>> deltas = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository, atLeastOnce()).applyDeltas(deltas.capture());
+        InventoryBatchRepository.InventoryDelta delta = deltas.getValue().iterator().next();
+        assertEquals(BigDecimal.valueOf(2), delta.quantity());
+        assertEquals(new BigDecimal("4.00"), delta.price());
+    }
+
+    @Test
+    void flush_PersistentlyFailingSaleIsParked() throws Exception {
+        MarketWriteBehind writeBehind = writeBehind();
+        when(inventoryRepository.getReferenceById(anyLong())).thenReturn(new Inventory());
+        List<String> stored = storeSalesExcept(Set.of("SALE-1"));
+
+        writeBehind.enqueue(sale("SALE-1", 9L, new BigDecimal("3.50")));
+        for (int i = 0; i < 10; i++) {
+            writeBehind.flush();
+        }
+        // Nothing gets through, e.g. the database is down, so the sale is kept queued
+        assertTrue(Files.notExists(deadLetterPath));
+
+        for (int i = 0; i < 5; i++) {
+            writeBehind.enqueue(sale("SALE-OK-" + i, 10L, new BigDecimal("2.00")));
+            writeBehind.flush();
+        }
+
+        MarketJournal deadLetters = new MarketJournal(deadLetterPath, objectMapper, false);
+        assertEquals(List.of("SALE-1"), deadLetters.readAll().stream()
+                .map(MarketWriteBehind.PendingSale::saleId).toList());
+        deadLetters.close();
+        assertEquals(0, Files.size(journalPath));
+        assertEquals(5, stored.size());
+
+        writeBehind.flush();
+        assertEquals(5, stored.size());
+    }
+
+    @Test
+    void start_ReplaysJournaledSalesNotYetPersisted() throws Exception {
+        MarketJournal journal = new MarketJournal(journalPath, objectMapper, false);
+        journal.append(sale("SALE-1"));
+        journal.append(sale("SALE-2"));
+        journal.close();
+        when(inventoryTransactionRepository.existsByReferenceId("SALE-1")).thenReturn(true);
+        when(inventoryTransactionRepository.existsByReferenceId("SALE-2")).thenReturn(false);
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+
+        MarketWriteBehind writeBehind = writeBehind();
+        writeBehind.start();
+        writeBehind.stop();
+
+        verify(inventoryRepository, times(1)).applyDeltas(anyCollection());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).saveAll(captor.capture());
+        assertEquals("SALE-2", captor.getValue().get(0).getReferenceId());
+        assertEquals(0, Files.size(journalPath));
+    }
+
+    @Test
+    void start_ReplaysParkedSalesWithoutTheirPrices() throws Exception {
+        MarketWriteBehind.PendingSale parked = sale("SALE-1");
+        MarketJournal deadLetters = new MarketJournal(deadLetterPath, objectMapper, false);
+        deadLetters.append(parked);
+        deadLetters.close();
+        MarketJournal journal = new MarketJournal(journalPath, objectMapper, false);
+        journal.append(parked);
+        journal.append(sale("SALE-2"));
+        journal.close();
+        when(inventoryTransactionRepository.existsByReferenceId(anyString())).thenReturn(false);
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(new Inventory());
+
+        MarketWriteBehind writeBehind = writeBehind();
+        writeBehind.start();
+        writeBehind.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<InventoryBatchRepository.InventoryDelta>> deltas = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository, times(2)).applyDeltas(deltas.capture());
+        assertEquals(new BigDecimal("3.50"), deltas.getAllValues().get(0).iterator().next().price());
+        // Its price was overwritten by later sales and decays
+        assertNull(deltas.getAllValues().get(1).iterator().next().price());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository, times(2)).saveAll(captor.capture());
+        assertEquals(List.of("SALE-2", "SALE-1"), captor.getAllValues().stream()
+                .map(transactions -> transactions.get(0).getReferenceId()).toList());
+        assertEquals(0, Files.size(journalPath));
+        assertEquals(0, Files.size(deadLetterPath));
+    }
+
+    private MarketWriteBehind writeBehind() {
+        return new MarketWriteBehind(inventoryRepository, inventoryTransactionRepository, priceTickRepository,
+                salesStatsRepository, productSalesStatsRepository, transactionManager,
+                inventoryVersions, priceHistory, objectMapper, journalPath.toString(), deadLetterPath.toString(),
+                false, 50);
+    }
+
+    /**
+     * Stores sales unless a batch contains one of the failing ones.
+     *
+     * @return Reference IDs of the stored sales
+     */
+    private List<String> storeSalesExcept(Set<String> failing) {
+        List<String> stored = new ArrayList<>();
+        when(inventoryTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<InventoryTransaction> transactions = invocation.getArgument(0);
+            if (transactions.stream().anyMatch(transaction -> failing.contains(transaction.getReferenceId()))) {
+                throw new IllegalStateException("constraint violated");
+            }
+            transactions.forEach(transaction -> stored.add(transaction.getReferenceId()));
+            return transactions;
+        });
+        return stored;
+    }
+
+    private static MarketWriteBehind.PendingSale sale(String saleId) {
+        return sale(saleId, 9L, new BigDecimal("3.50"));
+    }
+
+    private static MarketWriteBehind.PendingSale sale(String saleId, Long inventoryId, BigDecimal priceAfter) {
+        MarketEngine.SaleLine line = new MarketEngine.SaleLine(inventoryId, 5L, "Beer", BigDecimal.ONE,
+                BigDecimal.TEN, BigDecimal.valueOf(9), new BigDecimal("3.00"), priceAfter);
+        return new MarketWriteBehind.PendingSale(saleId, 1L, UUID.randomUUID(), 2L, OffsetDateTime.now(), List.of(line));
+    }
+}
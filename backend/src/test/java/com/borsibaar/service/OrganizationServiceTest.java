@@ -28,6 +28,10 @@ class OrganizationServiceTest {
     private OrganizationRepository organizationRepository;
     @Mock
     private OrganizationMapper organizationMapper;
+    @Mock
+    private MarketEngine marketEngine;
+    @Mock
+    private ProductCatalog productCatalog;
 
     @InjectMocks
     private OrganizationService organizationService;
@@ -53,6 +57,14 @@ class OrganizationServiceTest {
         assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
 
+    @Test
+    void requireExists_NotFound_Throws() {
+        when(organizationRepository.existsById(99L)).thenReturn(false);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> organizationService.requireExists(99L));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
     @Test
     void getAll_ReturnsMappedList() {
         Organization o = new Organization(); o.setId(1L); o.setName("A");
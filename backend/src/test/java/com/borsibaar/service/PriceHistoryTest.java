@@ -0,0 +1,210 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.PriceTick;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.PriceTickRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceHistoryTest {
+
+    // Start of a minute
+    private static final long T0 = 29_333_333L * 60_000;
+
+    @Mock private InventoryRepository inventoryRepository;
+    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private PriceTickRepository priceTickRepository;
+
+    private final AtomicLong now = new AtomicLong(T0 + 90_000);
+    private PriceHistory priceHistory;
+
+    @BeforeEach
+    void setUp() {
+        priceHistory = new PriceHistory(inventoryRepository, inventoryTransactionRepository, priceTickRepository,
+                7_200_000, 3_600_000, now::get);
+    }
+
+    @Test
+    void getCandles_SeedsFromTransactionPriceColumns() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of(
+                change(T0 + 5_000, "3.00", "3.50"),
+                change(T0 + 15_000, "3.50", "4.00"),
+                change(T0 + 70_000, "4.00", "3.50")));
+
+        List<PriceCandleDto> candles = priceHistory.getCandles(1L, 5L, "1m", 3);
+
+        assertEquals(3, candles.size());
+        assertCandle(candles.get(0), T0 - 60_000, "3.00", "3.00", "3.00", "3.00", 0);
+        assertCandle(candles.get(1), T0, "3.00", "4.00", "3.00", "4.00", 2);
+        assertCandle(candles.get(2), T0 + 60_000, "4.00", "4.00", "3.50", "3.50", 1);
+    }
+
+    @Test
+    void getCandles_GapsRepeatPreviousClose() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of(
+                change(T0 + 5_000, "3.00", "3.50")));
+
+        List<PriceCandleDto> candles = priceHistory.getCandles(1L, 5L, "10s", 10);
+
+        // The first candle contains the change, the others up to the current one follow without one
+        assertEquals(10, candles.size());
+        assertCandle(candles.get(0), T0, "3.00", "3.50", "3.00", "3.50", 1);
+        for (PriceCandleDto candle : candles.subList(1, 10)) {
+            assertCandle(candle, Instant.parse(candle.start()).toEpochMilli(), "3.50", "3.50", "3.50", "3.50", 0);
+        }
+    }
+
+    @Test
+    void record_AfterSeeding_ServedWithoutDatabase() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of());
+        priceHistory.getCandles(1L, 5L, "10s", 2);
+
+        priceHistory.record(5L, at(T0 + 82_000), new BigDecimal("3.00"), new BigDecimal("3.50"));
+        priceHistory.record(5L, at(T0 + 85_000), new BigDecimal("3.50"), new BigDecimal("4.00"));
+        List<PriceCandleDto> candles = priceHistory.getCandles(1L, 5L, "10s", 2);
+
+        assertCandle(candles.get(0), T0 + 80_000, "3.00", "4.00", "3.00", "4.00", 2);
+        assertCandle(candles.get(1), T0 + 90_000, "4.00", "4.00", "4.00", "4.00", 0);
+        verify(inventoryRepository, times(1)).findByOrganizationIdAndProductId(1L, 5L);
+        verify(inventoryTransactionRepository, times(1)).findPriceChangesSince(eq(9L), any());
+    }
+
+    @Test
+    void getCandles_MergesPriceTicksBetweenTransactions() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of(
+                change(T0 + 5_000, "3.00", "3.50")));
+        when(priceTickRepository.findTicksSince(eq(9L), any())).thenReturn(List.of(
+                tick(T0 + 15_000, "3.25"),
+                tick(T0 + 70_000, "3.00")));
+
+        List<PriceCandleDto> candles = priceHistory.getCandles(1L, 5L, "1m", 2);
+
+        assertCandle(candles.get(0), T0, "3.00", "3.50", "3.00", "3.25", 2);
+        assertCandle(candles.get(1), T0 + 60_000, "3.25", "3.25", "3.00", "3.00", 1);
+    }
+
+    @Test
+    void record_ProductNotCharted_IsIgnored() {
+        priceHistory.record(5L, at(T0 + 85_000), new BigDecimal("3.00"), new BigDecimal("3.50"));
+
+        verifyNoInteractions(inventoryRepository, inventoryTransactionRepository);
+    }
+
+    @Test
+    void getCandles_ChangesCommittedWhileSeeding_CountedOnce() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenAnswer(invocation -> {
+            // Committed before the query read it, reported afterwards
+            priceHistory.record(5L, at(T0 + 75_000), new BigDecimal("3.0"), new BigDecimal("3.5"));
+            // Committed after the query
+            priceHistory.record(5L, at(T0 + 80_000), new BigDecimal("3.50"), new BigDecimal("4.00"));
+            return List.of(change(T0 + 75_000, "3.00", "3.50"));
+        });
+
+        List<PriceCandleDto> candles = priceHistory.getCandles(1L, 5L, "1m", 1);
+
+        assertCandle(candles.get(0), T0 + 60_000, "3.00", "4.00", "3.00", "4.00", 2);
+    }
+
+    @Test
+    void getCandles_OtherOrganization_NotFound() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of());
+        priceHistory.getCandles(1L, 5L, "1m", 1);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> priceHistory.getCandles(2L, 5L, "1m", 1));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    @Test
+    void getCandles_UnsupportedBucket_BadRequest() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> priceHistory.getCandles(1L, 5L, "7s", 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    void getCandles_LimitAboveMaximum_IsCapped() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of());
+
+        assertEquals(PriceHistory.MAX_LIMIT, priceHistory.getCandles(1L, 5L, "10s", 10_000).size());
+    }
+
+    @Test
+    void evictIdle_DropsSeriesNotReadRecently() {
+        stubInventory();
+        when(inventoryTransactionRepository.findPriceChangesSince(eq(9L), any())).thenReturn(List.of());
+        priceHistory.getCandles(1L, 5L, "1m", 1);
+
+        now.addAndGet(3_600_001);
+        priceHistory.evictIdle();
+        priceHistory.getCandles(1L, 5L, "1m", 1);
+
+        verify(inventoryTransactionRepository, times(2)).findPriceChangesSince(eq(9L), any());
+    }
+
+    private void stubInventory() {
+        Product product = new Product();
+        product.setId(5L);
+        product.setBasePrice(new BigDecimal("2.00"));
+        Inventory inventory = new Inventory(1L, product, BigDecimal.TEN, new BigDecimal("3.00"));
+        inventory.setId(9L);
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inventory));
+    }
+
+    private static OffsetDateTime at(long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atOffset(ZoneOffset.UTC);
+    }
+
+    private static InventoryTransactionRepository.PriceChange change(long epochMs, String before, String after) {
+        return new InventoryTransactionRepository.PriceChange() {
+            @Override public OffsetDateTime getCreatedAt() { return at(epochMs); }
+            @Override public BigDecimal getPriceBefore() { return new BigDecimal(before); }
+            @Override public BigDecimal getPriceAfter() { return new BigDecimal(after); }
+        };
+    }
+
+    private static PriceTick tick(long epochMs, String price) {
+        return new PriceTick(null, 9L, at(epochMs), new BigDecimal(price));
+    }
+
+    private static void assertCandle(PriceCandleDto candle, long startMs, String open, String high, String low,
+            String close, int changes) {
+        assertEquals(startMs, Instant.parse(candle.start()).toEpochMilli());
+        assertEquals(0, new BigDecimal(open).compareTo(candle.open()), "open " + candle);
+        assertEquals(0, new BigDecimal(high).compareTo(candle.high()), "high " + candle);
+        assertEquals(0, new BigDecimal(low).compareTo(candle.low()), "low " + candle);
+        assertEquals(0, new BigDecimal(close).compareTo(candle.close()), "close " + candle);
+        assertEquals(changes, candle.changes(), "changes " + candle);
+    }
+}
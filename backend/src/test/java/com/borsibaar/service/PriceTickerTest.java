@@ -0,0 +1,50 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceTickerTest {
+
+    private final PriceTicker priceTicker = new PriceTicker(new ObjectMapper(), 60_000, 4, 3, 2);
+
+    @AfterEach
+    void tearDown() {
+        priceTicker.stop();
+    }
+
+    @Test
+    void subscribe_PastAddressCap_TooManyRequests() {
+        priceTicker.subscribe(1L, "10.0.0.1");
+        priceTicker.subscribe(2L, "10.0.0.1");
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> priceTicker.subscribe(1L, "10.0.0.1"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertNotNull(priceTicker.subscribe(1L, "10.0.0.2"));
+    }
+
+    @Test
+    void subscribe_PastOrganizationCap_TooManyRequests() {
+        priceTicker.subscribe(1L, "10.0.0.1");
+        priceTicker.subscribe(1L, "10.0.0.2");
+        priceTicker.subscribe(1L, "10.0.0.3");
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> priceTicker.subscribe(1L, "10.0.0.4"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertNotNull(priceTicker.subscribe(2L, "10.0.0.4"));
+    }
+
+    @Test
+    void hasSubscribers_OnlyForSubscribedOrganization() {
+        priceTicker.subscribe(1L, "10.0.0.1");
+
+        assertTrue(priceTicker.hasSubscribers(1L));
+        assertFalse(priceTicker.hasSubscribers(2L));
+    }
+}
@@ -0,0 +1,151 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCatalogTest {
+
+    @Mock private ProductRepository productRepository;
+    @Mock private OrganizationRepository organizationRepository;
+
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog(productRepository, organizationRepository);
+    }
+
+    @Test
+    void product_SecondLookup_ServedFromSnapshot() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product(5L, 1L, true)));
+
+        catalog.product(1L, 5L);
+        ProductCatalog.CatalogProduct product = catalog.product(1L, 5L).orElseThrow();
+
+        assertEquals("Beer", product.name());
+        assertEquals("Beers", product.categoryName());
+        assertTrue(product.dynamicPricing());
+        verify(productRepository, times(1)).findWithCategoryById(5L);
+        verify(organizationRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void product_OtherOrganization_ReturnedButNotCached() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product(5L, 2L, true)));
+
+        assertEquals(2L, catalog.product(1L, 5L).orElseThrow().organizationId());
+        catalog.product(1L, 5L);
+
+        verify(productRepository, times(2)).findWithCategoryById(5L);
+    }
+
+    @Test
+    void product_Missing_Empty() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.empty());
+
+        assertTrue(catalog.product(1L, 5L).isEmpty());
+    }
+
+    @Test
+    void productChanged_ReplacesCachedProduct() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product(5L, 1L, true)));
+        catalog.product(1L, 5L);
+
+        Product deleted = product(5L, 1L, false);
+        catalog.productChanged(deleted, deleted.getCategory());
+
+        assertFalse(catalog.product(1L, 5L).orElseThrow().active());
+        verify(productRepository, times(1)).findWithCategoryById(5L);
+    }
+
+    @Test
+    void productDeactivated_MarksCachedProductInactive() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product(5L, 1L, true)));
+        catalog.product(1L, 5L);
+
+        catalog.productDeactivated(1L, 5L);
+
+        ProductCatalog.CatalogProduct product = catalog.product(1L, 5L).orElseThrow();
+        assertFalse(product.active());
+        assertEquals("Beer", product.name());
+        verify(productRepository, times(1)).findWithCategoryById(5L);
+    }
+
+    @Test
+    void product_ChangedWhileLoading_StaleReadNotCached() {
+        Product deleted = product(5L, 1L, false);
+        when(productRepository.findWithCategoryById(5L)).thenAnswer(invocation -> {
+            // Committed after the read below
+            catalog.productChanged(deleted, deleted.getCategory());
+            return Optional.of(product(5L, 1L, true));
+        });
+
+        catalog.product(1L, 5L);
+
+        assertFalse(catalog.product(1L, 5L).orElseThrow().active());
+        verify(productRepository, times(1)).findWithCategoryById(5L);
+    }
+
+    @Test
+    void organizationChanged_ReplacesPriceSteps() {
+        Organization organization = new Organization();
+        organization.setId(1L);
+        organization.setPriceIncreaseStep(new BigDecimal("0.50"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        when(organizationRepository.findById(1L)).thenReturn(Optional.of(organization));
+        assertEquals(new BigDecimal("0.50"), catalog.priceIncreaseStep(1L));
+        assertEquals(new BigDecimal("0.10"), catalog.priceDecreaseStep(1L));
+
+        Organization updated = new Organization();
+        updated.setId(1L);
+        updated.setPriceIncreaseStep(new BigDecimal("0.25"));
+        catalog.organizationChanged(updated);
+
+        assertEquals(new BigDecimal("0.25"), catalog.priceIncreaseStep(1L));
+        assertEquals(BigDecimal.ZERO, catalog.priceDecreaseStep(1L));
+        verify(organizationRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void invalidate_RebuildsOnDemand() {
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product(5L, 1L, true)));
+        catalog.product(1L, 5L);
+
+        catalog.invalidate(1L);
+        catalog.product(1L, 5L);
+
+        verify(productRepository, times(2)).findWithCategoryById(5L);
+        verify(organizationRepository, times(2)).findById(1L);
+    }
+
+    private static Product product(Long id, Long organizationId, boolean active) {
+        Category category = new Category();
+        category.setId(3L);
+        category.setName("Beers");
+        category.setDynamicPricing(true);
+        Product product = new Product();
+        product.setId(id);
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(3L);
+        product.setCategory(category);
+        product.setName("Beer");
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(active);
+        return product;
+    }
+}
@@ -36,6 +36,9 @@ class ProductServiceTest {
     @Mock private UserRepository userRepository;
     @Mock private InventoryRepository inventoryRepository;
     @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private MarketEngine marketEngine;
+    @Mock private InventoryVersions inventoryVersions;
+    @Mock private ProductCatalog productCatalog;
 
     @InjectMocks private ProductService productService;
 
@@ -102,6 +105,28 @@ class ProductServiceTest {
         assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
     }
 
+    @Test
+    void getById_ReadsCatalog() {
+        when(productCatalog.product(1L, 44L)).thenReturn(Optional.of(new ProductCatalog.CatalogProduct(44L, 1L, 3L,
+                "Beers", "Beer", null, new BigDecimal("3.00"), null, null, true, true)));
+
+        ProductResponseDto dto = productService.getById(44L, 1L);
+
+        assertEquals("Beer", dto.name());
+        assertEquals("Beers", dto.categoryName());
+        assertEquals(new BigDecimal("3.00"), dto.currentPrice());
+        verifyNoInteractions(productRepository, categoryRepository);
+    }
+
+    @Test
+    void getById_OtherOrganization_NotFound() {
+        when(productCatalog.product(1L, 44L)).thenReturn(Optional.of(new ProductCatalog.CatalogProduct(44L, 2L, 3L,
+                "Beers", "Beer", null, new BigDecimal("3.00"), null, null, true, true)));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> productService.getById(44L, 1L));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
     @Test
     void delete_MarksInactive() {
         Product product = new Product(); product.setId(44L); product.setActive(true);
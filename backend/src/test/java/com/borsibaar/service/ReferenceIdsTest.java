@@ -0,0 +1,106 @@
+package com.borsibaar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceIdsTest {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    void nextId_SameMillisecond_StaysUniqueBeyondSequenceSpace() {
+        ReferenceIds ids = new ReferenceIds(3, () -> NOW);
+
+        long previous = ids.nextId();
+        // More than the 4096 IDs one millisecond holds
+        for (int i = 0; i < 10_000; i++) {
+            long id = ids.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void nextId_ClockGoesBackwards_KeepsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        ReferenceIds ids = new ReferenceIds(3, clock::get);
+
+        long before = ids.nextId();
+        clock.addAndGet(-5_000);
+
+        assertTrue(ids.nextId() > before);
+    }
+
+    @Test
+    void nextId_DifferentNodes_NeverCollide() {
+        ReferenceIds first = new ReferenceIds(1, () -> NOW);
+        ReferenceIds second = new ReferenceIds(2, () -> NOW);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertNotEquals(first.nextId(), second.nextId());
+        }
+    }
+
+    @Test
+    void next_FixedWidthAndOrderedLikeIds() {
+        AtomicLong clock = new AtomicLong(NOW);
+        ReferenceIds ids = new ReferenceIds(ReferenceIds.MAX_NODE_ID, clock::get);
+
+        String first = ids.next("SALE-");
+        clock.addAndGet(1);
+        String second = ids.next("SALE-");
+        clock.addAndGet(86_400_000L * 365);
+        String third = ids.next("SALE-");
+
+        assertTrue(first.matches("SALE-[0-9A-HJKMNP-TV-Z]{13}"), first);
+        assertEquals(first.length(), third.length());
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+    }
+
+    @Test
+    void nextId_ConcurrentCallers_AllUnique() throws Exception {
+        ReferenceIds ids = new ReferenceIds(0);
+        int threads = 8;
+        int perThread = 250_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                long[] taken = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    taken[i] = ids.nextId();
+                    assertTrue(i == 0 || taken[i] > taken[i - 1]);
+                }
+                return taken;
+            }));
+        }
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(futures.get(t).get(30, TimeUnit.SECONDS), 0, all, t * perThread, perThread);
+        }
+        executor.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i]);
+        }
+    }
+
+    @Test
+    void constructor_NodeIdOutOfRange_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceIds(ReferenceIds.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceIds(-1));
+    }
+}
@@ -4,14 +4,15 @@ import com.borsibaar.dto.SaleItemRequestDto;
 import com.borsibaar.dto.SaleRequestDto;
 import com.borsibaar.dto.SaleResponseDto;
 import com.borsibaar.entity.Inventory;
-import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
 import com.borsibaar.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
@@ -19,6 +20,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,50 +32,95 @@ import static org.mockito.Mockito.*;
 class SalesServiceTest {
 
     @Mock private InventoryRepository inventoryRepository;
-    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
     @Mock private ProductRepository productRepository;
+    @Mock private OrganizationRepository organizationRepository;
+    @Mock private MarketWriteBehind marketWriteBehind;
+    @Mock private PriceTicker priceTicker;
 
-    @InjectMocks private SalesService salesService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SalesService salesService;
 
     private final UUID userId = UUID.randomUUID();
 
+    @BeforeEach
+    void setUp() {
+        MarketEngine marketEngine = new MarketEngine(inventoryRepository,
+                new ProductCatalog(productRepository, organizationRepository), priceTicker, 60, 100, 4);
+        salesService = new SalesService(marketEngine, marketWriteBehind, new ReferenceIds(0), meterRegistry);
+    }
+
     @Test
     void processSale_SingleItem_SuccessPriceIncreaseCapped() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(10)); product.setMaxPrice(BigDecimal.valueOf(10)); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(20)); inventory.setAdjustedPrice(BigDecimal.valueOf(10)); inventory.setUpdatedAt(OffsetDateTime.now());
-        product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.save(inventory)).thenReturn(inventory);
-        when(inventoryTransactionRepository.save(any(InventoryTransaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inventory));
 
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(2));
         SaleRequestDto request = new SaleRequestDto(List.of(item), "note", 1L);
         SaleResponseDto response = salesService.processSale(request, userId, 1L);
         assertEquals(1, response.items().size());
         assertEquals(BigDecimal.valueOf(20), response.totalAmount());
+
+        ArgumentCaptor<MarketWriteBehind.PendingSale> captor = ArgumentCaptor.forClass(MarketWriteBehind.PendingSale.class);
+        verify(marketWriteBehind).enqueue(captor.capture());
+        MarketEngine.SaleLine line = captor.getValue().lines().get(0);
+        assertEquals(9L, line.inventoryId());
+        assertEquals(BigDecimal.valueOf(18), line.quantityAfter());
         // Price capped at max (10)
-        assertEquals(BigDecimal.valueOf(10), inventory.getAdjustedPrice());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        assertEquals(BigDecimal.valueOf(10), line.priceAfter());
+        assertEquals(response.saleId(), captor.getValue().saleId());
+    }
+
+    @Test
+    void processSale_SecondSaleSeesFirst_NoDatabaseReads() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(10)); product.setName("Beer");
+        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(3)); inventory.setAdjustedPrice(BigDecimal.valueOf(10));
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inventory));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.valueOf(2))), null, null);
+        salesService.processSale(request, userId, 1L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(inventoryRepository, times(1)).findByOrganizationId(1L);
+        verify(marketWriteBehind, times(1)).enqueue(any(MarketWriteBehind.PendingSale.class));
     }
 
     @Test
     void processSale_InsufficientStock_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
-        product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inventory));
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(5));
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(marketWriteBehind);
+        assertEquals(1, meterRegistry.get("sales.process").tags("organization", "1", "lines", "1", "outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    void processSale_Timed_PerOrganizationAndLineCount() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
+        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(50)); inventory.setAdjustedPrice(BigDecimal.ONE);
+        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inventory));
+
+        SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
+        salesService.processSale(new SaleRequestDto(List.of(item, item), null, null), userId, 1L);
+        salesService.processSale(new SaleRequestDto(Collections.nCopies(12, item), null, null), userId, 1L);
+
+        assertEquals(1, meterRegistry.get("sales.process").tags("organization", "1", "lines", "2", "outcome", "success")
+                .timer().count());
+        // Large orders share one series
+        assertEquals(1, meterRegistry.get("sales.process").tags("lines", "10+").timer().count());
     }
 
     @Test
     void processSale_ProductInactive_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(false); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
-        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
-        product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -83,9 +130,7 @@ class SalesServiceTest {
     @Test
     void processSale_ProductOrgMismatch_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(2L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
-        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(2L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
-        product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -95,7 +140,7 @@ class SalesServiceTest {
     @Test
     void processSale_ProductInventoryMissing_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findWithCategoryById(5L)).thenReturn(Optional.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -0,0 +1,247 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryTransactionPageDto;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.BarStation;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.entity.SalesStats;
+import com.borsibaar.entity.User;
+import com.borsibaar.mapper.InventoryMapperImpl;
+import com.borsibaar.repository.BarStationRepository;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesStatsRepository;
+import com.borsibaar.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Number of SQL statements each read endpoint issues, counted by Hibernate
+ * statistics. The counts must not depend on the number of products,
+ * transactions or users involved, so a lazy association that starts being
+ * loaded row by row shows up here.
+ * <p>
+ * Price decays are applied in memory by {@code MarketEngine} and stored in
+ * batches by {@code MarketWriteBehind}, which {@code MarketWriteBehindBatchTest}
+ * covers.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@Import({ InventoryService.class, ProductCatalog.class, MarketEngine.class, MarketInstanceLock.class,
+        InventoryMapperImpl.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatementCountTest {
+
+    private static final int PRODUCTS = 5;
+    private static final int USERS = 3;
+    private static final int TRANSACTIONS = 30;
+
+    @Autowired private InventoryService inventoryService;
+    @Autowired private MarketEngine marketEngine;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BarStationRepository barStationRepository;
+    @Autowired private SalesStatsRepository salesStatsRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean private MarketWriteBehind marketWriteBehind;
+    @MockitoBean private InventoryVersions inventoryVersions;
+    @MockitoBean private PriceTicker priceTicker;
+
+    private Statistics statistics;
+    private Organization organization;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        organization = new Organization();
+        organization.setName("Bar");
+        organization.setPriceIncreaseStep(new BigDecimal("0.50"));
+        organization = organizationRepository.save(organization);
+
+        Category category = new Category();
+        category.setOrganizationId(organization.getId());
+        category.setName("Beers");
+        category.setDynamicPricing(true);
+        category = categoryRepository.save(category);
+
+        List<Inventory> inventories = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setOrganizationId(organization.getId());
+            product.setCategoryId(category.getId());
+            product.setName("Beer " + i);
+            product.setBasePrice(new BigDecimal("3.00"));
+            product.setActive(true);
+            product = productRepository.save(product);
+            products.add(product);
+            inventories.add(inventoryRepository.save(new Inventory(organization.getId(), product,
+                    BigDecimal.valueOf(100), new BigDecimal("3.00"))));
+        }
+
+        List<User> users = new ArrayList<>();
+        List<BarStation> stations = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(User.builder()
+                    .organizationId(organization.getId())
+                    .name("User " + i)
+                    .email("user" + i + "@example.com")
+                    .build()));
+            BarStation station = new BarStation();
+            station.setOrganizationId(organization.getId());
+            station.setName("Station " + i);
+            stations.add(barStationRepository.save(station));
+        }
+
+        OffsetDateTime start = OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+        List<InventoryTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            InventoryTransaction transaction = new InventoryTransaction();
+            transaction.setInventory(inventories.get(0));
+            transaction.setOrganizationId(organization.getId());
+            transaction.setProductId(products.get(0).getId());
+            transaction.setTransactionType("SALE");
+            transaction.setQuantityChange(BigDecimal.ONE.negate());
+            transaction.setQuantityBefore(BigDecimal.valueOf(100 - i));
+            transaction.setQuantityAfter(BigDecimal.valueOf(99 - i));
+            transaction.setPriceBefore(new BigDecimal("3.00"));
+            transaction.setPriceAfter(new BigDecimal("3.00"));
+            transaction.setCreatedBy(users.get(i % USERS).getId());
+            transaction.setCreatedAt(start.plusMinutes(i));
+            transactions.add(transaction);
+        }
+        inventoryTransactionRepository.saveAll(transactions);
+
+        for (User user : users) {
+            for (BarStation station : stations) {
+                SalesStats stats = new SalesStats();
+                stats.setOrganizationId(organization.getId());
+                stats.setUserId(user.getId());
+                stats.setBarStationId(station.getId());
+                stats.setBucketStart(start);
+                stats.setSalesCount(2L);
+                stats.setQuantitySold(BigDecimal.valueOf(2));
+                stats.setRevenue(new BigDecimal("6.00"));
+                salesStatsRepository.save(stats);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        marketEngine.evict(organization.getId());
+        salesStatsRepository.deleteAllInBatch();
+        inventoryTransactionRepository.deleteAllInBatch();
+        inventoryRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        barStationRepository.deleteAllInBatch();
+        organizationRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void getByOrganization_Board_OneStatement() {
+        statistics.clear();
+
+        assertEquals(PRODUCTS, inventoryService.getByOrganization(organization.getId()).size());
+
+        assertStatements(1);
+    }
+
+    @Test
+    void getByProductAndOrganization_CatalogWarm_OneStatement() {
+        Long productId = products.get(0).getId();
+        inventoryService.getByProductAndOrganization(productId, organization.getId());
+        statistics.clear();
+
+        assertEquals("Beer 0", inventoryService.getByProductAndOrganization(productId, organization.getId())
+                .productName());
+
+        assertStatements(1);
+    }
+
+    @Test
+    void getTransactionHistory_Page_InventoryPageAndUsers() {
+        statistics.clear();
+
+        InventoryTransactionPageDto page = inventoryService.getTransactionHistory(products.get(0).getId(),
+                organization.getId(), null, null, null, null, 20);
+
+        assertEquals(20, page.items().size());
+        assertTrue(page.items().stream().allMatch(item -> item.createdByName() != null));
+        assertStatements(3);
+    }
+
+    @Test
+    void getUserSalesStats_TotalsUsersAndStations() {
+        statistics.clear();
+
+        assertEquals(USERS * USERS, inventoryService.getUserSalesStats(organization.getId()).size());
+
+        assertStatements(3);
+    }
+
+    @Test
+    void getStationSalesStats_TotalsAndStations() {
+        statistics.clear();
+
+        assertEquals(USERS, inventoryService.getStationSalesStats(organization.getId()).size());
+
+        assertStatements(2);
+    }
+
+    @Test
+    void sell_FirstSaleLoadsMarket_LaterSalesWithoutStatements() {
+        List<SaleItemRequestDto> items = List.of(new SaleItemRequestDto(products.get(1).getId(), BigDecimal.ONE));
+        statistics.clear();
+
+        // Price increase step and every inventory with its product and category
+        marketEngine.sell(organization.getId(), items, lines -> {
+        });
+        assertStatements(2);
+
+        statistics.clear();
+        MarketEngine.SaleLine line = marketEngine.sell(organization.getId(), items, lines -> {
+        }).get(0);
+        assertStatements(0);
+        assertEquals(0, new BigDecimal("4.00").compareTo(line.priceAfter()));
+    }
+
+    private void assertStatements(long expected) {
+        assertEquals(expected, statistics.getPrepareStatementCount(), "prepared statements");
+    }
+}
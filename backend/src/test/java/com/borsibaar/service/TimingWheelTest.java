@@ -0,0 +1,67 @@
+package com.borsibaar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(100, 1_000_000);
+
+    @Test
+    void advance_FiresInTheTickOfTheDeadline() {
+        wheel.schedule("soon", 1_000_250);
+        wheel.schedule("later", 1_060_000);
+
+        assertEquals(List.of(), wheel.advance(1_000_200));
+        // Rounded up to the next tick, never early
+        assertEquals(List.of("soon"), wheel.advance(1_000_300));
+        assertEquals(List.of(), wheel.advance(1_059_999));
+        assertEquals(List.of("later"), wheel.advance(1_060_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_PastDeadline_FiresWithNextTick() {
+        wheel.schedule("overdue", 900_000);
+
+        assertEquals(List.of("overdue"), wheel.advance(1_000_100));
+    }
+
+    @Test
+    void cancel_RemovesScheduledEntry() {
+        TimingWheel.Timeout<String> timeout = wheel.schedule("cancelled", 1_060_000);
+        wheel.schedule("kept", 1_060_000);
+
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+        assertEquals(List.of("kept"), wheel.advance(1_060_000));
+    }
+
+    @Test
+    void advance_DeadlinesAcrossLevels_FireInOrderAndOnTime() {
+        // Up to 30 days ahead, beyond the top level's range of 64^4 ticks
+        Random random = new Random(42);
+        int count = 2_000;
+        for (int i = 0; i < count; i++) {
+            long deadline = 1_000_000 + 100 * (1 + (long) random.nextInt(25_920_000));
+            wheel.schedule(String.valueOf(deadline), deadline);
+        }
+
+        long previous = 0;
+        int fired = 0;
+        for (long now = 1_000_000; fired < count; now += 60_000) {
+            for (String value : wheel.advance(now)) {
+                long deadline = Long.parseLong(value);
+                assertTrue(deadline > now - 60_000 && deadline <= now, value);
+                assertTrue(deadline >= previous, value);
+                previous = deadline;
+                fired++;
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+}
@@ -62,6 +62,7 @@ export default function Inventory() {
     InventoryTransactionResponseDto[]
   >([]);
   const [loadingHistory, setLoadingHistory] = useState(false);
+  const [historyCursor, setHistoryCursor] = useState<string | null>(null);
   const [formData, setFormData] = useState({
     quantity: "",
     notes: "",
@@ -126,11 +127,16 @@ export default function Inventory() {
     }
   };
 
-  const fetchTransactionHistory = async (productId: number) => {
+  // Pages are requested with the cursor of the previous page, newest first
+  const fetchTransactionHistory = async (
+    productId: number,
+    cursor: string | null = null
+  ) => {
     try {
       setLoadingHistory(true);
+      const query = cursor ? `?cursor=${encodeURIComponent(cursor)}` : "";
       const response = await fetch(
-        `/api/inventory/product/${productId}/history`,
+        `/api/inventory/product/${productId}/history${query}`,
         {
           credentials: "include",
         }
@@ -139,10 +145,14 @@ export default function Inventory() {
       if (!response.ok) throw new Error("Failed to fetch history");
 
       const data = await response.json();
-      setTransactionHistory(data);
+      setTransactionHistory((previous) =>
+        cursor ? [...previous, ...data.items] : data.items
+      );
+      setHistoryCursor(data.nextCursor);
     } catch (err) {
       console.error("Error fetching history:", err);
-      setTransactionHistory([]);
+      if (!cursor) setTransactionHistory([]);
+      setHistoryCursor(null);
     } finally {
       setLoadingHistory(false);
     }
@@ -362,6 +372,7 @@ export default function Inventory() {
     setSelectedProduct(null);
     setFormData({ quantity: "", notes: "", referenceId: "" });
     setTransactionHistory([]);
+    setHistoryCursor(null);
     setLoadingHistory(false);
   };
 
@@ -1104,7 +1115,7 @@ export default function Inventory() {
             className="max-h-96 overflow-y-auto [&::-webkit-scrollbar]:hidden"
             style={{ scrollbarWidth: "none", msOverflowStyle: "none" }}
           >
-            {loadingHistory ? (
+            {loadingHistory && transactionHistory.length === 0 ? (
               <div className="text-center py-8">
                 <div className="animate-spin rounded-full h-8 w-8 border-b-2 border-blue-600 mx-auto mb-4"></div>
                 <p className="text-gray-500">Loading transaction history...</p>
@@ -1185,6 +1196,22 @@ export default function Inventory() {
                       )}
                   </div>
                 ))}
+                {historyCursor && (
+                  <Button
+                    variant="outline"
+                    className="w-full"
+                    disabled={loadingHistory}
+                    onClick={() =>
+                      fetchTransactionHistory(
+                        // @ts-expect-error: types aren't imported currently from backend
+                        selectedProduct.productId,
+                        historyCursor
+                      )
+                    }
+                  >
+                    {loadingHistory ? "Loading..." : "Load more"}
+                  </Button>
+                )}
               </div>
             )}
           </div>
@@ -1,6 +1,6 @@
 "use client";
 
-import { useState, useEffect, useCallback } from "react";
+import { useState, useEffect, useCallback, useRef } from "react";
 import { useParams, useRouter } from "next/navigation";
 import { AlertCircle, ArrowLeft } from "lucide-react";
 import { Button } from "@/components/ui/button";
@@ -8,7 +8,14 @@ import clsx from "clsx";
 import { POSHeader } from "./POSHeader";
 import { ProductCard } from "./ProductCard";
 import { CartSidebar } from "./CartSidebar";
-import { Product, Category, CartItem, CurrentUser, BarStation } from "./types";
+import {
+  Product,
+  Category,
+  CartItem,
+  CurrentUser,
+  BarStation,
+  InventoryChanges,
+} from "./types";
 
 export const dynamic = "force-dynamic";
 
@@ -27,6 +34,8 @@ export default function POSStation() {
   const [cart, setCart] = useState<CartItem[]>([]);
   const [isProcessingSale, setIsProcessingSale] = useState(false);
   const [currentUser, setCurrentUser] = useState<CurrentUser | null>(null);
+  // Inventory version the products are up to date with, for incremental refreshes
+  const inventoryVersion = useRef<string | null>(null);
 
   // Fetch station and validate access
   const fetchStation = useCallback(async () => {
@@ -66,6 +75,8 @@ export default function POSStation() {
 
       const data = await response.json();
       setProducts(data);
+      // Lets the first sync ask only for what changed after this load
+      inventoryVersion.current = response.headers.get("X-Inventory-Version");
       setError(null);
     } catch (err) {
       setError(err instanceof Error ? err.message : "Unknown error");
@@ -74,6 +85,38 @@ export default function POSStation() {
     }
   }, [selectedCategory]);
 
+  // Fetches only the products changed since the last refresh
+  const syncProducts = useCallback(async () => {
+    try {
+      const since = inventoryVersion.current;
+      const response = await fetch(
+        since
+          ? `/api/inventory/changes?since=${encodeURIComponent(since)}`
+          : "/api/inventory/changes",
+        { cache: "no-store" }
+      );
+
+      if (!response.ok) throw new Error("Failed to fetch product changes");
+
+      const changes: InventoryChanges = await response.json();
+      inventoryVersion.current = changes.version;
+      if (changes.full) {
+        // Too far behind, the full list is not filtered by category
+        if (selectedCategory) {
+          await fetchProducts();
+        } else {
+          setProducts(changes.inventory);
+        }
+      } else if (changes.inventory.length) {
+        const changed = new Map(changes.inventory.map((p) => [p.productId, p]));
+        setProducts((prev) => prev.map((p) => changed.get(p.productId) ?? p));
+      }
+      setError(null);
+    } catch (err) {
+      setError(err instanceof Error ? err.message : "Unknown error");
+    }
+  }, [selectedCategory, fetchProducts]);
+
   const fetchCategories = async () => {
     try {
       const response = await fetch("/api/categories");
@@ -110,9 +153,9 @@ export default function POSStation() {
       setCart(JSON.parse(savedCart));
     }
 
-    const refreshInterval = setInterval(fetchProducts, 1000 * 60);
+    const refreshInterval = setInterval(syncProducts, 1000 * 60);
     return () => clearInterval(refreshInterval);
-  }, [stationId, fetchProducts, fetchStation]);
+  }, [stationId, fetchProducts, syncProducts, fetchStation]);
 
   useEffect(() => {
     fetchProducts();
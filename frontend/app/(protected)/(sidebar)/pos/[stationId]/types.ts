@@ -9,6 +9,12 @@ export interface Product {
   updatedAt: string;
 }
 
+export interface InventoryChanges {
+  version: string;
+  full: boolean;
+  inventory: Product[];
+}
+
 export interface Category {
   id: number;
   name: string;
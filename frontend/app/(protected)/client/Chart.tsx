@@ -48,18 +48,24 @@ const tallinnTicks = (cutoff: Date, now: Date, stepMin: number) => {
 };
 
 // ---------- Types ----------
-type HistoryDto = {
-  id: number;
-  inventoryId: number;
-  priceBefore: number;
-  priceAfter: number;
-  createdAt: string;
+type CandleDto = {
+  start: string;
+  open: number;
+  high: number;
+  low: number;
+  close: number;
+  changes: number;
 };
 type CurrentHistory = {
   productInv: InvDto;
-  priceHistory: HistoryDto[];
+  candles: CandleDto[];
 };
 
+// 10 second candles covering the 1 hour window
+const BUCKET = "10s";
+const BUCKET_MS = 10_000;
+const CANDLE_LIMIT = 361;
+
 export default function PriceHistoryGraphFancy({
   groups,
 }: {
@@ -88,15 +94,15 @@ export default function PriceHistoryGraphFancy({
     try {
       setError(null);
       const res = await fetch(
-        `/api/inventory/product/${productInv.productId}/history`,
+        `/api/inventory/product/${productInv.productId}/candles?bucket=${BUCKET}&limit=${CANDLE_LIMIT}`,
         {
           cache: "no-store",
           credentials: "include",
         },
       );
       if (!res.ok) throw new Error(`HTTP ${res.status}`);
-      const historyJson: HistoryDto[] = await res.json();
-      setCurrent({ productInv, priceHistory: historyJson });
+      const candlesJson: CandleDto[] = await res.json();
+      setCurrent({ productInv, candles: candlesJson });
     } catch (e) {
       setError(e?.message || "Failed to fetch history");
     }
@@ -137,44 +143,31 @@ export default function PriceHistoryGraphFancy({
   const series = useMemo(() => {
     if (!current) return [] as { date: Date; price: number }[];
 
-    const product = current.productInv;
-    const hist = [...(current.priceHistory ?? [])]
-      .map((h) => ({
-        ts: new Date(h.createdAt),
-        before: Number(h.priceBefore),
-        after: Number(h.priceAfter),
-      }))
-      .filter((h) => !isNaN(h.ts.getTime()))
-      .sort((a, b) => a.ts.getTime() - b.ts.getTime());
-
-    const firstBefore = hist.find(
-      (h) => Number.isFinite(h.before) && h.before !== 0,
-    )?.before;
-    const base =
-      (firstBefore ??
-        product?.basePrice ??
-        product.unitPrice ??
-        hist[0]?.after ??
-        0) as number;
-
     const out: { date: Date; price: number }[] = [];
-    if (hist.length === 0) {
+    for (const c of current.candles ?? []) {
+      const start = new Date(c.start);
+      if (isNaN(start.getTime())) continue;
+      const open = Number(c.open);
+      const close = Number(c.close);
+      out.push({ date: start, price: open });
+      // price moved within the candle, step to its close before the next one
+      if (close !== open) {
+        out.push({ date: new Date(start.getTime() + BUCKET_MS - 1), price: close });
+      }
+    }
+    if (out.length === 0) {
       const now = new Date();
+      const base = (current.productInv?.unitPrice ??
+        current.productInv?.basePrice ??
+        0) as number;
       out.push(
         { date: new Date(now.getTime() - 1), price: base },
         { date: now, price: base },
       );
       return out;
     }
-    out.push({ date: new Date(hist[0].ts.getTime() - 1), price: base });
-    let last = base;
-    for (const e of hist) {
-      const next = Number.isFinite(e.after) ? e.after : last;
-      out.push({ date: e.ts, price: next });
-      last = next;
-    }
     if (+out[out.length - 1].date < Date.now()) {
-      out.push({ date: new Date(), price: last });
+      out.push({ date: new Date(), price: out[out.length - 1].price });
     }
     return out;
   }, [current]);
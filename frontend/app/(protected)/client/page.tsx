@@ -18,6 +18,20 @@ export type InvDto = {
   updatedAt: string;
 };
 
+type BoardCategory = {
+  id: number;
+  name: string;
+  dynamicPricing: boolean;
+  inventory: InvDto[];
+};
+
+type InvTick = {
+  productId: number;
+  quantity: number;
+  unitPrice: number;
+  updatedAt: string;
+};
+
 const money = (n: number) =>
   new Intl.NumberFormat("et-EE", {
     style: "currency",
@@ -40,50 +54,27 @@ export default function ClientProductsByCategory() {
 
   useEffect(() => {
     let alive = true;
+    const organizationId = 2;
 
     const load = async () => {
       setLoading(true);
       try {
-        const organizationId = 2;
-
-        const cRes = await fetch(
-          `/api/categories?organizationId=${organizationId}`,
+        // Every category with its inventory in one request, revalidated with the ETag
+        const res = await fetch(
+          `/api/inventory/board?organizationId=${organizationId}`,
           {
-            cache: "no-store",
+            cache: "no-cache",
             credentials: "include",
           }
         );
-        if (!cRes.ok) throw new Error(`Categories HTTP ${cRes.status}`);
-        const cJson = await cRes.json();
-        const categoryList: Category[] = Array.isArray(cJson)
-          ? cJson
-          : cJson?.items ?? cJson?.content ?? [];
-
-        if (!alive) return;
-        setCats(categoryList);
-
-        const fetches = categoryList.map(async (c) => {
-          const res = await fetch(
-            `/api/inventory?categoryId=${c.id}&organizationId=${organizationId}`,
-            {
-              cache: "no-store",
-              credentials: "include",
-            }
-          );
-          if (!res.ok)
-            throw new Error(`Inventory HTTP ${res.status} (cat ${c.id})`);
-          const j = await res.json();
-          const arr: InvDto[] = Array.isArray(j)
-            ? j
-            : j?.items ?? j?.content ?? [];
-          return [c.name, arr] as const;
-        });
-
-        const results = await Promise.all(fetches);
+        if (!res.ok) throw new Error(`Board HTTP ${res.status}`);
+        const board: BoardCategory[] = await res.json();
         if (!alive) return;
 
+        // The board only lists categories that have products
+        setCats(board.map(({ id, name }) => ({ id, name })));
         const grouped = Object.fromEntries(
-          results.filter(([, arr]) => arr.length > 0)
+          board.map((c) => [c.name, c.inventory])
         );
         setGroups(grouped);
         setErr(null);
@@ -95,10 +86,47 @@ export default function ClientProductsByCategory() {
       }
     };
 
+    // Live price/quantity changes; subscribed before the first load so none are missed
+    const stream = new EventSource(
+      `/api/inventory/stream?organizationId=${organizationId}`,
+      { withCredentials: true }
+    );
+    // Streams that time out or fall behind are closed by the server and reopened by the
+    // browser, changes missed in between are picked up by reloading the board
+    let opened = false;
+    stream.onopen = () => {
+      if (opened) load();
+      opened = true;
+    };
+    stream.addEventListener("tick", (event) => {
+      const ticks: InvTick[] = JSON.parse((event as MessageEvent).data);
+      const byProduct = new Map(ticks.map((t) => [t.productId, t]));
+      setGroups((prev) =>
+        Object.fromEntries(
+          Object.entries(prev).map(([name, arr]) => [
+            name,
+            arr.map((p) => {
+              const tick = byProduct.get(p.productId);
+              return tick
+                ? {
+                    ...p,
+                    quantity: tick.quantity,
+                    unitPrice: tick.unitPrice,
+                    updatedAt: tick.updatedAt,
+                  }
+                : p;
+            }),
+          ])
+        )
+      );
+    });
+
     load();
-    const refreshInterval = setInterval(load, 1000 * 15);
+    // Full reload only to pick up catalog changes, prices arrive through the stream
+    const refreshInterval = setInterval(load, 1000 * 60 * 5);
     return () => {
       clearInterval(refreshInterval);
+      stream.close();
       alive = false;
     };
   }, []);
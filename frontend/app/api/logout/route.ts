@@ -18,31 +18,35 @@ export async function POST(request: NextRequest) {
       { status: 200 }
     );
 
-    // Clear the JWT cookie (backend also does this, but we do it here too for redundancy)
-    response.cookies.set("jwt", "", {
-      httpOnly: true,
-      secure: process.env.NODE_ENV === "production",
-      sameSite: "lax",
-      maxAge: 0,
-      path: "/",
-    });
+    // Clear the JWT cookies (backend also does this, but we do it here too for redundancy)
+    for (const name of ["jwt", "jwt_refresh"]) {
+      response.cookies.set(name, "", {
+        httpOnly: true,
+        secure: process.env.NODE_ENV === "production",
+        sameSite: "lax",
+        maxAge: 0,
+        path: "/",
+      });
+    }
 
     return response;
   } catch (error) {
     console.error("Logout error:", error);
-    // Even if backend fails, clear the cookie
+    // Even if backend fails, clear the cookies
     const response = NextResponse.json(
       { success: false, message: "Logout failed" },
       { status: 500 }
     );
 
-    response.cookies.set("jwt", "", {
-      httpOnly: true,
-      secure: process.env.NODE_ENV === "production",
-      sameSite: "lax",
-      maxAge: 0,
-      path: "/",
-    });
+    for (const name of ["jwt", "jwt_refresh"]) {
+      response.cookies.set(name, "", {
+        httpOnly: true,
+        secure: process.env.NODE_ENV === "production",
+        sameSite: "lax",
+        maxAge: 0,
+        path: "/",
+      });
+    }
 
     return response;
   }